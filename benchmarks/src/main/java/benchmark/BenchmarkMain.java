@@ -0,0 +1,50 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Запуск всех (или отобранных по регулярным выражениям из аргументов) бенчмарков
+ * для каждого числа потоков из -Dthreads с профилировщиком gc — он даёт gc.alloc.rate.norm,
+ * байты на операцию. Результаты каждого прогона пишутся в jmh-result-t{потоки}.json
+ * для сравнения между версиями хранилища.
+ * <p>
+ * Пример: {@code java -Dthreads=1,8 -Dlinks=1000,10000000 -jar target/benchmarks.jar Service}
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int[] threadCounts = Arrays.stream(System.getProperty("threads", "1,4,16").split(","))
+                .map(String::trim)
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        String links = System.getProperty("links");
+
+        for (int threads : threadCounts) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-t" + threads + ".json");
+            if (args.length == 0) {
+                options.include(BenchmarkMain.class.getPackageName() + "\\..*Benchmark");
+            }
+            for (String include : args) {
+                options.include(include);
+            }
+            if (links != null) {
+                options.param("links", links.split(","));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package benchmark;
+
+import exception.DataAccessException;
+import model.ShortLink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import repository.FileJsonShortLinkRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути хранилища links.json: поиск по коду идёт по индексу в памяти,
+ * а save и deleteExpired перезаписывают файл целиком — их время растёт с числом ссылок.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileJsonRepositoryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int links;
+
+    private Path dir;
+    private FileJsonShortLinkRepository repository;
+    private UUID owner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("bench-json-");
+        owner = UUID.randomUUID();
+        Path file = dir.resolve("links.json");
+        LinkFixtures.writeJsonStore(file, links, owner);
+        repository = new FileJsonShortLinkRepository(file.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        LinkFixtures.deleteRecursively(dir);
+    }
+
+    /**
+     * Просроченная ссылка на каждый вызов deleteExpired: без неё метод ничего не удаляет
+     * и не пишет файл. При нескольких потоках одну ссылку может забрать соседний вызов,
+     * поэтому показательны прежде всего замеры в один поток.
+     */
+    @State(Scope.Thread)
+    public static class ExpiredLink {
+
+        @Setup(Level.Invocation)
+        public void add(FileJsonRepositoryBenchmark bench) throws DataAccessException {
+            bench.repository.save(LinkFixtures.expiredLink(bench.owner, Instant.now()));
+        }
+    }
+
+    @Benchmark
+    public Optional<ShortLink> findByShortCode() {
+        int i = ThreadLocalRandom.current().nextInt(links);
+        return repository.findByShortCode(LinkFixtures.code(i));
+    }
+
+    /**
+     * Перезапись существующей ссылки с новым счётчиком — то же, что сохранение перехода.
+     */
+    @Benchmark
+    public void save() throws DataAccessException {
+        int i = ThreadLocalRandom.current().nextInt(links);
+        ShortLink current = LinkFixtures.link(i, owner, Instant.now());
+        repository.save(new ShortLink(current.getId(), current.getShortCode(), current.getOriginalUrl(),
+                owner, current.getMaxClicks(), i & 0xFF, current.getCreatedAt(), current.getExpiresAt(), true));
+    }
+
+    @Benchmark
+    public int deleteExpired(ExpiredLink expired) throws DataAccessException {
+        return repository.deleteExpired(Instant.now(), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,98 @@
+package benchmark;
+
+import exception.DataAccessException;
+import model.ShortLink;
+import org.json.JSONObject;
+import repository.ShortLinkRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Заготовки хранилищ заданного размера для бенчмарков.
+ * Коды засеянных ссылок — «seed» и номер в base36 (5–10 символов) — той же длины, что и сгенерированные,
+ * и упаковываются в число так же, как они: длиннее {@link model.ShortCodeCodec#MAX_PACKED_LENGTH} индекс
+ * хранил бы их строкой, и бенчмарки мерили бы не тот путь. Поэтому новый код может совпасть с засеянным;
+ * генератор проверяет занятость и просто берёт другой. Лимит переходов такой, что за прогон он не исчерпывается.
+ */
+final class LinkFixtures {
+
+    static final int SEED_MAX_CLICKS = Integer.MAX_VALUE;
+    private static final Duration SEED_TTL = Duration.ofDays(365);
+
+    private LinkFixtures() {
+    }
+
+    static String code(int i) {
+        return "seed" + Integer.toString(i, 36);
+    }
+
+    static ShortLink link(int i, UUID owner, Instant now) {
+        return new ShortLink(new UUID(0L, i).toString(), code(i), "https://example.com/page/" + i,
+                owner, SEED_MAX_CLICKS, 0, now, now.plus(SEED_TTL), true);
+    }
+
+    static ShortLink expiredLink(UUID owner, Instant now) {
+        return new ShortLink(UUID.randomUUID().toString(), "x" + Long.toString(System.nanoTime(), 36),
+                "https://example.com/expired", owner, 1, 0,
+                now.minus(SEED_TTL), now.minusSeconds(1), true);
+    }
+
+    /**
+     * Пишет links.json на links ссылок напрямую, минуя save(): через хранилище каждая
+     * вставка перезаписывала бы файл целиком.
+     */
+    static void writeJsonStore(Path file, int links, UUID owner) {
+        Instant now = Instant.now();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write('[');
+            for (int i = 0; i < links; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                ShortLink link = link(i, owner, now);
+                JSONObject obj = new JSONObject();
+                obj.put("id", link.getId());
+                obj.put("shortCode", link.getShortCode());
+                obj.put("originalUrl", link.getOriginalUrl());
+                obj.put("ownerId", link.getOwnerId().toString());
+                obj.put("maxClicks", link.getMaxClicks());
+                obj.put("clickCount", link.getClickCount());
+                obj.put("createdAt", link.getCreatedAt().toString());
+                obj.put("expiresAt", link.getExpiresAt().toString());
+                obj.put("active", link.isActive());
+                out.write(obj.toString());
+            }
+            out.write(']');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Засевает хранилище, у которого вставка не переписывает всё (журнал, отображаемый файл).
+     */
+    static void seed(ShortLinkRepository repository, int links, UUID owner) throws DataAccessException {
+        Instant now = Instant.now();
+        for (int i = 0; i < links; i++) {
+            repository.save(link(i, owner, now));
+        }
+    }
+
+    static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
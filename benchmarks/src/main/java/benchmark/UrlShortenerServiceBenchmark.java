@@ -0,0 +1,148 @@
+package benchmark;
+
+import config.AppConfig;
+import config.BloomFilterConfig;
+import config.CacheConfig;
+import config.CleanupConfig;
+import config.ClickFlushConfig;
+import config.HttpConfig;
+import config.MetricsConfig;
+import config.NegativeCacheConfig;
+import config.ShortCodeConfig;
+import config.StorageConfig;
+import exception.DataAccessException;
+import model.ShortLink;
+import model.UserProfile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import repository.FileJsonUserRepository;
+import repository.ShortLinkRepositories;
+import repository.ShortLinkRepository;
+import service.ShortCodeGenerator;
+import service.ShortCodeGenerators;
+import service.ShortCodePool;
+import service.UrlShortenerService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис целиком — с фильтром кодов и кэшем из настроек по умолчанию — поверх хранилища
+ * links.json (JSON) или отображаемого файла (MMAP) заданного размера.
+ * Созданные за итерацию ссылки удаляются после неё, чтобы размер хранилища не уплывал.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlShortenerServiceBenchmark {
+
+    // Запас ёмкости отображаемого файла под ссылки, созданные за одну итерацию
+    private static final int CREATE_HEADROOM = 2_000_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int links;
+
+    @Param({"JSON", "MMAP"})
+    public String storage;
+
+    private Path dir;
+    private ShortLinkRepository repository;
+    private ShortCodeGenerator codeGenerator;
+    private UrlShortenerService service;
+    private UUID userId;
+    private final Queue<String> created = new ConcurrentLinkedQueue<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("bench-service-");
+        userId = UUID.randomUUID();
+        Path jsonFile = dir.resolve("links.json");
+        StorageConfig storageConfig = switch (storage) {
+            case "JSON" -> {
+                LinkFixtures.writeJsonStore(jsonFile, links, userId);
+                yield StorageConfig.defaults();
+            }
+            case "MMAP" -> StorageConfig.mmap(dir.resolve("links-mmap").toString(), links + CREATE_HEADROOM);
+            default -> throw new IllegalArgumentException("Неизвестное хранилище: " + storage);
+        };
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                jsonFile.toString(), dir.resolve("users.json").toString(), "clck.bench",
+                storageConfig, ClickFlushConfig.defaults(), CleanupConfig.defaults(), ShortCodeConfig.defaults(),
+                BloomFilterConfig.defaults(), CacheConfig.defaults(), NegativeCacheConfig.defaults(),
+                HttpConfig.defaults(), MetricsConfig.defaults());
+
+        repository = ShortLinkRepositories.open(config);
+        if (!storage.equals("JSON")) {
+            LinkFixtures.seed(repository, links, userId);
+        }
+        FileJsonUserRepository users = new FileJsonUserRepository(config.usersDbFilePath());
+        users.save(new UserProfile(userId, config.defaultMaxClicks(), 24));
+
+        codeGenerator = ShortCodeGenerators.create(config, repository);
+        if (codeGenerator instanceof ShortCodePool pool) {
+            pool.start();
+        }
+        service = new UrlShortenerService(repository, config, users, null, codeGenerator);
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropCreated() throws DataAccessException {
+        String id;
+        while ((id = created.poll()) != null) {
+            repository.deleteById(id);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (codeGenerator instanceof ShortCodePool pool) {
+            pool.stop();
+        }
+        if (repository instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+        LinkFixtures.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public String resolveShortLink() throws Exception {
+        int i = ThreadLocalRandom.current().nextInt(links);
+        return service.resolveShortLink(LinkFixtures.code(i));
+    }
+
+    @Benchmark
+    public ShortLink createShortLink() throws DataAccessException {
+        ShortLink link = service.createShortLink(userId, "https://example.com/new");
+        created.add(link.getId());
+        return link;
+    }
+
+    /**
+     * Бывший generateUniqueShortCode: выдача свободного кода стратегией из настроек,
+     * по умолчанию — из запаса, который пополняет фоновый поток.
+     */
+    @Benchmark
+    public String nextShortCode() throws DataAccessException {
+        return codeGenerator.nextCode();
+    }
+}
@@ -1,20 +1,28 @@
 package app;
 
 import exception.*;
+import metrics.MetricsFileWriter;
+import metrics.ShortenerMetrics;
+import model.LinkPage;
 import model.ShortLink;
 import model.UserProfile;
-import repository.FileJsonShortLinkRepository;
 import repository.FileJsonUserRepository;
+import repository.ShortLinkRepositories;
 import repository.ShortLinkRepository;
 import repository.UserRepository;
+import service.ClickWriteBehindBuffer;
 import service.ExpirationCleanupService;
+import service.ExpiredLinkDeleter;
+import service.ShortCodeGenerator;
+import service.ShortCodeGenerators;
+import service.ShortCodePool;
 import service.UrlShortenerService;
 
 import java.awt.*;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.List;
+import java.nio.file.Path;
 import java.util.Scanner;
 import java.util.UUID;
 
@@ -24,6 +32,8 @@ import service.UserService;
 
 public class ConsoleApplication {
 
+    private static final int LINKS_PAGE_SIZE = 20;
+
     private final UrlShortenerService service;
     private UUID currentUserId;
     private final AppConfig config;
@@ -99,7 +109,7 @@ public class ConsoleApplication {
             switch (cmd) {
                 case "1" -> handleCreateLink(scanner);
                 case "2" -> handleOpenLink(scanner);
-                case "3" -> handleListLinks();
+                case "3" -> handleListLinks(scanner);
                 case "4" -> handleDeleteLink(scanner);
                 case "5" -> handleEditUserSettings(scanner);
                 case "0" -> {
@@ -155,18 +165,28 @@ public class ConsoleApplication {
         }
     }
 
-    private void handleListLinks() {
+    private void handleListLinks(Scanner scanner) {
         try {
-            List<ShortLink> links = service.getUserLinks(currentUserId);
-            if (links.isEmpty()) {
+            LinkPage page = service.getUserLinks(currentUserId, null, LINKS_PAGE_SIZE);
+            if (page.links().isEmpty()) {
                 System.out.println("У вас пока нет ссылок.");
                 return;
             }
-            for (ShortLink l : links) {
-                System.out.printf("Код: %s | URL: %s | %d/%d | Активна: %s | Истекает: %s%n",
-                        l.getShortCode(), l.getOriginalUrl(),
-                        l.getClickCount(), l.getMaxClicks(),
-                        l.isActive(), l.getExpiresAt());
+            while (true) {
+                for (ShortLink l : page.links()) {
+                    System.out.printf("Код: %s | URL: %s | %d/%d | Активна: %s | Истекает: %s%n",
+                            l.getShortCode(), l.getOriginalUrl(),
+                            l.getClickCount(), l.getMaxClicks(),
+                            l.isActive(), l.getExpiresAt());
+                }
+                if (!page.hasNext()) {
+                    return;
+                }
+                System.out.print("Показать следующую страницу? (Enter — да, любой другой ввод — нет): ");
+                if (!scanner.nextLine().isBlank()) {
+                    return;
+                }
+                page = service.getUserLinks(currentUserId, page.nextCursor(), LINKS_PAGE_SIZE);
             }
         } catch (Exception e) {
             System.out.println("Ошибка: " + e.getMessage());
@@ -231,18 +251,55 @@ public class ConsoleApplication {
 
     public static void main(String[] args) {
         ExpirationCleanupService cleanupService = null;
+        ClickWriteBehindBuffer clickBuffer = null;
+        ShortCodePool codePool = null;
+        ExpiredLinkDeleter expiredDeleter = null;
+        RedirectHttpServer httpServer = null;
+        ShortLinkRepository linkRepository = null;
+        MetricsFileWriter metricsWriter = null;
         try {
             AppConfig config = AppConfig.loadDefault();
 
-            ShortLinkRepository linkRepository = new FileJsonShortLinkRepository(config.dbFilePath());
+            ShortenerMetrics metrics = new ShortenerMetrics();
+            linkRepository = ShortLinkRepositories.open(config, metrics);
             UserRepository userRepository = new FileJsonUserRepository(config.usersDbFilePath());
 
             UserService userService = new UserService(userRepository, config);
-            UrlShortenerService urlService = new UrlShortenerService(linkRepository, config, userRepository);
+            if (config.clickFlush().enabled()) {
+                clickBuffer = new ClickWriteBehindBuffer(linkRepository,
+                        config.clickFlush().intervalMillis(), config.clickFlush().threshold());
+                clickBuffer.start();
+            }
+            ShortCodeGenerator codeGenerator = ShortCodeGenerators.create(config, linkRepository, metrics);
+            if (codeGenerator instanceof ShortCodePool pool) {
+                codePool = pool;
+                codePool.start();
+            }
+            expiredDeleter = new ExpiredLinkDeleter(linkRepository);
+            expiredDeleter.start();
+            UrlShortenerService urlService = new UrlShortenerService(linkRepository, config, userRepository, clickBuffer,
+                    codeGenerator, expiredDeleter, metrics);
 
-            cleanupService = new ExpirationCleanupService(urlService);
+            cleanupService = new ExpirationCleanupService(urlService, config.cleanup(), metrics);
             cleanupService.start();
 
+            if (config.metrics().enabled()) {
+                metricsWriter = new MetricsFileWriter(metrics.registry(), Path.of(config.metrics().filePath()),
+                        config.metrics().intervalMillis());
+                metricsWriter.start();
+            }
+
+            if (config.http().enabled()) {
+                try {
+                    httpServer = new RedirectHttpServer(urlService, config);
+                    httpServer.start();
+                    System.out.println("HTTP-сервер переходов слушает порт " + httpServer.port());
+                } catch (IOException e) {
+                    // занятый порт не должен мешать работе консоли
+                    System.out.println("⚠️ HTTP-сервер переходов не запущен: " + e.getMessage());
+                }
+            }
+
             ConsoleApplication app = new ConsoleApplication(urlService, userService, config);
             app.run();
 
@@ -253,9 +310,45 @@ public class ConsoleApplication {
         } catch (Exception e) {
             System.out.println("Неожиданная ошибка: " + e.getMessage());
         } finally {
+            if (httpServer != null) {
+                httpServer.stop();
+            }
             if (cleanupService != null) {
                 cleanupService.stop();
             }
+            if (codePool != null) {
+                codePool.stop();
+            }
+            if (expiredDeleter != null) {
+                try {
+                    expiredDeleter.stop();
+                } catch (DataAccessException e) {
+                    System.out.println("Ошибка удаления просроченных ссылок: " + e.getMessage());
+                }
+            }
+            // накопленные клики сохраняются до закрытия хранилища
+            if (clickBuffer != null) {
+                try {
+                    clickBuffer.stop();
+                } catch (DataAccessException e) {
+                    System.out.println("Ошибка сохранения счётчиков переходов: " + e.getMessage());
+                }
+            }
+            // последний снимок метрик пишется, когда все потоки уже остановлены
+            if (metricsWriter != null) {
+                try {
+                    metricsWriter.stop();
+                } catch (IOException e) {
+                    System.out.println("Ошибка записи файла метрик: " + e.getMessage());
+                }
+            }
+            if (linkRepository instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    System.out.println("Ошибка закрытия хранилища ссылок: " + e.getMessage());
+                }
+            }
         }
     }
 
@@ -0,0 +1,235 @@
+package app;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import config.AppConfig;
+import exception.ClickLimitExceededException;
+import exception.DataAccessException;
+import exception.LinkExpiredException;
+import exception.LinkNotFoundException;
+import model.ResolveResult;
+import service.UrlShortenerService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP-фронт переходов на встроенном в JDK сервере: GET /{code} отвечает 302 на исходный URL.
+ * Код 302, а не 301: постоянный редирект браузер запоминает и дальше не спрашивает сервер,
+ * а каждый переход должен засчитываться в лимит. Соединения переиспользуются (HTTP/1.1 keep-alive),
+ * каждый запрос выполняется в своём виртуальном потоке, если JVM их поддерживает, иначе — в пуле потоков.
+ * Заголовки ответа для ссылки собираются один раз и переиспользуются, пока URL по коду не изменится.
+ * HEAD отвечает так же, как GET, но переход не засчитывается.
+ */
+public class RedirectHttpServer {
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_CACHED_HEADERS = 100_000;
+
+    private static final List<String> NO_STORE = List.of("no-store");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final List<String> TEXT_PLAIN = List.of("text/plain; charset=utf-8");
+    private static final List<String> ALLOW_GET = List.of("GET, HEAD");
+    private static final byte[] NOT_FOUND_BODY = "Ссылка не найдена\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GONE_EXPIRED_BODY = "Срок жизни ссылки истёк\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GONE_LIMIT_BODY = "Лимит переходов исчерпан\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ERROR_BODY = "Хранилище недоступно\n".getBytes(StandardCharsets.UTF_8);
+
+    // Готовое значение Location для кода; url сверяется по ссылке, чтобы заметить смену URL
+    private record Redirect(String url, List<String> location) {
+    }
+
+    private final UrlShortenerService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, Redirect> redirects = new ConcurrentHashMap<>();
+
+    public RedirectHttpServer(UrlShortenerService service, InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public RedirectHttpServer(UrlShortenerService service, AppConfig config) throws IOException {
+        this(service, bindAddress(config));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Адрес из app.http.host или хост из app.base.url, если он принадлежит этой машине;
+     * иначе сервер слушает все интерфейсы (домен коротких ссылок обычно указывает на балансировщик).
+     */
+    static InetSocketAddress bindAddress(AppConfig config) {
+        int port = config.http().port();
+        String host = config.http().bindHost().isEmpty() ? hostOf(config.baseShortUrl()) : config.http().bindHost();
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            if (address.isAnyLocalAddress() || address.isLoopbackAddress()
+                    || NetworkInterface.getByInetAddress(address) != null) {
+                return new InetSocketAddress(address, port);
+            }
+        } catch (IOException e) {
+            // хост не разрешается — слушаем все интерфейсы
+        }
+        return new InetSocketAddress(port);
+    }
+
+    private static String hostOf(String baseUrl) {
+        String withScheme = baseUrl.contains("://") ? baseUrl : "http://" + baseUrl;
+        String host = URI.create(withScheme).getHost();
+        return host == null ? baseUrl : host;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().put("Allow", ALLOW_GET);
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            String code = path.length() > 1 ? path.substring(1) : "";
+            if (code.isEmpty() || code.indexOf('/') >= 0) {
+                sendText(exchange, 404, NOT_FOUND_BODY);
+                return;
+            }
+            if (method.equals("HEAD")) {
+                peek(exchange, code);
+                return;
+            }
+            try {
+                sendRedirect(exchange, code, service.resolveShortLink(code));
+            } catch (LinkNotFoundException e) {
+                sendText(exchange, 404, NOT_FOUND_BODY);
+            } catch (LinkExpiredException e) {
+                sendText(exchange, 410, GONE_EXPIRED_BODY);
+            } catch (ClickLimitExceededException e) {
+                sendText(exchange, 410, GONE_LIMIT_BODY);
+            } catch (DataAccessException e) {
+                sendText(exchange, 503, ERROR_BODY);
+            }
+        }
+    }
+
+    /**
+     * HEAD — тот же статус и Location, что у GET, но без перехода: проверщики ссылок и боты предпросмотра
+     * не должны расходовать лимит.
+     */
+    private void peek(HttpExchange exchange, String code) throws IOException {
+        ResolveResult result;
+        try {
+            result = service.resolveShortLinks(List.of(code), true).get(0);
+        } catch (DataAccessException e) {
+            sendText(exchange, 503, ERROR_BODY);
+            return;
+        }
+        if (result.isResolved()) {
+            sendRedirect(exchange, code, result.originalUrl());
+            return;
+        }
+        switch (result.outcome()) {
+            case NOT_FOUND -> sendText(exchange, 404, NOT_FOUND_BODY);
+            case EXPIRED -> sendText(exchange, 410, GONE_EXPIRED_BODY);
+            case DEACTIVATED -> sendText(exchange, 410, GONE_LIMIT_BODY);
+        }
+    }
+
+    private void sendRedirect(HttpExchange exchange, String code, String url) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.put("Location", redirectFor(code, url).location());
+        headers.put("Cache-Control", NO_STORE);
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    private Redirect redirectFor(String code, String url) {
+        Redirect cached = redirects.get(code);
+        if (cached != null && cached.url().equals(url)) {
+            return cached;
+        }
+        if (redirects.size() >= MAX_CACHED_HEADERS) {
+            redirects.clear();
+        }
+        Redirect redirect = new Redirect(url, List.of(asciiLocation(url)));
+        redirects.put(code, redirect);
+        return redirect;
+    }
+
+    /**
+     * Заголовки уходят в ISO-8859-1, поэтому символы вне ASCII (кириллица в пути и т.п.)
+     * кодируются как UTF-8 в процентной записи; уже закодированные последовательности не трогаются.
+     */
+    static String asciiLocation(String url) {
+        StringBuilder out = null;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c > 0x20 && c < 0x7F) {
+                if (out != null) {
+                    out.append(c);
+                }
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder(url.length() + 16).append(url, 0, i);
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+            for (byte b : url.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            i = end - 1;
+        }
+        return out == null ? url : out.toString();
+    }
+
+    private static void sendText(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().put("Content-Type", TEXT_PLAIN);
+        exchange.getResponseHeaders().put("Cache-Control", NO_STORE);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Виртуальный поток на запрос (JDK 21+); на более старых JVM — пул потоков, растущий по нагрузке.
+     * Проект собирается под старую версию языка, поэтому фабрика ищется через reflection.
+     */
+    private static ExecutorService requestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -8,7 +8,11 @@ import java.time.Duration;
 import java.util.Properties;
 
 public record AppConfig(Duration linkTtl, int shortCodeLength, int minClicksAllowed, int maxClicksAllowed,
-                        int defaultMaxClicks, String dbFilePath, String usersDbFilePath, String baseShortUrl) {
+                        int defaultMaxClicks, String dbFilePath, String usersDbFilePath, String baseShortUrl,
+                        StorageConfig storage, ClickFlushConfig clickFlush, CleanupConfig cleanup,
+                        ShortCodeConfig shortCode, BloomFilterConfig bloomFilter, CacheConfig cache,
+                        NegativeCacheConfig negativeCache, HttpConfig http,
+                        MetricsConfig metrics) {
 
     public AppConfig {
 
@@ -33,9 +37,48 @@ public record AppConfig(Duration linkTtl, int shortCodeLength, int minClicksAllo
         if (baseShortUrl == null || baseShortUrl.isBlank()) {
             throw new IllegalArgumentException("Базовый URL не может быть пустым");
         }
+        if (storage == null) {
+            throw new IllegalArgumentException("Настройки хранилища не заданы");
+        }
+        if (clickFlush == null) {
+            throw new IllegalArgumentException("Настройки сброса кликов не заданы");
+        }
+        if (cleanup == null) {
+            throw new IllegalArgumentException("Настройки очистки ссылок не заданы");
+        }
+        if (shortCode == null) {
+            throw new IllegalArgumentException("Настройки генерации кодов не заданы");
+        }
+        if (bloomFilter == null) {
+            throw new IllegalArgumentException("Настройки фильтра кодов не заданы");
+        }
+        if (cache == null) {
+            throw new IllegalArgumentException("Настройки кэша ссылок не заданы");
+        }
+        if (negativeCache == null) {
+            throw new IllegalArgumentException("Настройки кэша мёртвых кодов не заданы");
+        }
+        if (http == null) {
+            throw new IllegalArgumentException("Настройки HTTP-сервера не заданы");
+        }
+        if (metrics == null) {
+            throw new IllegalArgumentException("Настройки метрик не заданы");
+        }
+        if (shortCode.growThreshold() > 0 && shortCode.maxLength() < shortCodeLength) {
+            throw new IllegalArgumentException("Максимальная длина кода не может быть меньше начальной");
+        }
 
     }
 
+    public AppConfig(Duration linkTtl, int shortCodeLength, int minClicksAllowed, int maxClicksAllowed,
+                     int defaultMaxClicks, String dbFilePath, String usersDbFilePath, String baseShortUrl) {
+        this(linkTtl, shortCodeLength, minClicksAllowed, maxClicksAllowed, defaultMaxClicks,
+                dbFilePath, usersDbFilePath, baseShortUrl, StorageConfig.defaults(), ClickFlushConfig.defaults(),
+                CleanupConfig.defaults(), ShortCodeConfig.defaults(), BloomFilterConfig.defaults(),
+                CacheConfig.defaults(), NegativeCacheConfig.defaults(),
+                HttpConfig.defaults(), MetricsConfig.defaults());
+    }
+
 
     public static AppConfig loadDefault() throws ConfigException {
         return load("app.properties");
@@ -64,6 +107,60 @@ public record AppConfig(Duration linkTtl, int shortCodeLength, int minClicksAllo
             String dbFile = props.getProperty("app.db.file");
             String baseUrl = props.getProperty("app.base.url");
             String usersDbFilePath = props.getProperty("app.users.db.file");
+            StorageConfig defaults = StorageConfig.defaults();
+            StorageConfig storage = new StorageConfig(
+                StorageMode.parse(props.getProperty("app.db.mode", defaults.mode().name())),
+                props.getProperty("app.db.log.dir", defaults.logDirPath()),
+                DurabilityPolicy.parse(props.getProperty("app.db.log.fsync", defaults.durability().name())),
+                longProperty(props, "app.db.log.fsync.interval.ms", defaults.fsyncIntervalMillis()),
+                longProperty(props, "app.db.log.compaction.threshold.bytes", defaults.compactionThresholdBytes()),
+                longProperty(props, "app.db.log.compaction.check.ms", defaults.compactionCheckMillis()),
+                props.getProperty("app.db.mmap.dir", defaults.mmapDirPath()),
+                intProperty(props, "app.db.mmap.capacity", defaults.mmapCapacity())
+            );
+            ClickFlushConfig clickDefaults = ClickFlushConfig.defaults();
+            ClickFlushConfig clickFlush = new ClickFlushConfig(
+                longProperty(props, "app.clicks.flush.interval.ms", clickDefaults.intervalMillis()),
+                intProperty(props, "app.clicks.flush.threshold", clickDefaults.threshold())
+            );
+            CleanupConfig cleanupDefaults = CleanupConfig.defaults();
+            CleanupConfig cleanup = new CleanupConfig(
+                longProperty(props, "app.cleanup.max.interval.ms", cleanupDefaults.maxIntervalMillis()),
+                intProperty(props, "app.cleanup.batch.size", cleanupDefaults.batchSize()),
+                longProperty(props, "app.cleanup.tick.budget.ms", cleanupDefaults.tickBudgetMillis())
+            );
+            ShortCodeConfig codeDefaults = ShortCodeConfig.defaults();
+            ShortCodeConfig shortCode = new ShortCodeConfig(
+                CodeStrategy.parse(props.getProperty("app.shortCode.strategy", codeDefaults.strategy().name())),
+                props.getProperty("app.shortCode.secret", codeDefaults.secret()),
+                props.getProperty("app.shortCode.sequence.file", codeDefaults.sequenceFilePath()),
+                intProperty(props, "app.shortCode.sequence.block", codeDefaults.blockSize()),
+                intProperty(props, "app.shortCode.pool.size", codeDefaults.poolSize()),
+                intProperty(props, "app.shortCode.pool.lowWater", codeDefaults.poolLowWater()),
+                intProperty(props, "app.shortCode.max.length", codeDefaults.maxLength()),
+                doubleProperty(props, "app.shortCode.grow.threshold", codeDefaults.growThreshold())
+            );
+            BloomFilterConfig bloomDefaults = BloomFilterConfig.defaults();
+            BloomFilterConfig bloomFilter = new BloomFilterConfig(
+                longProperty(props, "app.db.bloom.expected", bloomDefaults.expectedCodes()),
+                doubleProperty(props, "app.db.bloom.fpp", bloomDefaults.falsePositiveRate())
+            );
+            CacheConfig cache = new CacheConfig(
+                intProperty(props, "app.db.cache.size", CacheConfig.defaults().maxEntries())
+            );
+            NegativeCacheConfig negativeDefaults = NegativeCacheConfig.defaults();
+            NegativeCacheConfig negativeCache = new NegativeCacheConfig(
+                longProperty(props, "app.resolve.negative.ttl.ms", negativeDefaults.ttlMillis()),
+                intProperty(props, "app.resolve.negative.max", negativeDefaults.maxEntries())
+            );
+            HttpConfig http = new HttpConfig(
+                intProperty(props, "app.http.port", HttpConfig.defaults().port()),
+                props.getProperty("app.http.host", HttpConfig.defaults().bindHost()).trim()
+            );
+            MetricsConfig metrics = new MetricsConfig(
+                props.getProperty("app.metrics.file", MetricsConfig.defaults().filePath()).trim(),
+                longProperty(props, "app.metrics.interval.ms", MetricsConfig.defaults().intervalMillis())
+            );
 
             return new AppConfig(
                 Duration.ofHours(ttlHours),
@@ -73,12 +170,37 @@ public record AppConfig(Duration linkTtl, int shortCodeLength, int minClicksAllo
                 defaultMaxClicks,
                 dbFile,
                 usersDbFilePath,
-                baseUrl
+                baseUrl,
+                storage,
+                clickFlush,
+                cleanup,
+                shortCode,
+                bloomFilter,
+                cache,
+                negativeCache,
+                http,
+                metrics
             );
         } catch (IllegalArgumentException e) {
             throw new ConfigException("Некорректные значения в конфигурации: " + e.getMessage(), e);
         }
     }
+
+    // Необязательные параметры: если ключа нет в файле, берётся значение по умолчанию
+    private static long longProperty(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static double doubleProperty(Properties props, String key, double defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    private static int intProperty(Properties props, String key, int defaultValue) {
+        String value = props.getProperty(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
 }
 
 // 310f0958-81b6-4492-aa66-4c54b180a89d
@@ -0,0 +1,25 @@
+package config;
+
+/**
+ * Фильтр Блума по живым коротким кодам перед хранилищем: рассчитан на expectedCodes кодов
+ * с долей ложных срабатываний falsePositiveRate и растёт при перестройке. expectedCodes == 0 — фильтр не используется.
+ */
+public record BloomFilterConfig(long expectedCodes, double falsePositiveRate) {
+
+    public BloomFilterConfig {
+        if (expectedCodes < 0) {
+            throw new IllegalArgumentException("Ожидаемое число кодов не может быть отрицательным");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Доля ложных срабатываний фильтра должна быть в диапазоне (0, 1)");
+        }
+    }
+
+    public boolean enabled() {
+        return expectedCodes > 0;
+    }
+
+    public static BloomFilterConfig defaults() {
+        return new BloomFilterConfig(1_000_000, 0.01);
+    }
+}
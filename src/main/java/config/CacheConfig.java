@@ -0,0 +1,21 @@
+package config;
+
+/**
+ * Кэш ссылок по коду перед хранилищем: не больше maxEntries ссылок. maxEntries == 0 — кэш не используется.
+ */
+public record CacheConfig(int maxEntries) {
+
+    public CacheConfig {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Размер кэша ссылок не может быть отрицательным");
+        }
+    }
+
+    public boolean enabled() {
+        return maxEntries > 0;
+    }
+
+    public static CacheConfig defaults() {
+        return new CacheConfig(10_000);
+    }
+}
@@ -0,0 +1,25 @@
+package config;
+
+/**
+ * Фоновая очистка просроченных ссылок: поток просыпается к ближайшему сроку истечения,
+ * но не реже чем раз в maxIntervalMillis, и удаляет ссылки пачками по batchSize,
+ * тратя на один проход не больше tickBudgetMillis.
+ */
+public record CleanupConfig(long maxIntervalMillis, int batchSize, long tickBudgetMillis) {
+
+    public CleanupConfig {
+        if (maxIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Интервал очистки должен быть > 0");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пачки очистки должен быть > 0");
+        }
+        if (tickBudgetMillis <= 0) {
+            throw new IllegalArgumentException("Бюджет прохода очистки должен быть > 0");
+        }
+    }
+
+    public static CleanupConfig defaults() {
+        return new CleanupConfig(60_000, 500, 20);
+    }
+}
@@ -0,0 +1,25 @@
+package config;
+
+/**
+ * Отложенная запись счётчиков переходов: накопленные клики сбрасываются в хранилище
+ * раз в intervalMillis или при threshold изменённых ссылках. intervalMillis == 0 — сохранять каждый переход сразу.
+ */
+public record ClickFlushConfig(long intervalMillis, int threshold) {
+
+    public ClickFlushConfig {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Интервал сброса кликов не может быть отрицательным");
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Порог сброса кликов должен быть > 0");
+        }
+    }
+
+    public boolean enabled() {
+        return intervalMillis > 0;
+    }
+
+    public static ClickFlushConfig defaults() {
+        return new ClickFlushConfig(1000, 1000);
+    }
+}
@@ -0,0 +1,16 @@
+package config;
+
+public enum CodeStrategy {
+    // Случайный код, свободный код ищется проверками в хранилище
+    RANDOM,
+    // Номер из счётчика, переставленный ключом по пространству кодов: коды не повторяются без проверок
+    SEQUENCE;
+
+    public static CodeStrategy parse(String value) {
+        try {
+            return CodeStrategy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная стратегия генерации кодов: " + value);
+        }
+    }
+}
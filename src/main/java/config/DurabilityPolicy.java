@@ -0,0 +1,18 @@
+package config;
+
+public enum DurabilityPolicy {
+    // Записи только передаются ОС, fsync не выполняется
+    NONE,
+    // fsync раз в заданный интервал; вызывающий ждёт только записи своей пачки в файл
+    INTERVAL,
+    // fsync после каждой пачки; вызывающий ждёт, пока его пачка окажется на диске
+    BATCH;
+
+    public static DurabilityPolicy parse(String value) {
+        try {
+            return DurabilityPolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная политика fsync: " + value);
+        }
+    }
+}
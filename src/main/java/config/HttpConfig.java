@@ -0,0 +1,26 @@
+package config;
+
+/**
+ * HTTP-сервер переходов: порт (0 — сервер не запускается) и адрес, на котором он слушает.
+ * Пустой bindHost — хост из app.base.url, если это адрес этой машины, иначе все интерфейсы.
+ * По умолчанию сервер выключен: консольный запуск не должен открывать порт наружу без явной настройки.
+ */
+public record HttpConfig(int port, String bindHost) {
+
+    public HttpConfig {
+        if (port < 0 || port > 65_535) {
+            throw new IllegalArgumentException("Порт HTTP-сервера должен быть от 0 до 65535");
+        }
+        if (bindHost == null) {
+            throw new IllegalArgumentException("Адрес HTTP-сервера не задан");
+        }
+    }
+
+    public boolean enabled() {
+        return port > 0;
+    }
+
+    public static HttpConfig defaults() {
+        return new HttpConfig(0, "");
+    }
+}
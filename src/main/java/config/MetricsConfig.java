@@ -0,0 +1,24 @@
+package config;
+
+/**
+ * Выгрузка метрик в файл в формате Prometheus раз в intervalMillis. intervalMillis == 0 — файл не пишется.
+ */
+public record MetricsConfig(String filePath, long intervalMillis) {
+
+    public MetricsConfig {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Интервал записи метрик не может быть отрицательным");
+        }
+        if (intervalMillis > 0 && (filePath == null || filePath.isBlank())) {
+            throw new IllegalArgumentException("Путь к файлу метрик не может быть пустым");
+        }
+    }
+
+    public boolean enabled() {
+        return intervalMillis > 0;
+    }
+
+    public static MetricsConfig defaults() {
+        return new MetricsConfig("src/db/metrics.prom", 15_000);
+    }
+}
@@ -0,0 +1,25 @@
+package config;
+
+/**
+ * Кэш «мёртвых» кодов: не найденные, просроченные и деактивированные коды запоминаются на ttlMillis,
+ * не больше maxEntries штук. ttlMillis == 0 — каждый запрос идёт в хранилище.
+ */
+public record NegativeCacheConfig(long ttlMillis, int maxEntries) {
+
+    public NegativeCacheConfig {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Время жизни записи кэша мёртвых кодов не может быть отрицательным");
+        }
+        if (ttlMillis > 0 && maxEntries <= 0) {
+            throw new IllegalArgumentException("Размер кэша мёртвых кодов должен быть > 0");
+        }
+    }
+
+    public boolean enabled() {
+        return ttlMillis > 0;
+    }
+
+    public static NegativeCacheConfig defaults() {
+        return new NegativeCacheConfig(5_000, 100_000);
+    }
+}
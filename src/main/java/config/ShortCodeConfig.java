@@ -0,0 +1,56 @@
+package config;
+
+import model.ShortCodeCodec;
+
+/**
+ * Генерация коротких кодов. Для стратегии SEQUENCE номера выдаются блоками по blockSize,
+ * верхняя граница выданных номеров хранится в sequenceFilePath, а secret задаёт перестановку номеров в коды.
+ * Для стратегии RANDOM фоновый поток держит запас из poolSize проверенных кодов и доливает его,
+ * когда остаётся poolLowWater; poolSize == 0 — коды генерируются и проверяются в потоке запроса.
+ * Случайные коды удлиняются на символ (до maxLength), когда оценка заполненности кодов текущей длины
+ * превышает growThreshold; growThreshold == 0 — длина не меняется.
+ */
+public record ShortCodeConfig(CodeStrategy strategy, String secret, String sequenceFilePath, int blockSize,
+                              int poolSize, int poolLowWater, int maxLength, double growThreshold) {
+
+    public ShortCodeConfig {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Стратегия генерации кодов не задана");
+        }
+        if (strategy == CodeStrategy.SEQUENCE && (secret == null || secret.isBlank())) {
+            throw new IllegalArgumentException("Для стратегии sequence нужен секрет перестановки");
+        }
+        if (sequenceFilePath == null || sequenceFilePath.isBlank()) {
+            throw new IllegalArgumentException("Путь к файлу счётчика кодов не может быть пустым");
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока номеров должен быть > 0");
+        }
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("Размер запаса кодов не может быть отрицательным");
+        }
+        if (poolSize > 0 && (poolLowWater < 0 || poolLowWater >= poolSize)) {
+            throw new IllegalArgumentException("Порог дозаливки запаса кодов должен быть от 0 до размера запаса");
+        }
+        if (maxLength <= 0) {
+            throw new IllegalArgumentException("Максимальная длина кода должна быть > 0");
+        }
+        if (growThreshold < 0 || growThreshold >= 1) {
+            throw new IllegalArgumentException("Порог заполненности кодов должен быть в диапазоне [0, 1)");
+        }
+    }
+
+    public boolean poolEnabled() {
+        return strategy == CodeStrategy.RANDOM && poolSize > 0;
+    }
+
+    public static ShortCodeConfig sequence(String secret, String sequenceFilePath) {
+        return new ShortCodeConfig(CodeStrategy.SEQUENCE, secret, sequenceFilePath, 1000, 0, 0,
+                ShortCodeCodec.MAX_PACKED_LENGTH, 0);
+    }
+
+    public static ShortCodeConfig defaults() {
+        return new ShortCodeConfig(CodeStrategy.RANDOM, "", "src/db/shortcode.seq", 1000, 1024, 256,
+                ShortCodeCodec.MAX_PACKED_LENGTH, 0.1);
+    }
+}
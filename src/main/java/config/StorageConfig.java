@@ -0,0 +1,64 @@
+package config;
+
+public record StorageConfig(StorageMode mode, String logDirPath,
+                            DurabilityPolicy durability, long fsyncIntervalMillis,
+                            long compactionThresholdBytes, long compactionCheckMillis,
+                            String mmapDirPath, int mmapCapacity) {
+
+    private static final String DEFAULT_MMAP_DIR = "src/db/links-mmap";
+    private static final int DEFAULT_MMAP_CAPACITY = 1_000_000;
+
+    public StorageConfig {
+        if (mode == null) {
+            throw new IllegalArgumentException("Режим хранения не задан");
+        }
+        if (logDirPath == null || logDirPath.isBlank()) {
+            throw new IllegalArgumentException("Каталог журнала ссылок не может быть пустым");
+        }
+        if (durability == null) {
+            throw new IllegalArgumentException("Политика fsync не задана");
+        }
+        if (durability == DurabilityPolicy.INTERVAL && fsyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Интервал fsync должен быть > 0");
+        }
+        if (compactionThresholdBytes < 0) {
+            throw new IllegalArgumentException("Порог компактификации журнала не может быть отрицательным");
+        }
+        if (compactionThresholdBytes > 0 && compactionCheckMillis <= 0) {
+            throw new IllegalArgumentException("Интервал проверки компактификации должен быть > 0");
+        }
+        if (mmapDirPath == null || mmapDirPath.isBlank()) {
+            throw new IllegalArgumentException("Каталог отображаемого хранилища не может быть пустым");
+        }
+        if (mmapCapacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость отображаемого хранилища должна быть > 0");
+        }
+    }
+
+    public StorageConfig(StorageMode mode, String logDirPath,
+                         DurabilityPolicy durability, long fsyncIntervalMillis,
+                         long compactionThresholdBytes, long compactionCheckMillis) {
+        this(mode, logDirPath, durability, fsyncIntervalMillis, compactionThresholdBytes, compactionCheckMillis,
+                DEFAULT_MMAP_DIR, DEFAULT_MMAP_CAPACITY);
+    }
+
+    /**
+     * Журнал в каталоге logDirPath с fsync после каждой пачки и без фоновой компактификации.
+     */
+    public static StorageConfig log(String logDirPath) {
+        return new StorageConfig(StorageMode.LOG, logDirPath, DurabilityPolicy.BATCH, 0, 0, 0);
+    }
+
+    /**
+     * Отображаемое в память хранилище в каталоге dirPath на capacity ссылок.
+     */
+    public static StorageConfig mmap(String dirPath, int capacity) {
+        return new StorageConfig(StorageMode.MMAP, "src/db/links-log", DurabilityPolicy.BATCH, 0, 0, 0,
+                dirPath, capacity);
+    }
+
+    public static StorageConfig defaults() {
+        return new StorageConfig(StorageMode.JSON, "src/db/links-log", DurabilityPolicy.BATCH, 1000,
+                16L * 1024 * 1024, 10_000, DEFAULT_MMAP_DIR, DEFAULT_MMAP_CAPACITY);
+    }
+}
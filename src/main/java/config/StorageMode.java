@@ -0,0 +1,18 @@
+package config;
+
+public enum StorageMode {
+    // Весь links.json перезаписывается при каждом изменении
+    JSON,
+    // Каждое изменение дописывается одной записью в журнал, состояние восстанавливается его проигрыванием
+    LOG,
+    // Записи фиксированного размера в отображённом в память файле, хэш-индекс по shortCode на диске
+    MMAP;
+
+    public static StorageMode parse(String value) {
+        try {
+            return StorageMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный режим хранения: " + value);
+        }
+    }
+}
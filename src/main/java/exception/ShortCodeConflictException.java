@@ -0,0 +1,11 @@
+package exception;
+
+/**
+ * Короткий код уже занят ссылкой с другим id; хранилище не заменяет чужую ссылку.
+ */
+public class ShortCodeConflictException extends DataAccessException {
+
+    public ShortCodeConflictException(String shortCode) {
+        super("Короткий код " + shortCode + " уже занят другой ссылкой", null);
+    }
+}
@@ -0,0 +1,40 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие Flight Recorder для одного прохода фоновой очистки; выключено по умолчанию.
+ */
+@Name("shortener.Cleanup")
+@Label("Проход очистки просроченных ссылок")
+@Category({"URL Shortener", "Service"})
+@Enabled(false)
+@Threshold("10 ms")
+@StackTrace(false)
+public final class CleanupEvent extends Event {
+
+    @Label("Удалено ссылок")
+    int removed;
+
+    @Label("Пачек")
+    int batches;
+
+    @Label("Остались просроченные")
+    boolean backlog;
+
+    public void report(int removed, int batches, boolean backlog) {
+        end();
+        if (shouldCommit()) {
+            this.removed = removed;
+            this.batches = batches;
+            this.backlog = backlog;
+            commit();
+        }
+    }
+}
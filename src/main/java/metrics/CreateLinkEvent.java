@@ -0,0 +1,32 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие Flight Recorder для создания короткой ссылки; выключено по умолчанию.
+ */
+@Name("shortener.CreateLink")
+@Label("Создание короткой ссылки")
+@Category({"URL Shortener", "Service"})
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public final class CreateLinkEvent extends Event {
+
+    @Label("Код")
+    String shortCode;
+
+    public void report(String shortCode) {
+        end();
+        if (shouldCommit()) {
+            this.shortCode = shortCode;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+/**
+ * Снимок {@link LatencyHistogram}: число значений по корзинам, их количество, сумма и максимум (нс).
+ */
+public record HistogramSnapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+
+    /**
+     * Значение квантиля q (0..1) с точностью до корзины; 0, если значений нет.
+     */
+    public long valueAtQuantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public double meanNanos() {
+        return count == 0 ? 0 : (double) sumNanos / count;
+    }
+}
@@ -0,0 +1,84 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Раз в intervalMillis записывает выгрузку реестра в формате Prometheus в файл
+ * (например, для textfile-коллектора node_exporter). Файл заменяется атомарно,
+ * поэтому читатель никогда не видит его наполовину записанным.
+ */
+public class MetricsFileWriter implements Runnable {
+
+    private final MetricsRegistry registry;
+    private final Path file;
+    private final long intervalMillis;
+    private volatile boolean running = false;
+    private Thread workerThread;
+
+    public MetricsFileWriter(MetricsRegistry registry, Path file, long intervalMillis) {
+        this.registry = registry;
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerThread = new Thread(this, "metrics-writer-thread");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Останавливает фоновый поток и записывает последний снимок.
+     */
+    public void stop() throws IOException {
+        running = false;
+        if (workerThread != null) {
+            LockSupport.unpark(workerThread);
+            try {
+                workerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        write();
+    }
+
+    public void write() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            registry.writePrometheus(writer);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+            if (!running) {
+                break;
+            }
+            try {
+                write();
+            } catch (IOException e) {
+                System.out.println("⚠️ Ошибка записи файла метрик: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("⚠️ Неожиданная ошибка в потоке записи метрик: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Именованные метрики и их выгрузка в текстовом формате Prometheus.
+ * Регистрация (обычно при запуске) идёт под монитором; сами счётчики и гистограммы
+ * обновляются без него. Повторная регистрация того же имени и меток возвращает прежний объект.
+ * Метки задаются парами «имя, значение».
+ */
+public final class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private record Family(Type type, String help, Map<String, Object> series) {
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) register(name, Type.COUNTER, help, labels, new LongAdder());
+    }
+
+    /**
+     * Счётчик, который ведёт другой объект: значение читается в момент выгрузки.
+     */
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        register(name, Type.COUNTER, help, labels, value);
+    }
+
+    /**
+     * Гистограмма длительностей; выгружается как summary в секундах с квантилями 0.5–0.999.
+     */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) register(name, Type.SUMMARY, help, labels, new LatencyHistogram());
+    }
+
+    /**
+     * Значение, которое вычисляется в момент выгрузки.
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        register(name, Type.GAUGE, help, labels, value);
+    }
+
+    public synchronized void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type().text).append('\n');
+            for (Map.Entry<String, Object> series : family.series().entrySet()) {
+                writeSeries(out, name, series.getKey(), series.getValue());
+            }
+        }
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        try {
+            writePrometheus(out);
+        } catch (IOException e) {
+            // StringBuilder не бросает IOException
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private synchronized Object register(String name, Type type, String help, String[] labels, Object metric) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Метки задаются парами имя–значение: " + name);
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help, new LinkedHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException("Метрика " + name + " уже зарегистрирована с другим типом");
+        }
+        return family.series().computeIfAbsent(formatLabels(labels), l -> metric);
+    }
+
+    private static void writeSeries(Appendable out, String name, String labels, Object metric) throws IOException {
+        if (metric instanceof LongAdder counter) {
+            line(out, name, labels, Long.toString(counter.sum()));
+        } else if (metric instanceof LongSupplier counter) {
+            line(out, name, labels, Long.toString(counter.getAsLong()));
+        } else if (metric instanceof DoubleSupplier gauge) {
+            line(out, name, labels, Double.toString(gauge.getAsDouble()));
+        } else {
+            HistogramSnapshot snapshot = ((LatencyHistogram) metric).snapshot();
+            for (double q : QUANTILES) {
+                String quantile = "quantile=\"" + q + "\"";
+                line(out, name, labels.isEmpty() ? quantile : labels + "," + quantile,
+                        seconds(snapshot.valueAtQuantile(q)));
+            }
+            line(out, name + "_sum", labels, seconds(snapshot.sumNanos()));
+            line(out, name + "_count", labels, Long.toString(snapshot.count()));
+        }
+    }
+
+    private static void line(Appendable out, String name, String labels, String value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / NANOS_PER_SECOND);
+    }
+
+    private static String formatLabels(String[] labels) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие Flight Recorder для перехода по короткому коду. Выключено по умолчанию:
+ * пока запись его не включила, begin/end почти ничего не стоят, а поля не заполняются.
+ */
+@Name("shortener.Resolve")
+@Label("Переход по короткой ссылке")
+@Category({"URL Shortener", "Service"})
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public final class ResolveEvent extends Event {
+
+    @Label("Код")
+    String shortCode;
+
+    @Label("Исход")
+    String outcome;
+
+    /**
+     * Завершает событие и записывает его, если оно включено и длилось не меньше порога.
+     */
+    public void report(String shortCode, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.shortCode = shortCode;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package metrics;
+
+import model.ResolveOutcome;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики сервиса: задержки создания, перехода (по исходам), удаления, сброса хранилища
+ * на диск и проходов очистки. Все объекты создаются заранее, поэтому запись на горячем пути
+ * не выделяет память и не ищет метрику по имени.
+ */
+public final class ShortenerMetrics {
+
+    private final MetricsRegistry registry;
+
+    private final LatencyHistogram create;
+    private final LatencyHistogram createBatch;
+    private final LongAdder createdInBatches;
+    private final LatencyHistogram resolveOk;
+    private final LatencyHistogram resolveNotFound;
+    private final LatencyHistogram resolveExpired;
+    private final LatencyHistogram resolveLimit;
+    private final LatencyHistogram resolveError;
+    private final LatencyHistogram resolveBatch;
+    private final LongAdder resolvedInBatches;
+    private final LatencyHistogram delete;
+    private final LatencyHistogram storeFlush;
+    private final LongAdder storeFlushBytes;
+    private final LongAdder cleanupRuns;
+    private final LongAdder cleanupRemoved;
+    private final LatencyHistogram cleanupBatch;
+
+    /**
+     * Метрики в собственном реестре — например, когда их никто не выгружает.
+     */
+    public ShortenerMetrics() {
+        this(new MetricsRegistry());
+    }
+
+    public ShortenerMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.create = registry.histogram("shortener_create_seconds", "Создание короткой ссылки");
+        this.createBatch = registry.histogram("shortener_create_batch_seconds", "Создание пачки коротких ссылок");
+        this.createdInBatches = registry.counter("shortener_create_batch_links_total",
+                "Ссылок создано пачками");
+        String resolveHelp = "Переход по короткому коду";
+        this.resolveOk = registry.histogram("shortener_resolve_seconds", resolveHelp, "outcome", "ok");
+        this.resolveNotFound = registry.histogram("shortener_resolve_seconds", resolveHelp, "outcome", "not_found");
+        this.resolveExpired = registry.histogram("shortener_resolve_seconds", resolveHelp, "outcome", "expired");
+        this.resolveLimit = registry.histogram("shortener_resolve_seconds", resolveHelp, "outcome", "limit");
+        this.resolveError = registry.histogram("shortener_resolve_seconds", resolveHelp, "outcome", "error");
+        this.resolveBatch = registry.histogram("shortener_resolve_batch_seconds", "Переход по пачке коротких кодов");
+        this.resolvedInBatches = registry.counter("shortener_resolve_batch_codes_total",
+                "Кодов обработано пачками");
+        this.delete = registry.histogram("shortener_delete_seconds", "Удаление ссылки владельцем");
+        this.storeFlush = registry.histogram("shortener_store_flush_seconds",
+                "Запись изменений хранилища ссылок на диск");
+        this.storeFlushBytes = registry.counter("shortener_store_flush_bytes_total",
+                "Байт записано хранилищем ссылок");
+        this.cleanupRuns = registry.counter("shortener_cleanup_runs_total", "Проходы фоновой очистки");
+        this.cleanupRemoved = registry.counter("shortener_cleanup_removed_total",
+                "Просроченных ссылок удалено фоновой очисткой");
+        this.cleanupBatch = registry.histogram("shortener_cleanup_batch_seconds",
+                "Удаление одной пачки просроченных ссылок");
+    }
+
+    public MetricsRegistry registry() {
+        return registry;
+    }
+
+    public void recordCreate(long startNanos) {
+        create.recordSince(startNanos);
+    }
+
+    public void recordCreateBatch(long startNanos, int created) {
+        createBatch.recordSince(startNanos);
+        createdInBatches.add(created);
+    }
+
+    public void recordResolveBatch(long startNanos, int codes) {
+        resolveBatch.recordSince(startNanos);
+        resolvedInBatches.add(codes);
+    }
+
+    public void recordResolved(long startNanos) {
+        resolveOk.recordSince(startNanos);
+    }
+
+    /**
+     * Отказ в переходе; DEACTIVATED учитывается как исчерпанный лимит.
+     */
+    public void recordResolveRejected(ResolveOutcome outcome, long startNanos) {
+        LatencyHistogram histogram = switch (outcome) {
+            case NOT_FOUND -> resolveNotFound;
+            case EXPIRED -> resolveExpired;
+            case DEACTIVATED -> resolveLimit;
+        };
+        histogram.recordSince(startNanos);
+    }
+
+    public void recordResolveFailed(long startNanos) {
+        resolveError.recordSince(startNanos);
+    }
+
+    public void recordDelete(long startNanos) {
+        delete.recordSince(startNanos);
+    }
+
+    public void recordStoreFlush(long startNanos, long bytes) {
+        storeFlush.recordSince(startNanos);
+        storeFlushBytes.add(bytes);
+    }
+
+    public void recordCleanupBatch(long nanos) {
+        cleanupBatch.record(nanos);
+    }
+
+    public void recordCleanupRun(int removed) {
+        cleanupRuns.increment();
+        cleanupRemoved.add(removed);
+    }
+}
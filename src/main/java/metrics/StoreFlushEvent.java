@@ -0,0 +1,50 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Событие Flight Recorder для записи изменений хранилища ссылок на диск; выключено по умолчанию.
+ * lockWait — сколько изменение ждало монитора хранилища до начала записи
+ * (у журнала пишет один фоновый поток, и ожидания нет).
+ */
+@Name("shortener.StoreFlush")
+@Label("Запись хранилища ссылок")
+@Category({"URL Shortener", "Storage"})
+@Enabled(false)
+@Threshold("10 ms")
+@StackTrace(false)
+public final class StoreFlushEvent extends Event {
+
+    @Label("Хранилище")
+    String store;
+
+    @Label("Записей")
+    int records;
+
+    @Label("Записано")
+    @DataAmount
+    long bytes;
+
+    @Label("Ожидание монитора")
+    @Timespan
+    long lockWait;
+
+    public void report(String store, int records, long bytes, long lockWaitNanos) {
+        end();
+        if (shouldCommit()) {
+            this.store = store;
+            this.records = records;
+            this.bytes = bytes;
+            this.lockWait = lockWaitNanos;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие Flight Recorder для загрузки хранилища ссылок при старте; выключено по умолчанию.
+ */
+@Name("shortener.StoreLoad")
+@Label("Загрузка хранилища ссылок")
+@Category({"URL Shortener", "Storage"})
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+public final class StoreLoadEvent extends Event {
+
+    @Label("Хранилище")
+    String store;
+
+    @Label("Ссылок")
+    int links;
+
+    @Label("Прочитано")
+    @DataAmount
+    long bytes;
+
+    public void report(String store, int links, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.store = store;
+            this.links = links;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
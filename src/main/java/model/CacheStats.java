@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Снимок метрик кэша ссылок: попадания, промахи, вытеснения, отказы в допуске
+ * (новый ключ оказался реже вытесняемого) и текущий размер.
+ */
+public record CacheStats(long hits, long misses, long evictions, long rejections, int size) {
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
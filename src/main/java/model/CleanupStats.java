@@ -0,0 +1,11 @@
+package model;
+
+import java.time.Duration;
+
+/**
+ * Снимок метрик фоновой очистки. overdueLag — насколько самая старая ещё не удалённая
+ * просроченная ссылка пережила свой срок (Duration.ZERO, если очистка не отстаёт).
+ */
+public record CleanupStats(long ticks, long removedTotal, int lastTickRemoved,
+                           Duration lastBatchDuration, Duration maxBatchDuration, Duration overdueLag) {
+}
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Результат атомарной попытки засчитать переход по ссылке.
+ */
+public enum ClickResult {
+    // Переход засчитан, лимит ещё не исчерпан
+    ALLOWED,
+    // Переход засчитан и исчерпал лимит — ссылка деактивирована этим же переходом
+    ALLOWED_LAST,
+    // Лимит уже был исчерпан; ссылка деактивирована этим вызовом
+    EXHAUSTED,
+    // Ссылка уже была деактивирована раньше
+    DEACTIVATED;
+
+    public boolean isAllowed() {
+        return this == ALLOWED || this == ALLOWED_LAST;
+    }
+
+    /**
+     * Изменилось ли состояние ссылки (счётчик или активность) и его нужно сохранить.
+     */
+    public boolean changedState() {
+        return this != DEACTIVATED;
+    }
+}
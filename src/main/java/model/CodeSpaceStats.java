@@ -0,0 +1,18 @@
+package model;
+
+import java.util.Map;
+
+/**
+ * Снимок метрик пространства коротких кодов: текущая длина новых кодов, число попыток
+ * и попаданий в занятый код, а также оценка заполненности для каждой длины,
+ * на которой уже набралось окно попыток.
+ */
+public record CodeSpaceStats(int currentLength, long attempts, long collisions, Map<Integer, Double> occupancy) {
+
+    /**
+     * Доля попыток, потребовавших повтора.
+     */
+    public double retryRate() {
+        return attempts == 0 ? 0 : (double) collisions / attempts;
+    }
+}
@@ -0,0 +1,20 @@
+package model;
+
+/**
+ * Итог создания одной ссылки из пачки: созданная ссылка или причина отказа (error),
+ * ровно одно из двух не равно null.
+ */
+public record LinkCreationResult(String originalUrl, ShortLink link, String error) {
+
+    public static LinkCreationResult created(String originalUrl, ShortLink link) {
+        return new LinkCreationResult(originalUrl, link, null);
+    }
+
+    public static LinkCreationResult rejected(String originalUrl, String error) {
+        return new LinkCreationResult(originalUrl, null, error);
+    }
+
+    public boolean isCreated() {
+        return link != null;
+    }
+}
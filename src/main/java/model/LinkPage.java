@@ -0,0 +1,17 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Страница ссылок пользователя. nextCursor == null означает, что страница последняя.
+ */
+public record LinkPage(List<ShortLink> links, String nextCursor) {
+
+    public LinkPage {
+        links = List.copyOf(links);
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
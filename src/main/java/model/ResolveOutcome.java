@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Почему короткий код не привёл к переходу.
+ */
+public enum ResolveOutcome {
+    // Ссылки с таким кодом нет
+    NOT_FOUND,
+    // Срок жизни ссылки истёк
+    EXPIRED,
+    // Лимит переходов исчерпан, ссылка деактивирована
+    DEACTIVATED
+}
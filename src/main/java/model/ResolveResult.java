@@ -0,0 +1,20 @@
+package model;
+
+/**
+ * Итог перехода по одному коду из пачки: исходный URL или причина отказа (outcome),
+ * ровно одно из двух не равно null.
+ */
+public record ResolveResult(String shortCode, String originalUrl, ResolveOutcome outcome) {
+
+    public static ResolveResult resolved(String shortCode, String originalUrl) {
+        return new ResolveResult(shortCode, originalUrl, null);
+    }
+
+    public static ResolveResult rejected(String shortCode, ResolveOutcome outcome) {
+        return new ResolveResult(shortCode, null, outcome);
+    }
+
+    public boolean isResolved() {
+        return originalUrl != null;
+    }
+}
@@ -0,0 +1,61 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Упаковка короткого кода в long. Код из символов {@link #ALPHABET} длиной до {@value #MAX_PACKED_LENGTH}
+ * записывается в биективной системе счисления по основанию 62, поэтому разные коды
+ * (в том числе отличающиеся только ведущими «нулевыми» символами) дают разные неотрицательные числа.
+ * Упаковка и поиск по упакованному коду ничего не выделяют в куче.
+ */
+public final class ShortCodeCodec {
+
+    public static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    public static final int MAX_PACKED_LENGTH = 10;
+    // Код не упаковывается: слишком длинный или содержит символы вне алфавита
+    public static final long NOT_PACKABLE = -1;
+
+    private static final int BASE = ALPHABET.length();
+    private static final byte[] DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int i = 0; i < BASE; i++) {
+            DIGITS[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private ShortCodeCodec() {
+    }
+
+    public static long pack(CharSequence code) {
+        int length = code.length();
+        if (length > MAX_PACKED_LENGTH) {
+            return NOT_PACKABLE;
+        }
+        long packed = 0;
+        for (int k = 0; k < length; k++) {
+            char c = code.charAt(k);
+            int digit = c < DIGITS.length ? DIGITS[c] : -1;
+            if (digit < 0) {
+                return NOT_PACKABLE;
+            }
+            packed = packed * BASE + digit + 1;
+        }
+        return packed;
+    }
+
+    public static String unpack(long packed) {
+        if (packed < 0) {
+            throw new IllegalArgumentException("Некорректный упакованный код: " + packed);
+        }
+        char[] chars = new char[MAX_PACKED_LENGTH];
+        int pos = chars.length;
+        while (packed > 0) {
+            packed--;
+            chars[--pos] = ALPHABET.charAt((int) (packed % BASE));
+            packed /= BASE;
+        }
+        return new String(chars, pos, chars.length - pos);
+    }
+}
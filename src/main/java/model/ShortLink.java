@@ -1,21 +1,39 @@
 package model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
 
 public class ShortLink {
+
+    // Счётчик переходов (младшие 32 бита) и признак активности (бит 32) в одном слове,
+    // чтобы переход, проверка лимита и деактивация были одним compare-and-set
+    private static final long ACTIVE_BIT = 1L << 32;
+    private static final long CLICKS_MASK = 0xFFFF_FFFFL;
+    // Значимые биты слова состояния; остальные подкласс может использовать для своих данных
+    protected static final long STATE_BITS = ACTIVE_BIT | CLICKS_MASK;
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(ShortLink.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final String id;
     private final String shortCode;
     private final String originalUrl;
     private final UUID ownerId;
 
     private final int maxClicks;
-    private int clickCount;
 
     private final Instant createdAt;
     private final Instant expiresAt;
-    private boolean active;
+    private volatile long state;
 
     public ShortLink(String id,
                      String shortCode,
@@ -31,10 +49,9 @@ public class ShortLink {
         this.originalUrl = Objects.requireNonNull(originalUrl);
         this.ownerId = Objects.requireNonNull(ownerId);
         this.maxClicks = maxClicks;
-        this.clickCount = clickCount;
         this.createdAt = Objects.requireNonNull(createdAt);
         this.expiresAt = Objects.requireNonNull(expiresAt);
-        this.active = active;
+        this.state = pack(clickCount, active);
     }
 
     public String getId() {
@@ -58,11 +75,40 @@ public class ShortLink {
     }
 
     public int getClickCount() {
-        return clickCount;
+        return clicks(loadState());
     }
 
     public void incrementClickCount() {
-        this.clickCount++;
+        long s;
+        do {
+            s = loadState();
+        } while (!casState(s, pack(clicks(s) + 1, isActive(s))));
+    }
+
+    /**
+     * Атомарно засчитывает переход с учётом лимита: решение «разрешён / исчерпан / деактивирована»
+     * и соответствующее изменение счётчика и активности выполняются одним compare-and-set,
+     * поэтому при конкурентных переходах лимит не превышается и клики не теряются.
+     */
+    public ClickResult registerClick() {
+        while (true) {
+            long s = loadState();
+            if (!isActive(s)) {
+                return ClickResult.DEACTIVATED;
+            }
+            int clicks = clicks(s);
+            if (clicks >= maxClicks) {
+                if (casState(s, pack(clicks, false))) {
+                    return ClickResult.EXHAUSTED;
+                }
+                continue;
+            }
+            int next = clicks + 1;
+            boolean stillActive = next < maxClicks;
+            if (casState(s, pack(next, stillActive))) {
+                return stillActive ? ClickResult.ALLOWED : ClickResult.ALLOWED_LAST;
+            }
+        }
     }
 
     public Instant getCreatedAt() {
@@ -74,11 +120,14 @@ public class ShortLink {
     }
 
     public boolean isActive() {
-        return active;
+        return isActive(loadState());
     }
 
     public void deactivate() {
-        this.active = false;
+        long s;
+        do {
+            s = loadState();
+        } while (isActive(s) && !casState(s, s & ~ACTIVE_BIT));
     }
 
     public boolean isExpired(Instant now) {
@@ -86,10 +135,34 @@ public class ShortLink {
     }
 
     public boolean isClickLimitExceeded() {
-        return clickCount >= maxClicks;
+        return getClickCount() >= maxClicks;
     }
 
     public void incrementClick() {
-        this.clickCount++;
+        incrementClickCount();
+    }
+
+    /**
+     * Текущее слово состояния (только биты {@link #STATE_BITS}). Подкласс может хранить состояние
+     * вне объекта, например в отображённом в память файле, переопределив этот метод вместе с {@link #casState}.
+     */
+    protected long loadState() {
+        return state;
+    }
+
+    protected boolean casState(long expected, long update) {
+        return STATE.compareAndSet(this, expected, update);
+    }
+
+    protected static long pack(int clicks, boolean active) {
+        return (clicks & CLICKS_MASK) | (active ? ACTIVE_BIT : 0L);
+    }
+
+    private static int clicks(long state) {
+        return (int) (state & CLICKS_MASK);
+    }
+
+    private static boolean isActive(long state) {
+        return (state & ACTIVE_BIT) != 0;
     }
 }
@@ -0,0 +1,427 @@
+package repository;
+
+import config.StorageConfig;
+import exception.DataAccessException;
+import exception.ShortCodeConflictException;
+import metrics.ShortenerMetrics;
+import metrics.StoreLoadEvent;
+import model.LinkPage;
+import model.ShortLink;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище ссылок в виде журнала изменений: каждое save/delete дописывает в конец файла
+ * одну компактную JSON-запись, а состояние в памяти восстанавливается при старте проигрыванием журнала.
+ * Стоимость изменения зависит только от размера записи, а не от числа ссылок.
+ * Конкурентные изменения пишутся пачками через {@link GroupCommitLog}.
+ *
+ * <p>Журнал разбит на сегменты segment-N.log. {@link #compact()} открывает новый сегмент N,
+ * пишет снимок живых ссылок snapshot-N.json и удаляет всё, что старше N. При старте загружается
+ * самый новый снимок и проигрываются только сегменты начиная с его номера.
+ *
+ * <p>Чтение не берёт блокировок. Изменения одной ссылки упорядочиваются полосой блокировок по id,
+ * поэтому запись разных ссылок не конкурирует ни за что, кроме короткой постановки в очередь журнала.
+ */
+public class AppendLogShortLinkRepository implements ShortLinkRepository, AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".json";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final String OP = "op";
+    private static final String OP_PUT = "put";
+    private static final String OP_DELETE = "del";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path dir;
+    private final ShortLinkIndex index = new ShortLinkIndex();
+    private final GroupCommitLog log;
+    private final LogCompactor compactor;
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+
+    // Номер текущего сегмента; меняется только под compactionLock
+    private long currentSegment;
+    private final Object compactionLock = new Object();
+
+    public AppendLogShortLinkRepository(String logDir) throws DataAccessException {
+        this(StorageConfig.log(logDir));
+    }
+
+    public AppendLogShortLinkRepository(StorageConfig storage) throws DataAccessException {
+        this(storage, new ShortenerMetrics());
+    }
+
+    public AppendLogShortLinkRepository(StorageConfig storage, ShortenerMetrics metrics) throws DataAccessException {
+        StoreLoadEvent event = new StoreLoadEvent();
+        event.begin();
+        this.dir = Paths.get(storage.logDirPath());
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+        try {
+            Files.createDirectories(dir);
+            long snapshot = fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).stream()
+                    .max(Long::compare)
+                    .orElse(0L);
+            if (snapshot > 0) {
+                readLines(snapshotFile(snapshot), this::applySnapshotLine);
+            }
+            List<Long> segments = fileNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX).stream()
+                    .filter(n -> n >= snapshot)
+                    .sorted()
+                    .toList();
+            long validLength = 0;
+            long bytesRead = snapshot > 0 ? Files.size(snapshotFile(snapshot)) : 0;
+            for (long segment : segments) {
+                validLength = readLines(segmentFile(segment), this::applyRecord);
+                bytesRead += validLength;
+            }
+            this.currentSegment = segments.isEmpty() ? Math.max(snapshot, 1) : segments.get(segments.size() - 1);
+            removeFilesOlderThan(snapshot);
+
+            FileChannel channel = FileChannel.open(segmentFile(currentSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Отрезаем недописанный хвост после аварийного завершения, чтобы новые записи не склеились с ним
+            channel.truncate(validLength);
+            channel.position(validLength);
+            this.log = new GroupCommitLog(channel, storage.durability(), storage.fsyncIntervalMillis(), metrics);
+            event.report("log", index.size(), bytesRead);
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка открытия журнала ссылок", e);
+        }
+        if (storage.compactionThresholdBytes() > 0) {
+            this.compactor = new LogCompactor(this, storage.compactionThresholdBytes(),
+                    storage.compactionCheckMillis());
+            compactor.start();
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    @Override
+    public void save(ShortLink link) throws DataAccessException {
+        log.await(enqueuePut(link, false));
+    }
+
+    /**
+     * Все записи пачки ставятся в очередь подряд, поэтому обычно уходят в журнал одним write и одним fsync.
+     */
+    @Override
+    public void saveAll(Collection<ShortLink> links) throws DataAccessException {
+        long seq = 0;
+        try {
+            for (ShortLink link : links) {
+                seq = Math.max(seq, enqueuePut(link, false));
+            }
+        } catch (ShortCodeConflictException e) {
+            // уже поставленные в очередь ссылки видны в памяти — дожидаемся их записи, как при успехе
+            log.await(seq);
+            throw e;
+        }
+        log.await(seq);
+    }
+
+    @Override
+    public int updateExisting(Collection<ShortLink> links) throws DataAccessException {
+        long seq = 0;
+        int updated = 0;
+        for (ShortLink link : links) {
+            long linkSeq = enqueuePut(link, true);
+            if (linkSeq > 0) {
+                seq = Math.max(seq, linkSeq);
+                updated++;
+            }
+        }
+        log.await(seq);
+        return updated;
+    }
+
+    @Override
+    public Optional<ShortLink> findByShortCode(String shortCode) {
+        return Optional.ofNullable(index.findByShortCode(shortCode));
+    }
+
+    @Override
+    public Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) {
+        return index.findByShortCodes(shortCodes);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return index.findByOwner(ownerId);
+    }
+
+    @Override
+    public LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) {
+        return index.findByOwner(ownerId, cursor, pageSize);
+    }
+
+    @Override
+    public void deleteById(String id) throws DataAccessException {
+        long seq = enqueueDelete(id);
+        log.await(seq);
+    }
+
+    @Override
+    public void deleteAllById(Collection<String> ids) throws DataAccessException {
+        long seq = 0;
+        for (String id : ids) {
+            seq = Math.max(seq, enqueueDelete(id));
+        }
+        log.await(seq);
+    }
+
+    @Override
+    public void deleteExpired(Instant now) throws DataAccessException {
+        deleteExpired(now, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int deleteExpired(Instant now, int limit) throws DataAccessException {
+        long seq = 0;
+        int removed = 0;
+        for (ShortLink link : index.findExpired(now, limit)) {
+            long linkSeq = enqueueDelete(link.getId());
+            if (linkSeq > 0) {
+                seq = Math.max(seq, linkSeq);
+                removed++;
+            }
+        }
+        log.await(seq);
+        return removed;
+    }
+
+    @Override
+    public Optional<Instant> nextExpiry() {
+        return Optional.ofNullable(index.nextExpiry());
+    }
+
+    @Override
+    public boolean shortCodeExists(String shortCode) {
+        return index.containsShortCode(shortCode);
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        index.forEachShortCode(action);
+    }
+
+    /**
+     * Пишет снимок живых ссылок и удаляет покрытые им сегменты журнала. Запись продолжается
+     * во время снимка: всё, что попало в новый сегмент, будет проиграно поверх снимка при старте,
+     * а записи журнала идемпотентны (полное состояние ссылки или удаление по id).
+     */
+    public void compact() throws DataAccessException {
+        synchronized (compactionLock) {
+            long next = currentSegment + 1;
+            try {
+                log.rotate(FileChannel.open(segmentFile(next),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+            } catch (IOException e) {
+                throw new DataAccessException("Ошибка создания сегмента журнала ссылок", e);
+            }
+            currentSegment = next;
+
+            // Всё, что попало в старые сегменты, уже отражено в индексе к этому моменту
+            List<ShortLink> live = new ArrayList<>(index.values());
+            try {
+                writeSnapshot(next, live);
+                removeFilesOlderThan(next);
+            } catch (IOException e) {
+                throw new DataAccessException("Ошибка записи снимка ссылок", e);
+            }
+        }
+    }
+
+    long logBytesSinceSnapshot() {
+        return log.bytesSinceRotation();
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        if (compactor != null) {
+            compactor.stop();
+        }
+        synchronized (compactionLock) {
+            log.close();
+        }
+    }
+
+    /**
+     * Возвращает номер записи в журнале или 0, если записывать нечего: ссылки с таким id уже нет
+     * (при onlyExisting) или это устаревшее представление удалённой либо заменённой записи.
+     */
+    private long enqueuePut(ShortLink link, boolean onlyExisting) throws DataAccessException {
+        // Индекс меняется, состояние сериализуется и запись ставится в очередь под одной блокировкой id,
+        // чтобы порядок в журнале совпадал с порядком в памяти; ожидание записи на диск — уже вне блокировки
+        synchronized (stripeFor(link.getId())) {
+            if ((onlyExisting && !index.containsId(link.getId())) || index.isStale(link)) {
+                return 0;
+            }
+            JSONObject record = ShortLinkJson.toJson(link);
+            record.put(OP, OP_PUT);
+            index.put(link);
+            return log.enqueue(toBytes(record));
+        }
+    }
+
+    /**
+     * Возвращает номер записи об удалении или 0, если ссылки с таким id уже нет.
+     */
+    private long enqueueDelete(String id) throws DataAccessException {
+        synchronized (stripeFor(id)) {
+            if (!index.remove(id)) {
+                return 0;
+            }
+            return log.enqueue(deleteRecord(id));
+        }
+    }
+
+    private Object stripeFor(String id) {
+        int h = id.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    static Path segmentFile(Path dir, long number) {
+        return dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    static Path snapshotFile(Path dir, long number) {
+        return dir.resolve(String.format("%s%08d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+    }
+
+    private Path segmentFile(long number) {
+        return segmentFile(dir, number);
+    }
+
+    private Path snapshotFile(long number) {
+        return snapshotFile(dir, number);
+    }
+
+    private void writeSnapshot(long number, List<ShortLink> links) throws IOException {
+        Path target = snapshotFile(number);
+        Path tmp = target.resolveSibling(target.getFileName() + TMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (ShortLink link : links) {
+                writer.write(ShortLinkJson.toJson(link).toString());
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        // Снимок появляется под своим именем только целиком
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void removeFilesOlderThan(long number) throws IOException {
+        for (long n : fileNumbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (n < number) {
+                Files.deleteIfExists(segmentFile(n));
+            }
+        }
+        for (long n : fileNumbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (n < number) {
+                Files.deleteIfExists(snapshotFile(n));
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path tmp : files.filter(p -> p.getFileName().toString().endsWith(TMP_SUFFIX)).toList()) {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    private List<Long> fileNumbers(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                    .map(name -> name.substring(prefix.length(), name.length() - suffix.length()))
+                    .filter(num -> !num.isEmpty() && num.chars().allMatch(Character::isDigit))
+                    .map(Long::parseLong)
+                    .toList();
+        }
+    }
+
+    private static byte[] deleteRecord(String id) {
+        JSONObject record = new JSONObject();
+        record.put(OP, OP_DELETE);
+        record.put("id", id);
+        return toBytes(record);
+    }
+
+    private static byte[] toBytes(JSONObject record) {
+        return (record + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private interface LineHandler {
+        void apply(String line, long lineNo) throws DataAccessException;
+    }
+
+    /**
+     * Читает файл построчно и возвращает длину его корректной части. Недописанная последняя
+     * строка (без перевода строки) считается оборванной записью и отбрасывается.
+     */
+    private static long readLines(Path file, LineHandler handler) throws IOException, DataAccessException {
+        long validLength = 0;
+        long lineNo = 0;
+        byte[] chunk = new byte[64 * 1024];
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] != '\n') {
+                        continue;
+                    }
+                    line.write(chunk, start, i - start);
+                    start = i + 1;
+                    lineNo++;
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    if (!text.isBlank()) {
+                        handler.apply(text, lineNo);
+                    }
+                    validLength += line.size() + 1;
+                    line.reset();
+                }
+                line.write(chunk, start, n - start);
+            }
+        }
+        return validLength;
+    }
+
+    private void applyRecord(String line, long lineNo) throws DataAccessException {
+        try {
+            JSONObject record = new JSONObject(line);
+            switch (record.getString(OP)) {
+                case OP_PUT -> index.putLoaded(ShortLinkJson.fromJson(record));
+                case OP_DELETE -> index.remove(record.getString("id"));
+                default -> throw new JSONException("неизвестная операция " + record.getString(OP));
+            }
+        } catch (RuntimeException e) {
+            throw new DataAccessException("Некорректная запись журнала ссылок в строке " + lineNo, e);
+        }
+    }
+
+    private void applySnapshotLine(String line, long lineNo) throws DataAccessException {
+        try {
+            index.putLoaded(ShortLinkJson.fromJson(new JSONObject(line)));
+        } catch (RuntimeException e) {
+            throw new DataAccessException("Некорректная запись снимка ссылок в строке " + lineNo, e);
+        }
+    }
+}
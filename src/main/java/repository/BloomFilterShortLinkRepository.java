@@ -0,0 +1,267 @@
+package repository;
+
+import exception.DataAccessException;
+import model.LinkPage;
+import model.ShortLink;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище с фильтром Блума по живым кодам впереди. Поиск и проверка кода, которого нет в фильтре,
+ * не доходят до хранилища — для отображаемого в память хранилища это значит, что промах не читает диск.
+ * <p>
+ * Фильтр строится обходом кодов при старте и пополняется при сохранении. Удалить код из фильтра Блума
+ * нельзя, поэтому удаления только считаются: когда устаревших кодов или новых кодов сверх расчётного числа
+ * становится много, фоновый поток строит новый фильтр по хранилищу и подменяет им текущий.
+ * Коды, сохранённые во время перестройки, попадают в оба фильтра, так что ложных «нет» не бывает.
+ */
+public class BloomFilterShortLinkRepository implements ShortLinkRepository, AutoCloseable {
+
+    private final ShortLinkRepository delegate;
+    private final long expectedCodes;
+    private final double falsePositiveRate;
+
+    private volatile ShortCodeBloomFilter filter;
+    // Новый фильтр, пока идёт перестройка; сохранения добавляют коды и в него
+    private volatile ShortCodeBloomFilter building;
+    private volatile long liveAtBuild;
+    private final AtomicLong addedSinceBuild = new AtomicLong();
+    private final AtomicLong removedSinceBuild = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile Thread rebuildThread;
+
+    private final LongAdder skippedLookups = new LongAdder();
+    private final LongAdder passedLookups = new LongAdder();
+
+    public BloomFilterShortLinkRepository(ShortLinkRepository delegate, long expectedCodes,
+                                          double falsePositiveRate) throws DataAccessException {
+        this.delegate = delegate;
+        this.expectedCodes = expectedCodes;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild();
+    }
+
+    @Override
+    public void save(ShortLink link) throws DataAccessException {
+        delegate.save(link);
+        addCode(link.getShortCode());
+    }
+
+    @Override
+    public void saveAll(Collection<ShortLink> links) throws DataAccessException {
+        delegate.saveAll(links);
+        for (ShortLink link : links) {
+            addCode(link.getShortCode());
+        }
+    }
+
+    @Override
+    public int updateExisting(Collection<ShortLink> links) throws DataAccessException {
+        int updated = delegate.updateExisting(links);
+        for (ShortLink link : links) {
+            addCode(link.getShortCode());
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<ShortLink> findByShortCode(String shortCode) throws DataAccessException {
+        if (!mightContain(shortCode)) {
+            return Optional.empty();
+        }
+        return delegate.findByShortCode(shortCode);
+    }
+
+    /**
+     * До хранилища доходят только коды, которые фильтр не отверг.
+     */
+    @Override
+    public Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) throws DataAccessException {
+        List<String> candidates = new ArrayList<>(shortCodes.size());
+        for (String shortCode : shortCodes) {
+            if (mightContain(shortCode)) {
+                candidates.add(shortCode);
+            }
+        }
+        return candidates.isEmpty() ? new HashMap<>() : delegate.findByShortCodes(candidates);
+    }
+
+    @Override
+    public boolean shortCodeExists(String shortCode) throws DataAccessException {
+        return mightContain(shortCode) && delegate.shortCodeExists(shortCode);
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) throws DataAccessException {
+        return delegate.findByOwner(ownerId);
+    }
+
+    @Override
+    public LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) throws DataAccessException {
+        return delegate.findByOwner(ownerId, cursor, pageSize);
+    }
+
+    @Override
+    public void deleteById(String id) throws DataAccessException {
+        delegate.deleteById(id);
+        noteRemoved(1);
+    }
+
+    @Override
+    public void deleteAllById(Collection<String> ids) throws DataAccessException {
+        delegate.deleteAllById(ids);
+        noteRemoved(ids.size());
+    }
+
+    /**
+     * Сколько удалено, неизвестно, поэтому фильтр перестраивается: полное удаление
+     * просроченных и так проходит по всему хранилищу.
+     */
+    @Override
+    public void deleteExpired(Instant now) throws DataAccessException {
+        delegate.deleteExpired(now);
+        requestRebuild();
+    }
+
+    @Override
+    public int deleteExpired(Instant now, int limit) throws DataAccessException {
+        int removed = delegate.deleteExpired(now, limit);
+        noteRemoved(removed);
+        return removed;
+    }
+
+    @Override
+    public void flushExpiredDeletes() throws DataAccessException {
+        delegate.flushExpiredDeletes();
+    }
+
+    @Override
+    public Optional<Instant> nextExpiry() throws DataAccessException {
+        return delegate.nextExpiry();
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) throws DataAccessException {
+        delegate.forEachShortCode(action);
+    }
+
+    /**
+     * Сколько поисков по коду фильтр отсёк, не обращаясь к хранилищу.
+     */
+    public long skippedLookups() {
+        return skippedLookups.sum();
+    }
+
+    /**
+     * Сколько поисков по коду фильтр пропустил в хранилище (код есть или ложное срабатывание).
+     */
+    public long passedLookups() {
+        return passedLookups.sum();
+    }
+
+    /**
+     * Строит новый фильтр по кодам хранилища и подменяет им текущий. Вызывается при старте
+     * и из фонового потока; перестройки выполняются по одной.
+     */
+    synchronized void rebuild() throws DataAccessException {
+        long[] live = new long[1];
+        delegate.forEachShortCode(code -> live[0]++);
+        ShortCodeBloomFilter next = new ShortCodeBloomFilter(Math.max(expectedCodes, live[0] * 2), falsePositiveRate);
+        building = next;
+        delegate.forEachShortCode(next::add);
+        liveAtBuild = live[0];
+        addedSinceBuild.set(0);
+        removedSinceBuild.set(0);
+        // filter публикуется раньше, чем сбрасывается building: сохранение, не заставшее building,
+        // уже видит новый фильтр
+        filter = next;
+        building = null;
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        Thread thread = rebuildThread;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (DataAccessException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new DataAccessException("Ошибка закрытия хранилища ссылок: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean mightContain(String shortCode) {
+        if (filter.mightContain(shortCode)) {
+            passedLookups.increment();
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    private void addCode(String code) {
+        // сначала building, потом filter — см. rebuild()
+        ShortCodeBloomFilter next = building;
+        ShortCodeBloomFilter current = filter;
+        if (next != null) {
+            next.add(code);
+        }
+        if (current.add(code)) {
+            long added = addedSinceBuild.incrementAndGet();
+            if (liveAtBuild + added > current.capacity()) {
+                requestRebuild();
+            }
+        }
+    }
+
+    private void noteRemoved(int count) {
+        if (count <= 0) {
+            return;
+        }
+        long removed = removedSinceBuild.addAndGet(count);
+        // больше половины кодов в фильтре уже удалены — ложных срабатываний стало заметно больше
+        if (removed * 2 > liveAtBuild + addedSinceBuild.get() && removed > 64) {
+            requestRebuild();
+        }
+    }
+
+    private void requestRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (DataAccessException e) {
+                System.out.println("⚠️ Ошибка перестройки фильтра кодов: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("⚠️ Неожиданная ошибка перестройки фильтра кодов: " + e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "bloom-rebuild-thread");
+        thread.setDaemon(true);
+        rebuildThread = thread;
+        thread.start();
+    }
+}
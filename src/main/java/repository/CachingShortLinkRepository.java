@@ -0,0 +1,431 @@
+package repository;
+
+import exception.DataAccessException;
+import model.CacheStats;
+import model.LinkPage;
+import model.ShortLink;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Кэш ссылок по коду перед любым хранилищем с вытеснением W-TinyLFU. Новые ключи попадают
+ * в маленькое окно LRU (1% размера); вытесненный из окна ключ допускается в основную часть,
+ * только если по {@link FrequencySketch} он запрашивался чаще, чем её кандидат на вытеснение.
+ * Основная часть — сегментированный LRU: повторное попадание переводит ключ из испытательного
+ * сегмента в защищённый (80%). Поэтому разовый проход по множеству кодов не вытесняет популярные ссылки.
+ * <p>
+ * Чтение не ждёт блокировку: если её держит другой поток, перестановка в очередях пропускается.
+ * Сохранение и удаление ссылки через кэш сбрасывают её запись; ссылка, срок которой истёк,
+ * из кэша не выдаётся. Загрузка, во время которой произошёл сброс, в кэш не кладётся.
+ */
+public class CachingShortLinkRepository implements ShortLinkRepository, AutoCloseable {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final class Node {
+        final String code;
+        final ShortLink link;
+        int queue;
+        Node prev;
+        Node next;
+
+        Node(String code, ShortLink link) {
+            this.code = code;
+            this.link = link;
+        }
+    }
+
+    private static final class AccessQueue {
+        final Node head = new Node(null, null);
+        int size;
+
+        AccessQueue() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void addLast(Node node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        Node first() {
+            return head.next == head ? null : head.next;
+        }
+    }
+
+    private final ShortLinkRepository delegate;
+    private final int maxEntries;
+    private final int windowMax;
+    private final int protectedMax;
+
+    private final ConcurrentMap<String, Node> byCode = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> codeById = new ConcurrentHashMap<>();
+    // Растёт при каждом сбросе записи; загрузка кладётся в кэш, только если сбросов за время загрузки не было
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Очереди и частоты — под policyLock
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final AccessQueue[] queues = {new AccessQueue(), new AccessQueue(), new AccessQueue()};
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public CachingShortLinkRepository(ShortLinkRepository delegate, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Размер кэша ссылок должен быть > 0");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.windowMax = Math.max(1, maxEntries / 100);
+        this.protectedMax = Math.max(1, (maxEntries - windowMax) * 4 / 5);
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    @Override
+    public Optional<ShortLink> findByShortCode(String shortCode) throws DataAccessException {
+        Node node = byCode.get(shortCode);
+        if (node != null) {
+            if (!node.link.isExpired(Instant.now())) {
+                hits.increment();
+                onHit(node);
+                return Optional.of(node.link);
+            }
+            invalidate(shortCode);
+        }
+        misses.increment();
+        long version = invalidations.get();
+        Optional<ShortLink> loaded = delegate.findByShortCode(shortCode);
+        loaded.ifPresent(link -> admit(shortCode, link, version));
+        return loaded;
+    }
+
+    /**
+     * Попадания берутся из кэша, промахи догружаются одним запросом к хранилищу.
+     * Политика вытеснения обновляется под одной блокировкой на пачку, а не на код.
+     */
+    @Override
+    public Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) throws DataAccessException {
+        Instant now = Instant.now();
+        Map<String, ShortLink> found = new HashMap<>();
+        List<Node> hitNodes = new ArrayList<>();
+        Set<String> missed = new HashSet<>();
+        for (String shortCode : shortCodes) {
+            Node node = byCode.get(shortCode);
+            if (node != null && !node.link.isExpired(now)) {
+                found.put(shortCode, node.link);
+                hitNodes.add(node);
+                continue;
+            }
+            if (node != null) {
+                invalidate(shortCode);
+            }
+            missed.add(shortCode);
+        }
+        hits.add(hitNodes.size());
+        misses.add(missed.size());
+        if (!hitNodes.isEmpty() && policyLock.tryLock()) {
+            try {
+                for (Node node : hitNodes) {
+                    promote(node);
+                }
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        if (missed.isEmpty()) {
+            return found;
+        }
+        long version = invalidations.get();
+        Map<String, ShortLink> loaded = delegate.findByShortCodes(missed);
+        if (!loaded.isEmpty()) {
+            policyLock.lock();
+            try {
+                loaded.forEach((code, link) -> admitLocked(code, link, version));
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        found.putAll(loaded);
+        return found;
+    }
+
+    @Override
+    public boolean shortCodeExists(String shortCode) throws DataAccessException {
+        Node node = byCode.get(shortCode);
+        return node != null || delegate.shortCodeExists(shortCode);
+    }
+
+    @Override
+    public void save(ShortLink link) throws DataAccessException {
+        try {
+            delegate.save(link);
+        } finally {
+            invalidateUnlessCached(link);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<ShortLink> links) throws DataAccessException {
+        try {
+            delegate.saveAll(links);
+        } finally {
+            for (ShortLink link : links) {
+                invalidateUnlessCached(link);
+            }
+        }
+    }
+
+    @Override
+    public int updateExisting(Collection<ShortLink> links) throws DataAccessException {
+        try {
+            return delegate.updateExisting(links);
+        } finally {
+            for (ShortLink link : links) {
+                invalidateUnlessCached(link);
+            }
+        }
+    }
+
+    @Override
+    public List<ShortLink> findByOwner(UUID ownerId) throws DataAccessException {
+        return delegate.findByOwner(ownerId);
+    }
+
+    @Override
+    public LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) throws DataAccessException {
+        return delegate.findByOwner(ownerId, cursor, pageSize);
+    }
+
+    @Override
+    public void deleteById(String id) throws DataAccessException {
+        try {
+            delegate.deleteById(id);
+        } finally {
+            String code = codeById.get(id);
+            if (code != null) {
+                invalidate(code);
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllById(Collection<String> ids) throws DataAccessException {
+        try {
+            delegate.deleteAllById(ids);
+        } finally {
+            for (String id : ids) {
+                String code = codeById.get(id);
+                if (code != null) {
+                    invalidate(code);
+                }
+            }
+        }
+    }
+
+    /**
+     * Удалённые хранилищем просроченные ссылки кэш не выдаёт: срок проверяется при каждом попадании.
+     */
+    @Override
+    public void deleteExpired(Instant now) throws DataAccessException {
+        delegate.deleteExpired(now);
+    }
+
+    @Override
+    public int deleteExpired(Instant now, int limit) throws DataAccessException {
+        return delegate.deleteExpired(now, limit);
+    }
+
+    @Override
+    public void flushExpiredDeletes() throws DataAccessException {
+        delegate.flushExpiredDeletes();
+    }
+
+    @Override
+    public Optional<Instant> nextExpiry() throws DataAccessException {
+        return delegate.nextExpiry();
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) throws DataAccessException {
+        delegate.forEachShortCode(action);
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), byCode.size());
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (DataAccessException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new DataAccessException("Ошибка закрытия хранилища ссылок: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // ---- политика ----
+
+    private void onHit(Node node) {
+        // под нагрузкой перестановка пропускается: точный порядок LRU не стоит ожидания
+        if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            promote(node);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Вызывается под policyLock
+    private void promote(Node node) {
+        sketch.increment(node.code.hashCode());
+        if (node.prev == null) {
+            return;
+        }
+        switch (node.queue) {
+            case WINDOW, PROTECTED -> moveToEnd(node, node.queue);
+            default -> {
+                moveToEnd(node, PROTECTED);
+                if (queues[PROTECTED].size > protectedMax) {
+                    moveToEnd(queues[PROTECTED].first(), PROBATION);
+                }
+            }
+        }
+    }
+
+    private void admit(String code, ShortLink link, long version) {
+        policyLock.lock();
+        try {
+            admitLocked(code, link, version);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Вызывается под policyLock
+    private void admitLocked(String code, ShortLink link, long version) {
+        sketch.increment(code.hashCode());
+        if (invalidations.get() != version || byCode.containsKey(code)) {
+            return;
+        }
+        Node node = new Node(code, link);
+        byCode.put(code, node);
+        codeById.put(link.getId(), code);
+        node.queue = WINDOW;
+        queues[WINDOW].addLast(node);
+        if (queues[WINDOW].size > windowMax) {
+            // вытесненный из окна ключ становится кандидатом в основную часть
+            Node candidate = queues[WINDOW].first();
+            moveToEnd(candidate, PROBATION);
+            if (byCode.size() > maxEntries) {
+                evictOne(candidate);
+            }
+        }
+    }
+
+    /**
+     * Основная часть переполнена: вытесняется либо кандидат из окна, либо самый старый
+     * ключ испытательного сегмента — тот, что запрашивался реже.
+     */
+    private void evictOne(Node candidate) {
+        Node victim = queues[PROBATION].first();
+        if (victim == candidate) {
+            victim = candidate.next == queues[PROBATION].head ? null : candidate.next;
+        }
+        if (victim == null) {
+            victim = queues[PROTECTED].first();
+        }
+        if (victim == null) {
+            return;
+        }
+        if (sketch.frequency(candidate.code.hashCode()) > sketch.frequency(victim.code.hashCode())) {
+            evict(victim);
+        } else {
+            evict(candidate);
+            rejections.increment();
+        }
+    }
+
+    private void evict(Node node) {
+        queues[node.queue].remove(node);
+        byCode.remove(node.code, node);
+        codeById.remove(node.link.getId(), node.code);
+        evictions.increment();
+    }
+
+    private void moveToEnd(Node node, int queue) {
+        queues[node.queue].remove(node);
+        node.queue = queue;
+        queues[queue].addLast(node);
+    }
+
+    // ---- сброс ----
+
+    /**
+     * Сохранение той же ссылки, что лежит в кэше (например, после перехода), запись не сбрасывает:
+     * кэш уже держит именно этот объект.
+     */
+    private void invalidateUnlessCached(ShortLink link) {
+        String previousCode = codeById.get(link.getId());
+        if (previousCode != null && !previousCode.equals(link.getShortCode())) {
+            invalidate(previousCode);
+        }
+        Node node = byCode.get(link.getShortCode());
+        if (node == null || node.link != link) {
+            invalidate(link.getShortCode());
+        }
+    }
+
+    private void invalidate(String code) {
+        invalidations.incrementAndGet();
+        policyLock.lock();
+        try {
+            Node node = byCode.remove(code);
+            if (node != null) {
+                if (node.prev != null) {
+                    queues[node.queue].remove(node);
+                }
+                codeById.remove(node.link.getId(), code);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+}
@@ -3,67 +3,201 @@ package repository;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import exception.DataAccessException;
+import model.LinkPage;
+import metrics.ShortenerMetrics;
+import metrics.StoreFlushEvent;
+import metrics.StoreLoadEvent;
 import model.ShortLink;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+/**
+ * Чтение идёт по конкурентным индексам без блокировок; изменения сериализуются монитором,
+ * так как каждое из них перезаписывает links.json целиком.
+ */
 public class FileJsonShortLinkRepository implements ShortLinkRepository {
 
+    private static final String STORE_NAME = "json";
+
     private final Path filePath;
-    private final Map<String, ShortLink> storage = new HashMap<>();
+    private final ShortLinkIndex index = new ShortLinkIndex();
+    private final ShortenerMetrics metrics;
+    // Удаления по сроку, ещё не записанные в файл (см. flushExpiredDeletes); меняется под монитором
+    private boolean expiredDeletesPending;
 
     public FileJsonShortLinkRepository(String fileName) throws DataAccessException {
+        this(fileName, new ShortenerMetrics());
+    }
+
+    public FileJsonShortLinkRepository(String fileName, ShortenerMetrics metrics) throws DataAccessException {
         this.filePath = Paths.get(fileName);
+        this.metrics = metrics;
         loadFromFile();
     }
 
     @Override
-    public synchronized void save(ShortLink link) throws DataAccessException {
-        storage.put(link.getId(), link);
-        flushToFile();
+    public void save(ShortLink link) throws DataAccessException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            index.put(link);
+            flushToFile(lockWait);
+        }
     }
 
     @Override
-    public synchronized Optional<ShortLink> findByShortCode(String shortCode) {
-        return storage.values().stream()
-                .filter(l -> l.getShortCode().equals(shortCode))
-                .findFirst();
+    public void saveAll(Collection<ShortLink> links) throws DataAccessException {
+        if (links.isEmpty()) {
+            return;
+        }
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            try {
+                for (ShortLink link : links) {
+                    index.put(link);
+                }
+            } finally {
+                // при конфликте кода уже добавленные ссылки всё равно записываются, чтобы файл не отставал от памяти
+                flushToFile(lockWait);
+            }
+        }
     }
 
     @Override
-    public synchronized List<ShortLink> findByOwner(UUID ownerId) {
-        return storage.values().stream()
-                .filter(l -> l.getOwnerId().equals(ownerId))
-                .collect(Collectors.toList());
+    public int updateExisting(Collection<ShortLink> links) throws DataAccessException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            int updated = 0;
+            try {
+                for (ShortLink link : links) {
+                    if (index.containsId(link.getId())) {
+                        index.put(link);
+                        updated++;
+                    }
+                }
+            } finally {
+                if (updated > 0) {
+                    flushToFile(lockWait);
+                }
+            }
+            return updated;
+        }
     }
 
     @Override
-    public synchronized void deleteById(String id) throws DataAccessException {
-        storage.remove(id);
-        flushToFile();
+    public Optional<ShortLink> findByShortCode(String shortCode) {
+        return Optional.ofNullable(index.findByShortCode(shortCode));
     }
 
     @Override
-    public synchronized void deleteExpired(Instant now) throws DataAccessException {
-        List<String> toRemove = storage.values().stream()
-                .filter(l -> l.isExpired(now))
-                .map(ShortLink::getId)
-                .toList();
-        toRemove.forEach(storage::remove);
-        flushToFile();
+    public Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) {
+        return index.findByShortCodes(shortCodes);
     }
 
     @Override
-    public synchronized boolean shortCodeExists(String shortCode) {
-        return storage.values().stream()
-                .anyMatch(l -> l.getShortCode().equals(shortCode));
+    public List<ShortLink> findByOwner(UUID ownerId) {
+        return index.findByOwner(ownerId);
+    }
+
+    @Override
+    public LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) {
+        return index.findByOwner(ownerId, cursor, pageSize);
+    }
+
+    @Override
+    public void deleteById(String id) throws DataAccessException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            index.remove(id);
+            flushToFile(lockWait);
+        }
+    }
+
+    @Override
+    public void deleteAllById(Collection<String> ids) throws DataAccessException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            boolean removed = false;
+            for (String id : ids) {
+                removed |= index.remove(id);
+            }
+            if (removed) {
+                flushToFile(lockWait);
+            }
+        }
+    }
+
+    @Override
+    public void deleteExpired(Instant now) throws DataAccessException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            if (removeExpired(now, Integer.MAX_VALUE) > 0 || expiredDeletesPending) {
+                flushToFile(lockWait);
+            }
+        }
+    }
+
+    /**
+     * Удаляет пачку только в памяти: запись файла — полная перезапись, поэтому она откладывается
+     * до {@link #flushExpiredDeletes()} в конце прохода очистки или до любого другого изменения.
+     * Если процесс упадёт раньше, просроченные ссылки вернутся из файла и будут удалены снова.
+     */
+    @Override
+    public synchronized int deleteExpired(Instant now, int limit) {
+        int removed = removeExpired(now, limit);
+        if (removed > 0) {
+            expiredDeletesPending = true;
+        }
+        return removed;
+    }
+
+    @Override
+    public void flushExpiredDeletes() throws DataAccessException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            long lockWait = System.nanoTime() - waitStart;
+            if (expiredDeletesPending) {
+                flushToFile(lockWait);
+            }
+        }
+    }
+
+    private int removeExpired(Instant now, int limit) {
+        List<ShortLink> expired = index.findExpired(now, limit);
+        for (ShortLink link : expired) {
+            index.remove(link.getId());
+        }
+        return expired.size();
+    }
+
+    @Override
+    public Optional<Instant> nextExpiry() {
+        return Optional.ofNullable(index.nextExpiry());
+    }
+
+    @Override
+    public boolean shortCodeExists(String shortCode) {
+        return index.containsShortCode(shortCode);
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        index.forEachShortCode(action);
     }
 
     private void loadFromFile() throws DataAccessException {
+        StoreLoadEvent event = new StoreLoadEvent();
+        event.begin();
         try {
             if (Files.notExists(filePath)) {
                 if (filePath.getParent() != null) {
@@ -79,9 +213,9 @@ public class FileJsonShortLinkRepository implements ShortLinkRepository {
             JSONArray array = new JSONArray(content);
             for (int i = 0; i < array.length(); i++) {
                 JSONObject obj = array.getJSONObject(i);
-                ShortLink link = jsonToShortLink(obj);
-                storage.put(link.getId(), link);
+                index.putLoaded(ShortLinkJson.fromJson(obj));
             }
+            event.report(STORE_NAME, index.size(), Files.size(filePath));
         } catch (IOException e) {
             throw new DataAccessException("Ошибка чтения файла базы данных", e);
         } catch (Exception e) {
@@ -89,45 +223,27 @@ public class FileJsonShortLinkRepository implements ShortLinkRepository {
         }
     }
 
-    private void flushToFile() throws DataAccessException {
+    /**
+     * Перезаписывает файл; вызывается под монитором, lockWaitNanos — сколько вызывающий его ждал.
+     */
+    private void flushToFile(long lockWaitNanos) throws DataAccessException {
+        StoreFlushEvent event = new StoreFlushEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             JSONArray array = new JSONArray();
-            for (ShortLink link : storage.values()) {
-                array.put(shortLinkToJson(link));
+            for (ShortLink link : index.values()) {
+                array.put(ShortLinkJson.toJson(link));
             }
-            Files.writeString(filePath, array.toString(2),
+            byte[] content = array.toString(2).getBytes(StandardCharsets.UTF_8);
+            Files.write(filePath, content,
                     StandardOpenOption.TRUNCATE_EXISTING,
                     StandardOpenOption.WRITE);
+            metrics.recordStoreFlush(start, content.length);
+            event.report(STORE_NAME, index.size(), content.length, lockWaitNanos);
+            expiredDeletesPending = false;
         } catch (IOException e) {
             throw new DataAccessException("Ошибка записи файла базы данных", e);
         }
     }
-
-    private JSONObject shortLinkToJson(ShortLink link) {
-        JSONObject obj = new JSONObject();
-        obj.put("id", link.getId());
-        obj.put("shortCode", link.getShortCode());
-        obj.put("originalUrl", link.getOriginalUrl());
-        obj.put("ownerId", link.getOwnerId().toString());
-        obj.put("maxClicks", link.getMaxClicks());
-        obj.put("clickCount", link.getClickCount());
-        obj.put("createdAt", link.getCreatedAt().toString());
-        obj.put("expiresAt", link.getExpiresAt().toString());
-        obj.put("active", link.isActive());
-        return obj;
-    }
-
-    private ShortLink jsonToShortLink(JSONObject obj) {
-        return new ShortLink(
-                obj.getString("id"),
-                obj.getString("shortCode"),
-                obj.getString("originalUrl"),
-                UUID.fromString(obj.getString("ownerId")),
-                obj.getInt("maxClicks"),
-                obj.getInt("clickCount"),
-                Instant.parse(obj.getString("createdAt")),
-                Instant.parse(obj.getString("expiresAt")),
-                obj.getBoolean("active")
-        );
-    }
 }
@@ -8,11 +8,13 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileJsonUserRepository implements UserRepository {
 
     private final Path filePath;
-    private final Map<UUID, UserProfile> storage = new HashMap<>();
+    // Чтение без блокировок, запись сериализуется монитором из-за перезаписи файла целиком
+    private final Map<UUID, UserProfile> storage = new ConcurrentHashMap<>();
 
     public FileJsonUserRepository(String fileName) throws DataAccessException {
         this.filePath = Paths.get(fileName);
@@ -20,7 +22,7 @@ public class FileJsonUserRepository implements UserRepository {
     }
 
     @Override
-    public synchronized Optional<UserProfile> findById(UUID id) {
+    public Optional<UserProfile> findById(UUID id) {
         return Optional.ofNullable(storage.get(id));
     }
 
@@ -0,0 +1,70 @@
+package repository;
+
+/**
+ * Приблизительные частоты обращений к ключам (Count-Min sketch из 4-битных счётчиков),
+ * по которым кэш решает, чей ключ ценнее. Каждые sampleSize увеличений все счётчики
+ * делятся пополам, так что старая популярность постепенно забывается.
+ * Не потокобезопасен: вызывающий держит блокировку.
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {
+        0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxEntries) {
+        int size = Integer.highestOneBit(Math.max(16, maxEntries) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * Math.max(16, maxEntries);
+    }
+
+    int frequency(int hash) {
+        int min = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int shift = counterShift(hash, i);
+            min = Math.min(min, (int) ((table[index] >>> shift) & 0xF));
+        }
+        return min;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int shift = counterShift(hash, i);
+            if (((table[index] >>> shift) & 0xF) != 0xF) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int counterShift(int hash, int row) {
+        // каждая строка берёт свой 4-битный счётчик внутри слова
+        return (((hash >>> (row << 3)) & 3) + (row << 2)) << 2;
+    }
+}
@@ -0,0 +1,280 @@
+package repository;
+
+import config.DurabilityPolicy;
+import exception.DataAccessException;
+import metrics.ShortenerMetrics;
+import metrics.StoreFlushEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Групповая запись в журнал: записи от конкурентных вызывающих собираются в пачку,
+ * которую фоновый поток пишет одним вызовом write и (в зависимости от политики) одним fsync.
+ * Вызывающий получает номер записи из {@link #enqueue} и ждёт в {@link #await} только свою пачку.
+ * {@link #rotate} переключает запись на новый сегмент на границе пачки, не останавливая пишущих.
+ */
+final class GroupCommitLog implements AutoCloseable {
+
+    private FileChannel channel;
+    private final DurabilityPolicy durability;
+    private final long fsyncIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private long enqueuedSeq;
+    private long committedSeq;
+    private boolean unsynced;
+    private long lastSyncNanos = System.nanoTime();
+    private IOException failure;
+    private boolean closed;
+    private FileChannel rotateTo;
+    private long rotationsRequested;
+    private long rotationsDone;
+    private volatile long bytesSinceRotation;
+
+    private final ShortenerMetrics metrics;
+    private final Thread writer;
+
+    GroupCommitLog(FileChannel channel, DurabilityPolicy durability, long fsyncIntervalMillis,
+                   ShortenerMetrics metrics) {
+        this.channel = channel;
+        this.metrics = metrics;
+        this.durability = durability;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.writer = new Thread(this::writeLoop, "links-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Ставит запись в очередь и возвращает её номер. Порядок записей в файле совпадает
+     * с порядком вызовов enqueue.
+     */
+    long enqueue(byte[] record) throws DataAccessException {
+        lock.lock();
+        try {
+            ensureWritable();
+            pending.add(ByteBuffer.wrap(record));
+            hasWork.signal();
+            return ++enqueuedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокирует, пока запись с номером seq не будет записана (а при политике BATCH — синхронизирована с диском).
+     */
+    void await(long seq) throws DataAccessException {
+        lock.lock();
+        try {
+            while (committedSeq < seq && failure == null) {
+                committed.awaitUninterruptibly();
+            }
+            if (committedSeq < seq) {
+                ensureWritable();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Переключает журнал на новый сегмент и ждёт переключения. Все записи, поставленные в очередь
+     * до возврата из метода, но попавшие в старый сегмент, к этому моменту записаны и синхронизированы.
+     */
+    void rotate(FileChannel next) throws DataAccessException {
+        lock.lock();
+        try {
+            ensureWritable();
+            rotateTo = next;
+            long target = ++rotationsRequested;
+            hasWork.signal();
+            while (rotationsDone < target && failure == null) {
+                committed.awaitUninterruptibly();
+            }
+            if (rotationsDone < target) {
+                ensureWritable();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сколько байт записано в текущий сегмент.
+     */
+    long bytesSinceRotation() {
+        return bytesSinceRotation;
+    }
+
+    @Override
+    public void close() throws DataAccessException {
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new DataAccessException("Ошибка записи журнала ссылок", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка закрытия журнала ссылок", e);
+        }
+    }
+
+    private void ensureWritable() throws DataAccessException {
+        if (failure != null) {
+            throw new DataAccessException("Ошибка записи журнала ссылок", failure);
+        }
+        if (closed) {
+            throw new DataAccessException("Журнал ссылок закрыт", null);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchSeq;
+            boolean finished;
+            FileChannel next;
+            lock.lock();
+            try {
+                waitForWork();
+                batch = pending;
+                batchSeq = enqueuedSeq;
+                next = rotateTo;
+                rotateTo = null;
+                finished = closed && batch.isEmpty() && next == null;
+                pending = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                StoreFlushEvent event = new StoreFlushEvent();
+                event.begin();
+                long start = System.nanoTime();
+                long written = write(batch);
+                if (shouldSync(finished)) {
+                    sync();
+                }
+                if (written > 0) {
+                    metrics.recordStoreFlush(start, written);
+                    event.report("log", batch.size(), written, 0);
+                }
+                if (next != null) {
+                    // старый сегмент должен быть полным на диске до того, как его заменит снимок
+                    sync();
+                    channel.close();
+                    channel = next;
+                    bytesSinceRotation = 0;
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            lock.lock();
+            try {
+                committedSeq = batchSeq;
+                if (next != null) {
+                    rotationsDone++;
+                }
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (finished) {
+                return;
+            }
+        }
+    }
+
+    private void waitForWork() {
+        while (pending.isEmpty() && !closed && rotateTo == null) {
+            if (durability == DurabilityPolicy.INTERVAL && unsynced) {
+                long remaining = lastSyncNanos + fsyncIntervalNanos - System.nanoTime();
+                if (remaining <= 0) {
+                    // пора синхронизировать ранее записанное, даже если новых записей нет
+                    return;
+                }
+                try {
+                    hasWork.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else {
+                hasWork.awaitUninterruptibly();
+            }
+        }
+    }
+
+    private long write(List<ByteBuffer> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer b : buffers) {
+            remaining += b.remaining();
+        }
+        long total = remaining;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        bytesSinceRotation += total;
+        unsynced = true;
+        return total;
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = false;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    private boolean shouldSync(boolean finished) {
+        if (!unsynced) {
+            return false;
+        }
+        return switch (durability) {
+            case NONE -> false;
+            case BATCH -> true;
+            case INTERVAL -> finished || System.nanoTime() - lastSyncNanos >= fsyncIntervalNanos;
+        };
+    }
+
+    private void fail(IOException e) {
+        lock.lock();
+        try {
+            failure = e;
+            committed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
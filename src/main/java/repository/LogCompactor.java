@@ -0,0 +1,66 @@
+package repository;
+
+import exception.DataAccessException;
+
+/**
+ * Фоновая компактификация журнала ссылок: когда хвост журнала после последнего снимка
+ * превышает порог, пишет новый снимок и удаляет старые сегменты.
+ */
+class LogCompactor implements Runnable {
+
+    private final AppendLogShortLinkRepository repository;
+    private final long thresholdBytes;
+    private final long checkIntervalMillis;
+    private volatile boolean running = false;
+    private Thread workerThread;
+
+    LogCompactor(AppendLogShortLinkRepository repository, long thresholdBytes, long checkIntervalMillis) {
+        this.repository = repository;
+        this.thresholdBytes = thresholdBytes;
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerThread = new Thread(this, "links-log-compactor");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    void stop() {
+        running = false;
+        if (workerThread != null) {
+            workerThread.interrupt();
+            try {
+                workerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(checkIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (repository.logBytesSinceSnapshot() < thresholdBytes) {
+                continue;
+            }
+            try {
+                repository.compact();
+            } catch (DataAccessException e) {
+                System.out.println("⚠️ Ошибка компактификации журнала ссылок: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("⚠️ Неожиданная ошибка в потоке компактификации: " + e.getMessage());
+            }
+        }
+    }
+}
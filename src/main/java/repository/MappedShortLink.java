@@ -0,0 +1,59 @@
+package repository;
+
+import model.ShortLink;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Ссылка, прочитанная из {@link MappedShortLinkRepository}: слово состояния лежит в записи
+ * отображённого файла. Старшие биты слова — поколение слота, оно увеличивается при удалении записи.
+ */
+final class MappedShortLink extends SlotShortLink {
+
+    static final int GENERATION_SHIFT = 33;
+    private static final long GENERATION_MASK = (1L << (64 - GENERATION_SHIFT)) - 1;
+
+    private final MappedShortLinkRepository store;
+    private final int slot;
+
+    MappedShortLink(MappedShortLinkRepository store, int slot, long rawState,
+                    String id, String shortCode, String originalUrl, UUID ownerId, int maxClicks,
+                    Instant createdAt, Instant expiresAt) {
+        super(rawState, id, shortCode, originalUrl, ownerId, maxClicks, createdAt, expiresAt);
+        this.store = store;
+        this.slot = slot;
+    }
+
+    boolean belongsTo(MappedShortLinkRepository repository) {
+        return store == repository;
+    }
+
+    @Override
+    long rawState() {
+        return store.rawState(slot);
+    }
+
+    @Override
+    boolean casRawState(long expected, long update) {
+        return store.casRawState(slot, expected, update);
+    }
+
+    static long generation(long rawState) {
+        return (rawState >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    /**
+     * Слово состояния новой записи в слоте текущего поколения.
+     */
+    static long encode(long generation, ShortLink link) {
+        return (generation << GENERATION_SHIFT) | stateBits(link);
+    }
+
+    /**
+     * Слово состояния освобождённого слота: следующее поколение, ссылка неактивна.
+     */
+    static long retire(long rawState) {
+        return (((generation(rawState) + 1) & GENERATION_MASK) << GENERATION_SHIFT) | deactivated(rawState);
+    }
+}
@@ -0,0 +1,1149 @@
+package repository;
+
+import config.StorageConfig;
+import exception.DataAccessException;
+import exception.ShortCodeConflictException;
+import model.LinkPage;
+import model.ShortLink;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Хранилище ссылок в отображённых в память файлах. Данные не разбираются и не копируются в кучу
+ * при старте: их держит page cache ОС, а поиск по shortCode идёт по хэш-таблице с открытой адресацией
+ * прямо в файле индекса и читает одну запись фиксированного размера.
+ *
+ * <p>Файлы в каталоге:
+ * <ul>
+ *   <li>links.dat — заголовок, capacity записей по {@value #RECORD_SIZE} байт и стек свободных слотов;
+ *       записи одного владельца связаны в кольцевой список в порядке создания;</li>
+ *   <li>links.idx — две пары таблиц (по shortCode, по id и по владельцу) с номерами слотов; активна одна
+ *       пара, вторая используется для перестройки без остановки читателей. За таблицами — двоичная куча
+ *       слотов по сроку истечения;</li>
+ *   <li>urls.dat — куча исходных URL, дописывается кусками по {@value #URL_CHUNK_SIZE} байт.</li>
+ * </ul>
+ *
+ * <p>Чтение не берёт блокировок: запись публикуется release-записью состояния и статуса слота,
+ * а читатель проверяет, что поколение слота не изменилось, пока он читал поля.
+ * Счётчик переходов меняется compare-and-set прямо в отображённой памяти (см. {@link MappedShortLink}).
+ * Изменения набора ссылок выполняются под монитором хранилища.
+ *
+ * <p>Запись на диск выполняет ОС; при аварийном завершении процесса данные в page cache не теряются.
+ * После штатного закрытия хранилище открывается без прохода по записям; индекс, куча сроков, списки
+ * владельцев и стек свободных слотов перестраиваются из записей, только если закрытия не было.
+ * Место в куче URL удалённых ссылок не переиспользуется.
+ */
+public class MappedShortLinkRepository implements ShortLinkRepository, AutoCloseable {
+
+    private static final String RECORDS_FILE = "links.dat";
+    private static final String INDEX_FILE = "links.idx";
+    private static final String URLS_FILE = "urls.dat";
+
+    private static final int MAGIC = 0x4C4E4B33;
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_CAPACITY = 4;
+    private static final int H_HIGH_WATER = 8;
+    private static final int H_CLEAN = 12;
+    private static final int H_ACTIVE_TABLES = 16;
+    private static final int H_TOMBSTONES = 20;
+    private static final int H_URL_TAIL = 24;
+    private static final int H_SEQUENCE = 32;
+    private static final int H_FREE_COUNT = 40;
+
+    // Раскладка записи; слово состояния выровнено на 8 байт для compare-and-set
+    static final int RECORD_SIZE = 168;
+    private static final int R_STATE = 0;
+    static final int R_STATUS = 8;
+    private static final int R_MAX_CLICKS = 12;
+    private static final int R_OWNER_MSB = 16;
+    private static final int R_OWNER_LSB = 24;
+    private static final int R_CREATED_SECONDS = 32;
+    private static final int R_EXPIRES_SECONDS = 40;
+    private static final int R_CREATED_NANOS = 48;
+    private static final int R_EXPIRES_NANOS = 52;
+    private static final int R_URL_OFFSET = 56;
+    private static final int R_URL_LENGTH = 64;
+    private static final int R_ID = 68;
+    private static final int ID_MAX = 47;
+    private static final int R_CODE = 116;
+    private static final int CODE_MAX = 31;
+    // Номер записи по порядку: из двух живых записей с одним id после сбоя остаётся более новая
+    private static final int R_SEQUENCE = 152;
+    // Соседи в кольцевом списке ссылок владельца
+    private static final int R_OWNER_PREV = 160;
+    private static final int R_OWNER_NEXT = 164;
+
+    private static final int STATUS_FREE = 0;
+    private static final int STATUS_LIVE = 1;
+
+    private static final int INDEX_HEADER_SIZE = 16;
+    private static final int I_HEAP_SIZE = 8;
+    private static final int TABLES_PER_PAIR = 3;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+
+    static final int URL_CHUNK_SIZE = 1 << 24;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel recordsChannel;
+    private final FileChannel indexChannel;
+    private final FileChannel urlsChannel;
+    private final MappedByteBuffer records;
+    private final MappedByteBuffer index;
+    private volatile MappedByteBuffer[] urlChunks;
+
+    private final int capacity;
+    private final int tableSize;
+    private final int freeBase;
+    private final int heapBase;
+    private final int heapPosBase;
+    // Слоты с номерами меньше highWater хотя бы раз были заняты; остальные ещё не тронуты
+    private volatile int highWater;
+    // Какая из двух пар таблиц индекса сейчас используется
+    private volatile int activeTables;
+    // Счётчик изменений структуры: нечётный, пока идёт запись. Промах поиска перепроверяется под
+    // монитором, только если за время поиска счётчик изменился, — иначе промах настоящий
+    private volatile long writes;
+
+    // Меняются только под монитором хранилища
+    private int tombstones;
+    private long urlTail;
+    private long sequence;
+    private int freeCount;
+    private int heapSize;
+
+    public MappedShortLinkRepository(String dirPath, int capacity) throws DataAccessException {
+        this(StorageConfig.mmap(dirPath, capacity));
+    }
+
+    public MappedShortLinkRepository(StorageConfig storage) throws DataAccessException {
+        Path dir = Paths.get(storage.mmapDirPath());
+        try {
+            Files.createDirectories(dir);
+            Path recordsPath = dir.resolve(RECORDS_FILE);
+            boolean fresh = Files.notExists(recordsPath) || Files.size(recordsPath) < HEADER_SIZE;
+            this.recordsChannel = FileChannel.open(recordsPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.capacity = fresh ? storage.mmapCapacity() : readStoredCapacity(recordsChannel);
+            long recordsSize = HEADER_SIZE + (long) capacity * RECORD_SIZE + 4L * capacity;
+            this.tableSize = tableSizeFor(capacity);
+            long heapOffset = INDEX_HEADER_SIZE + 4L * 2 * TABLES_PER_PAIR * tableSize;
+            long indexSize = heapOffset + 4L * 2 * capacity;
+            if (recordsSize > Integer.MAX_VALUE || indexSize > Integer.MAX_VALUE) {
+                throw new DataAccessException("Ёмкость отображаемого хранилища слишком велика: " + capacity, null);
+            }
+            this.freeBase = HEADER_SIZE + capacity * RECORD_SIZE;
+            this.heapBase = (int) heapOffset;
+            this.heapPosBase = heapBase + 4 * capacity;
+            this.records = recordsChannel.map(FileChannel.MapMode.READ_WRITE, 0, recordsSize);
+            records.order(ByteOrder.LITTLE_ENDIAN);
+
+            Path indexPath = dir.resolve(INDEX_FILE);
+            boolean indexFresh = Files.notExists(indexPath);
+            this.indexChannel = FileChannel.open(indexPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+            index.order(ByteOrder.LITTLE_ENDIAN);
+
+            this.urlsChannel = FileChannel.open(dir.resolve(URLS_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            boolean clean;
+            if (fresh) {
+                records.putInt(H_MAGIC, MAGIC);
+                records.putInt(H_CAPACITY, capacity);
+                clean = false;
+            } else {
+                if (records.getInt(H_MAGIC) != MAGIC) {
+                    throw new DataAccessException("Файл " + recordsPath + " не является хранилищем ссылок", null);
+                }
+                clean = records.getInt(H_CLEAN) == 1 && !indexFresh && index.getInt(H_MAGIC) == MAGIC
+                        && index.getInt(4) == tableSize;
+            }
+            this.highWater = records.getInt(H_HIGH_WATER);
+            this.activeTables = records.getInt(H_ACTIVE_TABLES) & 1;
+            this.tombstones = records.getInt(H_TOMBSTONES);
+            this.urlTail = records.getLong(H_URL_TAIL);
+            this.sequence = records.getLong(H_SEQUENCE);
+            int chunks = (int) Math.max(1, (urlTail + URL_CHUNK_SIZE - 1) / URL_CHUNK_SIZE);
+            MappedByteBuffer[] mapped = new MappedByteBuffer[chunks];
+            for (int i = 0; i < chunks; i++) {
+                mapped[i] = mapUrlChunk(i);
+            }
+            this.urlChunks = mapped;
+
+            if (clean) {
+                this.freeCount = records.getInt(H_FREE_COUNT);
+                this.heapSize = index.getInt(I_HEAP_SIZE);
+                rebuildIfTooManyTombstones();
+            } else {
+                recover();
+            }
+            // До штатного закрытия хранилище считается «грязным»: после сбоя индекс будет перестроен
+            records.putInt(H_CLEAN, 0);
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка открытия отображаемого хранилища ссылок", e);
+        }
+    }
+
+    @Override
+    public synchronized void save(ShortLink link) throws DataAccessException {
+        beginWrite();
+        try {
+            saveLocked(link);
+        } finally {
+            endWrite();
+        }
+    }
+
+    private void saveLocked(ShortLink link) throws DataAccessException {
+        if (link instanceof MappedShortLink view && view.belongsTo(this)) {
+            // счётчик и активность уже лежат в отображённой памяти, а устаревшее представление
+            // не должно перетирать более новую запись или воскрешать удалённую
+            return;
+        }
+        byte[] id = keyBytes(link.getId(), ID_MAX, "id");
+        byte[] code = keyBytes(link.getShortCode(), CODE_MAX, "shortCode");
+        byte[] url = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+
+        int existing = findSlot(R_ID, ID_MAX, id);
+        int codeOwner = findSlot(R_CODE, CODE_MAX, code);
+        if (codeOwner >= 0 && codeOwner != existing) {
+            // чужую ссылку с тем же кодом не заменяем — см. ShortLinkIndex.put
+            throw new ShortCodeConflictException(link.getShortCode());
+        }
+        long urlOffset = existing >= 0 && urlEquals(existing, url)
+                ? records.getLong(offset(existing) + R_URL_OFFSET)
+                : appendUrl(url);
+
+        int slot = allocateSlot();
+        writeRecord(slot, link, id, code, urlOffset, url.length);
+        heapInsert(slot);
+
+        if (existing < 0) {
+            insert(R_ID, ID_MAX, id, slot);
+            insert(R_CODE, CODE_MAX, code, slot);
+            ownerInsert(slot);
+            return;
+        }
+        setEntry(position(R_ID, ID_MAX, id), slot);
+        byte[] oldCode = readBytes(offset(existing) + R_CODE, CODE_MAX);
+        if (Arrays.equals(oldCode, code)) {
+            setEntry(position(R_CODE, CODE_MAX, code), slot);
+        } else {
+            tombstone(position(R_CODE, CODE_MAX, oldCode));
+            insert(R_CODE, CODE_MAX, code, slot);
+        }
+        heapRemove(existing);
+        if (sameOwner(existing, slot) && ownerOrder(existing, slot) == 0) {
+            ownerReplace(existing, slot);
+        } else {
+            ownerUnlink(existing);
+            ownerInsert(slot);
+        }
+        retire(existing);
+        rebuildIfTooManyTombstones();
+    }
+
+    @Override
+    public Optional<ShortLink> findByShortCode(String shortCode) {
+        byte[] code = shortCode.getBytes(StandardCharsets.UTF_8);
+        if (code.length > CODE_MAX) {
+            return Optional.empty();
+        }
+        long version = writes;
+        MappedShortLink link = lookup(code, shortCode);
+        if (link != null || unchangedSince(version)) {
+            return Optional.ofNullable(link);
+        }
+        // слот могли переписать, пока мы его читали: повторяем поиск, исключив конкурентную запись
+        synchronized (this) {
+            return Optional.ofNullable(lookup(code, shortCode));
+        }
+    }
+
+    /**
+     * Коды ищутся без блокировки; промахи, совпавшие по времени с записью, перепроверяются
+     * под одной блокировкой на всю пачку.
+     */
+    @Override
+    public Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) {
+        Map<String, ShortLink> found = new HashMap<>();
+        List<String> missed = new ArrayList<>();
+        long version = writes;
+        for (String shortCode : shortCodes) {
+            byte[] code = shortCode.getBytes(StandardCharsets.UTF_8);
+            if (code.length > CODE_MAX) {
+                continue;
+            }
+            MappedShortLink link = lookup(code, shortCode);
+            if (link != null) {
+                found.put(shortCode, link);
+            } else {
+                missed.add(shortCode);
+            }
+        }
+        if (!missed.isEmpty() && !unchangedSince(version)) {
+            synchronized (this) {
+                for (String shortCode : missed) {
+                    MappedShortLink link = lookup(shortCode.getBytes(StandardCharsets.UTF_8), shortCode);
+                    if (link != null) {
+                        found.put(shortCode, link);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private void beginWrite() {
+        writes++;
+        // запись счётчика должна стать видна раньше, чем изменения записей и индекса
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        writes++;
+    }
+
+    /**
+     * Не было ли записи ни во время, ни после чтения version; чтения поиска до проверки уже выполнены.
+     */
+    private boolean unchangedSince(long version) {
+        VarHandle.acquireFence();
+        return (version & 1) == 0 && writes == version;
+    }
+
+    private MappedShortLink lookup(byte[] code, String shortCode) {
+        int slot = findSlot(R_CODE, CODE_MAX, code);
+        if (slot < 0) {
+            return null;
+        }
+        MappedShortLink link = readLink(slot);
+        return link != null && link.getShortCode().equals(shortCode) ? link : null;
+    }
+
+    @Override
+    public synchronized List<ShortLink> findByOwner(UUID ownerId) {
+        List<ShortLink> result = new ArrayList<>();
+        int head = ownerHead(ownerId);
+        if (head < 0) {
+            return result;
+        }
+        int slot = head;
+        do {
+            result.add(readLink(slot));
+            slot = ownerNext(slot);
+        } while (slot != head);
+        return result;
+    }
+
+    /**
+     * Страница идёт по списку владельца: курсор находится по id за одно обращение к индексу,
+     * поэтому стоимость зависит от размера страницы, а не от числа ссылок владельца.
+     */
+    @Override
+    public synchronized LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть > 0");
+        }
+        int head = ownerHead(ownerId);
+        int slot = head < 0 || cursor == null ? head : firstAfter(head, OwnerCursor.decode(cursor));
+        List<ShortLink> page = new ArrayList<>();
+        while (slot >= 0 && page.size() < pageSize) {
+            page.add(readLink(slot));
+            slot = ownerNext(slot);
+            if (slot == head) {
+                slot = -1;
+            }
+        }
+        String next = slot < 0 ? null : OwnerCursor.of(page.get(page.size() - 1)).encode();
+        return new LinkPage(page, next);
+    }
+
+    /**
+     * Первый слот списка владельца, идущий после курсора, или -1.
+     */
+    private int firstAfter(int head, OwnerCursor after) {
+        byte[] id = after.id().getBytes(StandardCharsets.UTF_8);
+        int at = id.length <= ID_MAX ? findSlot(R_ID, ID_MAX, id) : -1;
+        if (at >= 0 && sameOwner(at, head) && compareToCursor(at, after) == 0) {
+            int next = ownerNext(at);
+            return next == head ? -1 : next;
+        }
+        // ссылку курсора уже удалили или перезаписали — ищем место с начала списка
+        int slot = head;
+        do {
+            if (compareToCursor(slot, after) > 0) {
+                return slot;
+            }
+            slot = ownerNext(slot);
+        } while (slot != head);
+        return -1;
+    }
+
+    @Override
+    public synchronized void deleteById(String id) throws DataAccessException {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > ID_MAX) {
+            return;
+        }
+        int slot = findSlot(R_ID, ID_MAX, key);
+        if (slot >= 0) {
+            beginWrite();
+            try {
+                removeSlot(slot);
+                rebuildIfTooManyTombstones();
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    @Override
+    public void deleteExpired(Instant now) throws DataAccessException {
+        deleteExpired(now, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Ссылки снимаются с вершины кучи сроков, начиная с самых старых: пачка стоит O(limit · log n).
+     */
+    @Override
+    public synchronized int deleteExpired(Instant now, int limit) {
+        if (heapSize == 0 || !expiresBefore(heapAt(0), now)) {
+            return 0;
+        }
+        beginWrite();
+        try {
+            int removed = 0;
+            while (removed < limit && heapSize > 0 && expiresBefore(heapAt(0), now)) {
+                removeSlot(heapAt(0));
+                removed++;
+            }
+            rebuildIfTooManyTombstones();
+            return removed;
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public synchronized Optional<Instant> nextExpiry() {
+        if (heapSize == 0) {
+            return Optional.empty();
+        }
+        int off = offset(heapAt(0));
+        return Optional.of(Instant.ofEpochSecond(records.getLong(off + R_EXPIRES_SECONDS),
+                records.getInt(off + R_EXPIRES_NANOS)));
+    }
+
+    @Override
+    public boolean shortCodeExists(String shortCode) {
+        byte[] code = shortCode.getBytes(StandardCharsets.UTF_8);
+        return code.length <= CODE_MAX && findSlot(R_CODE, CODE_MAX, code) >= 0;
+    }
+
+    @Override
+    public synchronized void forEachShortCode(Consumer<String> action) {
+        for (int slot = 0; slot < highWater; slot++) {
+            if (status(slot) == STATUS_LIVE) {
+                action.accept(readString(offset(slot) + R_CODE, CODE_MAX));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return highWater - freeCount;
+    }
+
+    @Override
+    public synchronized void close() throws DataAccessException {
+        records.force();
+        index.force();
+        for (MappedByteBuffer chunk : urlChunks) {
+            chunk.force();
+        }
+        records.putInt(H_CLEAN, 1);
+        records.force();
+        try {
+            recordsChannel.close();
+            indexChannel.close();
+            urlsChannel.close();
+        } catch (IOException e) {
+            throw new DataAccessException("Ошибка закрытия отображаемого хранилища ссылок", e);
+        }
+    }
+
+    long rawState(int slot) {
+        return (long) LONGS.getVolatile(records, offset(slot) + R_STATE);
+    }
+
+    boolean casRawState(int slot, long expected, long update) {
+        return LONGS.compareAndSet(records, offset(slot) + R_STATE, expected, update);
+    }
+
+    /**
+     * Читает запись слота. null — слот свободен или был переписан во время чтения.
+     */
+    private MappedShortLink readLink(int slot) {
+        int off = offset(slot);
+        long before = (long) LONGS.getAcquire(records, off + R_STATE);
+        if ((int) INTS.getAcquire(records, off + R_STATUS) != STATUS_LIVE) {
+            return null;
+        }
+        String id = readString(off + R_ID, ID_MAX);
+        String code = readString(off + R_CODE, CODE_MAX);
+        UUID owner = new UUID(records.getLong(off + R_OWNER_MSB), records.getLong(off + R_OWNER_LSB));
+        int maxClicks = records.getInt(off + R_MAX_CLICKS);
+        Instant createdAt = Instant.ofEpochSecond(records.getLong(off + R_CREATED_SECONDS),
+                records.getInt(off + R_CREATED_NANOS));
+        Instant expiresAt = Instant.ofEpochSecond(records.getLong(off + R_EXPIRES_SECONDS),
+                records.getInt(off + R_EXPIRES_NANOS));
+        String url = readUrl(records.getLong(off + R_URL_OFFSET), records.getInt(off + R_URL_LENGTH));
+        VarHandle.acquireFence();
+        long after = (long) LONGS.getVolatile(records, off + R_STATE);
+        if (url == null || MappedShortLink.generation(before) != MappedShortLink.generation(after)) {
+            return null;
+        }
+        return new MappedShortLink(this, slot, after, id, code, url, owner, maxClicks, createdAt, expiresAt);
+    }
+
+    private void writeRecord(int slot, ShortLink link, byte[] id, byte[] code, long urlOffset, int urlLength) {
+        int off = offset(slot);
+        records.putInt(off + R_MAX_CLICKS, link.getMaxClicks());
+        records.putLong(off + R_OWNER_MSB, link.getOwnerId().getMostSignificantBits());
+        records.putLong(off + R_OWNER_LSB, link.getOwnerId().getLeastSignificantBits());
+        records.putLong(off + R_CREATED_SECONDS, link.getCreatedAt().getEpochSecond());
+        records.putInt(off + R_CREATED_NANOS, link.getCreatedAt().getNano());
+        records.putLong(off + R_EXPIRES_SECONDS, link.getExpiresAt().getEpochSecond());
+        records.putInt(off + R_EXPIRES_NANOS, link.getExpiresAt().getNano());
+        records.putLong(off + R_URL_OFFSET, urlOffset);
+        records.putInt(off + R_URL_LENGTH, urlLength);
+        writeBytes(off + R_ID, id);
+        writeBytes(off + R_CODE, code);
+        records.putLong(H_SEQUENCE, ++sequence);
+        records.putLong(off + R_SEQUENCE, sequence);
+        long generation = MappedShortLink.generation(rawState(slot));
+        LONGS.setRelease(records, off + R_STATE, MappedShortLink.encode(generation, link));
+        INTS.setRelease(records, off + R_STATUS, STATUS_LIVE);
+    }
+
+    private void removeSlot(int slot) {
+        int off = offset(slot);
+        tombstone(position(R_ID, ID_MAX, readBytes(off + R_ID, ID_MAX)));
+        tombstone(position(R_CODE, CODE_MAX, readBytes(off + R_CODE, CODE_MAX)));
+        heapRemove(slot);
+        ownerUnlink(slot);
+        retire(slot);
+    }
+
+    /**
+     * Освобождает слот: новое поколение делает недействительными все выданные представления записи.
+     */
+    private void retire(int slot) {
+        long raw;
+        do {
+            raw = rawState(slot);
+        } while (!casRawState(slot, raw, MappedShortLink.retire(raw)));
+        INTS.setRelease(records, offset(slot) + R_STATUS, STATUS_FREE);
+        pushFree(slot);
+    }
+
+    private int allocateSlot() throws DataAccessException {
+        if (freeCount > 0) {
+            freeCount--;
+            records.putInt(H_FREE_COUNT, freeCount);
+            return records.getInt(freeBase + 4 * freeCount);
+        }
+        if (highWater == capacity) {
+            throw new DataAccessException("Отображаемое хранилище ссылок заполнено: ёмкость " + capacity, null);
+        }
+        int slot = highWater;
+        records.putInt(H_HIGH_WATER, slot + 1);
+        highWater = slot + 1;
+        return slot;
+    }
+
+    private void pushFree(int slot) {
+        records.putInt(freeBase + 4 * freeCount, slot);
+        freeCount++;
+        records.putInt(H_FREE_COUNT, freeCount);
+    }
+
+    // ---- хэш-таблицы в links.idx ----
+
+    private int pairBase(int pair) {
+        return INDEX_HEADER_SIZE + pair * TABLES_PER_PAIR * 4 * tableSize;
+    }
+
+    private int tableBase(int keyField) {
+        int pair = pairBase(activeTables);
+        return keyField == R_CODE ? pair : pair + 4 * tableSize;
+    }
+
+    private int ownerTableBase(int pair) {
+        return pairBase(pair) + 2 * 4 * tableSize;
+    }
+
+    private int findSlot(int keyField, int keyMax, byte[] key) {
+        int pos = position(keyField, keyMax, key);
+        return pos < 0 ? -1 : (int) INTS.getAcquire(index, pos) - 1;
+    }
+
+    /**
+     * Смещение в файле индекса элемента таблицы с данным ключом или -1.
+     */
+    private int position(int keyField, int keyMax, byte[] key) {
+        return positionIn(tableBase(keyField), keyField, keyMax, key);
+    }
+
+    private int positionIn(int base, int keyField, int keyMax, byte[] key) {
+        int mask = tableSize - 1;
+        int i = hash(key) & mask;
+        for (int probes = 0; probes < tableSize; probes++) {
+            int pos = base + 4 * i;
+            int entry = (int) INTS.getAcquire(index, pos);
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != TOMBSTONE && keyEquals(offset(entry - 1) + keyField, keyMax, key)) {
+                return pos;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int keyField, int keyMax, byte[] key, int slot) {
+        insertInto(tableBase(keyField), key, slot);
+    }
+
+    private void insertInto(int base, byte[] key, int slot) {
+        int mask = tableSize - 1;
+        int i = hash(key) & mask;
+        while (true) {
+            int pos = base + 4 * i;
+            int entry = index.getInt(pos);
+            if (entry == EMPTY || entry == TOMBSTONE) {
+                if (entry == TOMBSTONE) {
+                    tombstones--;
+                    records.putInt(H_TOMBSTONES, tombstones);
+                }
+                INTS.setRelease(index, pos, slot + 1);
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void setEntry(int pos, int slot) {
+        INTS.setRelease(index, pos, slot + 1);
+    }
+
+    private void tombstone(int pos) {
+        if (pos < 0) {
+            return;
+        }
+        INTS.setRelease(index, pos, TOMBSTONE);
+        tombstones++;
+        records.putInt(H_TOMBSTONES, tombstones);
+    }
+
+    private void rebuildIfTooManyTombstones() {
+        if (tombstones > tableSize / 4) {
+            rebuildIndex(false);
+        }
+    }
+
+    /**
+     * Восстановление после аварийного завершения: стек свободных слотов, таблицы, списки владельцев
+     * и куча сроков строятся заново по живым записям.
+     */
+    private void recover() {
+        freeCount = 0;
+        rebuildIndex(true);
+        records.putInt(H_FREE_COUNT, freeCount);
+        rebuildHeap();
+    }
+
+    /**
+     * Строит индекс по живым записям в неактивной паре таблиц и переключает читателей на неё.
+     * Таблица владельцев копируется из активной пары, а при восстановлении строится вместе со списками.
+     * <p>
+     * Обновление пишет новую запись раньше, чем освобождает старую, поэтому после сбоя между этими шагами
+     * живых записей с одним id (или кодом) может оказаться две. Из них остаётся записанная последней.
+     */
+    private void rebuildIndex(boolean recovering) {
+        int target = 1 - activeTables;
+        int codeBase = pairBase(target);
+        int idBase = codeBase + 4 * tableSize;
+        for (int pos = codeBase; pos < codeBase + TABLES_PER_PAIR * 4 * tableSize; pos += 4) {
+            index.putInt(pos, EMPTY);
+        }
+        tombstones = 0;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (status(slot) != STATUS_LIVE) {
+                if (recovering) {
+                    pushFree(slot);
+                }
+                continue;
+            }
+            int off = offset(slot);
+            sequence = Math.max(sequence, records.getLong(off + R_SEQUENCE));
+            byte[] code = readBytes(off + R_CODE, CODE_MAX);
+            byte[] id = readBytes(off + R_ID, ID_MAX);
+            int sameCode = positionIn(codeBase, R_CODE, CODE_MAX, code);
+            int sameId = positionIn(idBase, R_ID, ID_MAX, id);
+            if (!supersedes(slot, sameCode) || !supersedes(slot, sameId)) {
+                retire(slot);
+                continue;
+            }
+            dropDuplicate(codeBase, idBase, sameCode);
+            dropDuplicate(codeBase, idBase, sameId);
+            insertInto(codeBase, code, slot);
+            insertInto(idBase, id, slot);
+        }
+        if (recovering) {
+            linkOwners(ownerTableBase(target));
+        } else {
+            copyOwners(ownerTableBase(activeTables), ownerTableBase(target));
+        }
+        records.putLong(H_SEQUENCE, sequence);
+        index.putInt(H_MAGIC, MAGIC);
+        index.putInt(4, tableSize);
+        records.putInt(H_TOMBSTONES, tombstones);
+        records.putInt(H_ACTIVE_TABLES, target);
+        activeTables = target;
+    }
+
+    /**
+     * Новее ли запись slot, чем запись, на которую указывает элемент таблицы pos (если он есть).
+     */
+    private boolean supersedes(int slot, int pos) {
+        if (pos < 0) {
+            return true;
+        }
+        int other = index.getInt(pos) - 1;
+        return records.getLong(offset(slot) + R_SEQUENCE) > records.getLong(offset(other) + R_SEQUENCE);
+    }
+
+    /**
+     * Убирает из строящихся таблиц и освобождает устаревшую копию записи.
+     */
+    private void dropDuplicate(int codeBase, int idBase, int pos) {
+        if (pos < 0 || index.getInt(pos) == TOMBSTONE) {
+            return;
+        }
+        int stale = index.getInt(pos) - 1;
+        int off = offset(stale);
+        tombstone(positionIn(codeBase, R_CODE, CODE_MAX, readBytes(off + R_CODE, CODE_MAX)));
+        tombstone(positionIn(idBase, R_ID, ID_MAX, readBytes(off + R_ID, ID_MAX)));
+        retire(stale);
+    }
+
+    // ---- списки владельцев: кольцо в порядке (createdAt, id), таблица владельцев указывает на голову ----
+
+    private int ownerHead(UUID ownerId) {
+        int pos = ownerPositionIn(ownerTableBase(activeTables), ownerId);
+        return pos < 0 ? -1 : index.getInt(pos) - 1;
+    }
+
+    private int ownerPositionIn(int base, UUID ownerId) {
+        int mask = tableSize - 1;
+        int i = hash(ownerKey(ownerId)) & mask;
+        for (int probes = 0; probes < tableSize; probes++) {
+            int pos = base + 4 * i;
+            int entry = index.getInt(pos);
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != TOMBSTONE && ownerOf(entry - 1).equals(ownerId)) {
+                return pos;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Вставляет слот в список владельца. Новые ссылки обычно самые поздние, поэтому место ищется с хвоста.
+     */
+    private void ownerInsert(int slot) {
+        UUID ownerId = ownerOf(slot);
+        int head = ownerHead(ownerId);
+        if (head < 0) {
+            setOwnerLinks(slot, slot, slot);
+            insertInto(ownerTableBase(activeTables), ownerKey(ownerId), slot);
+            return;
+        }
+        int prev = ownerPrev(head);
+        while (ownerOrder(slot, prev) < 0) {
+            if (prev == head) {
+                linkAfter(ownerPrev(head), slot);
+                setEntry(ownerPositionIn(ownerTableBase(activeTables), ownerId), slot);
+                return;
+            }
+            prev = ownerPrev(prev);
+        }
+        linkAfter(prev, slot);
+    }
+
+    private void linkAfter(int prev, int slot) {
+        int next = ownerNext(prev);
+        setOwnerLinks(slot, prev, next);
+        records.putInt(offset(prev) + R_OWNER_NEXT, slot);
+        records.putInt(offset(next) + R_OWNER_PREV, slot);
+    }
+
+    private void ownerUnlink(int slot) {
+        int pos = ownerPositionIn(ownerTableBase(activeTables), ownerOf(slot));
+        int next = ownerNext(slot);
+        if (next == slot) {
+            tombstone(pos);
+            return;
+        }
+        int prev = ownerPrev(slot);
+        records.putInt(offset(prev) + R_OWNER_NEXT, next);
+        records.putInt(offset(next) + R_OWNER_PREV, prev);
+        if (index.getInt(pos) - 1 == slot) {
+            setEntry(pos, next);
+        }
+    }
+
+    /**
+     * Ставит новую запись ссылки на место старой, если её положение в списке не изменилось.
+     */
+    private void ownerReplace(int old, int slot) {
+        int pos = ownerPositionIn(ownerTableBase(activeTables), ownerOf(old));
+        int next = ownerNext(old);
+        if (next == old) {
+            setOwnerLinks(slot, slot, slot);
+        } else {
+            int prev = ownerPrev(old);
+            setOwnerLinks(slot, prev, next);
+            records.putInt(offset(prev) + R_OWNER_NEXT, slot);
+            records.putInt(offset(next) + R_OWNER_PREV, slot);
+        }
+        if (index.getInt(pos) - 1 == old) {
+            setEntry(pos, slot);
+        }
+    }
+
+    private void linkOwners(int base) {
+        Map<UUID, List<Integer>> byOwner = new HashMap<>();
+        for (int slot = 0; slot < highWater; slot++) {
+            if (status(slot) == STATUS_LIVE) {
+                byOwner.computeIfAbsent(ownerOf(slot), k -> new ArrayList<>()).add(slot);
+            }
+        }
+        for (var entry : byOwner.entrySet()) {
+            List<Integer> slots = entry.getValue();
+            slots.sort(this::ownerOrder);
+            int n = slots.size();
+            for (int i = 0; i < n; i++) {
+                setOwnerLinks(slots.get(i), slots.get((i + n - 1) % n), slots.get((i + 1) % n));
+            }
+            insertInto(base, ownerKey(entry.getKey()), slots.get(0));
+        }
+    }
+
+    private void copyOwners(int from, int to) {
+        for (int pos = from; pos < from + 4 * tableSize; pos += 4) {
+            int entry = index.getInt(pos);
+            if (entry != EMPTY && entry != TOMBSTONE) {
+                insertInto(to, ownerKey(ownerOf(entry - 1)), entry - 1);
+            }
+        }
+    }
+
+    private void setOwnerLinks(int slot, int prev, int next) {
+        records.putInt(offset(slot) + R_OWNER_PREV, prev);
+        records.putInt(offset(slot) + R_OWNER_NEXT, next);
+    }
+
+    private int ownerPrev(int slot) {
+        return records.getInt(offset(slot) + R_OWNER_PREV);
+    }
+
+    private int ownerNext(int slot) {
+        return records.getInt(offset(slot) + R_OWNER_NEXT);
+    }
+
+    private UUID ownerOf(int slot) {
+        int off = offset(slot);
+        return new UUID(records.getLong(off + R_OWNER_MSB), records.getLong(off + R_OWNER_LSB));
+    }
+
+    private boolean sameOwner(int a, int b) {
+        return records.getLong(offset(a) + R_OWNER_MSB) == records.getLong(offset(b) + R_OWNER_MSB)
+                && records.getLong(offset(a) + R_OWNER_LSB) == records.getLong(offset(b) + R_OWNER_LSB);
+    }
+
+    /**
+     * Порядок {@link OwnerCursor}: по createdAt, при равенстве — по id.
+     */
+    private int ownerOrder(int a, int b) {
+        int offA = offset(a);
+        int offB = offset(b);
+        int bySeconds = Long.compare(records.getLong(offA + R_CREATED_SECONDS), records.getLong(offB + R_CREATED_SECONDS));
+        if (bySeconds != 0) {
+            return bySeconds;
+        }
+        int byNanos = Integer.compare(records.getInt(offA + R_CREATED_NANOS), records.getInt(offB + R_CREATED_NANOS));
+        if (byNanos != 0) {
+            return byNanos;
+        }
+        return readString(offA + R_ID, ID_MAX).compareTo(readString(offB + R_ID, ID_MAX));
+    }
+
+    private int compareToCursor(int slot, OwnerCursor cursor) {
+        int off = offset(slot);
+        Instant createdAt = Instant.ofEpochSecond(records.getLong(off + R_CREATED_SECONDS),
+                records.getInt(off + R_CREATED_NANOS));
+        int byTime = createdAt.compareTo(cursor.createdAt());
+        return byTime != 0 ? byTime : readString(off + R_ID, ID_MAX).compareTo(cursor.id());
+    }
+
+    private static byte[] ownerKey(UUID ownerId) {
+        return ByteBuffer.allocate(16)
+                .putLong(ownerId.getMostSignificantBits())
+                .putLong(ownerId.getLeastSignificantBits())
+                .array();
+    }
+
+    // ---- куча сроков в links.idx: слоты по expiresAt, позиция каждого слота хранится рядом ----
+
+    private int heapAt(int i) {
+        return index.getInt(heapBase + 4 * i);
+    }
+
+    private void heapSet(int i, int slot) {
+        index.putInt(heapBase + 4 * i, slot);
+        index.putInt(heapPosBase + 4 * slot, i);
+    }
+
+    private void heapInsert(int slot) {
+        int i = heapSize++;
+        index.putInt(I_HEAP_SIZE, heapSize);
+        heapSet(i, slot);
+        siftUp(i);
+    }
+
+    private void heapRemove(int slot) {
+        int i = index.getInt(heapPosBase + 4 * slot);
+        int last = heapAt(--heapSize);
+        index.putInt(I_HEAP_SIZE, heapSize);
+        if (i == heapSize) {
+            return;
+        }
+        heapSet(i, last);
+        if (i > 0 && expiresEarlier(last, heapAt((i - 1) / 2))) {
+            siftUp(i);
+        } else {
+            siftDown(i);
+        }
+    }
+
+    private void rebuildHeap() {
+        heapSize = 0;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (status(slot) == STATUS_LIVE) {
+                heapSet(heapSize++, slot);
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        index.putInt(I_HEAP_SIZE, heapSize);
+    }
+
+    private void siftUp(int i) {
+        int slot = heapAt(i);
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            int parentSlot = heapAt(parent);
+            if (!expiresEarlier(slot, parentSlot)) {
+                break;
+            }
+            heapSet(i, parentSlot);
+            i = parent;
+        }
+        heapSet(i, slot);
+    }
+
+    private void siftDown(int i) {
+        int slot = heapAt(i);
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && expiresEarlier(heapAt(child + 1), heapAt(child))) {
+                child++;
+            }
+            int childSlot = heapAt(child);
+            if (!expiresEarlier(childSlot, slot)) {
+                break;
+            }
+            heapSet(i, childSlot);
+            i = child;
+        }
+        heapSet(i, slot);
+    }
+
+    private boolean expiresEarlier(int a, int b) {
+        int offA = offset(a);
+        int offB = offset(b);
+        long secondsA = records.getLong(offA + R_EXPIRES_SECONDS);
+        long secondsB = records.getLong(offB + R_EXPIRES_SECONDS);
+        return secondsA < secondsB
+                || (secondsA == secondsB && records.getInt(offA + R_EXPIRES_NANOS) < records.getInt(offB + R_EXPIRES_NANOS));
+    }
+
+    // ---- куча URL ----
+
+    private long appendUrl(byte[] url) throws DataAccessException {
+        if (url.length > URL_CHUNK_SIZE) {
+            throw new DataAccessException("URL длиннее " + URL_CHUNK_SIZE + " байт", null);
+        }
+        long offset = urlTail;
+        // URL не пересекает границу куска, чтобы читать его одним обращением
+        if ((offset % URL_CHUNK_SIZE) + url.length > URL_CHUNK_SIZE) {
+            offset = (offset / URL_CHUNK_SIZE + 1) * URL_CHUNK_SIZE;
+        }
+        int chunk = (int) (offset / URL_CHUNK_SIZE);
+        MappedByteBuffer[] chunks = urlChunks;
+        if (chunk >= chunks.length) {
+            try {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = mapUrlChunk(chunk);
+            } catch (IOException e) {
+                throw new DataAccessException("Ошибка расширения файла URL", e);
+            }
+            urlChunks = chunks;
+        }
+        chunks[chunk].put((int) (offset % URL_CHUNK_SIZE), url);
+        urlTail = offset + url.length;
+        records.putLong(H_URL_TAIL, urlTail);
+        return offset;
+    }
+
+    private String readUrl(long offset, int length) {
+        MappedByteBuffer[] chunks = urlChunks;
+        int chunk = (int) (offset / URL_CHUNK_SIZE);
+        int start = (int) (offset % URL_CHUNK_SIZE);
+        if (length < 0 || chunk >= chunks.length || start + length > URL_CHUNK_SIZE) {
+            // поля прочитаны во время перезаписи слота — вызывающий отбросит результат
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        chunks[chunk].get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean urlEquals(int slot, byte[] url) {
+        int off = offset(slot);
+        if (records.getInt(off + R_URL_LENGTH) != url.length) {
+            return false;
+        }
+        String stored = readUrl(records.getLong(off + R_URL_OFFSET), url.length);
+        return stored != null && Arrays.equals(stored.getBytes(StandardCharsets.UTF_8), url);
+    }
+
+    private MappedByteBuffer mapUrlChunk(int chunk) throws IOException {
+        MappedByteBuffer buffer = urlsChannel.map(FileChannel.MapMode.READ_WRITE,
+                (long) chunk * URL_CHUNK_SIZE, URL_CHUNK_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    // ---- поля записей ----
+
+    static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private int status(int slot) {
+        return (int) INTS.getAcquire(records, offset(slot) + R_STATUS);
+    }
+
+    private boolean expiresBefore(int slot, Instant now) {
+        int off = offset(slot);
+        long seconds = records.getLong(off + R_EXPIRES_SECONDS);
+        int nanos = records.getInt(off + R_EXPIRES_NANOS);
+        // то же, что ShortLink.isExpired: now строго позже expiresAt
+        return seconds < now.getEpochSecond() || (seconds == now.getEpochSecond() && nanos < now.getNano());
+    }
+
+    private void writeBytes(int fieldOffset, byte[] value) {
+        records.put(fieldOffset, (byte) value.length);
+        records.put(fieldOffset + 1, value);
+    }
+
+    private byte[] readBytes(int fieldOffset, int max) {
+        int length = Math.min(records.get(fieldOffset) & 0xFF, max);
+        byte[] bytes = new byte[length];
+        records.get(fieldOffset + 1, bytes);
+        return bytes;
+    }
+
+    private String readString(int fieldOffset, int max) {
+        return new String(readBytes(fieldOffset, max), StandardCharsets.UTF_8);
+    }
+
+    private boolean keyEquals(int fieldOffset, int max, byte[] key) {
+        if ((records.get(fieldOffset) & 0xFF) != key.length || key.length > max) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (records.get(fieldOffset + 1 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] keyBytes(String value, int max, String name) throws DataAccessException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > max) {
+            throw new DataAccessException("Поле " + name + " длиннее " + max + " байт: " + value, null);
+        }
+        return bytes;
+    }
+
+    private static int hash(byte[] key) {
+        int h = Arrays.hashCode(key) * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        // не меньше двух элементов таблицы на запись, чтобы цепочки проб оставались короткими
+        return Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+    }
+
+    private static int readStoredCapacity(FileChannel channel) throws IOException, DataAccessException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        if (header.getInt(H_MAGIC) != MAGIC) {
+            throw new DataAccessException("Файл не является хранилищем ссылок", null);
+        }
+        return header.getInt(H_CAPACITY);
+    }
+}
@@ -0,0 +1,47 @@
+package repository;
+
+import model.ShortLink;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Позиция ссылки в списке владельца: ссылки упорядочены по createdAt, при равенстве — по id.
+ * Наружу отдаётся как непрозрачный токен продолжения.
+ */
+record OwnerCursor(Instant createdAt, String id) implements Comparable<OwnerCursor> {
+
+    private static final Comparator<OwnerCursor> ORDER =
+            Comparator.comparing(OwnerCursor::createdAt).thenComparing(OwnerCursor::id);
+
+    static OwnerCursor of(ShortLink link) {
+        return new OwnerCursor(link.getCreatedAt(), link.getId());
+    }
+
+    static OwnerCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Некорректный курсор страницы");
+            }
+            return new OwnerCursor(Instant.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Некорректный курсор страницы", e);
+        }
+    }
+
+    String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public int compareTo(OwnerCursor other) {
+        return ORDER.compare(this, other);
+    }
+}
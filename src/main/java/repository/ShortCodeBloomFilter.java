@@ -0,0 +1,95 @@
+package repository;
+
+import model.ShortCodeCodec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Фильтр Блума по коротким кодам: «нет» — кода точно нет, «да» — код, возможно, есть.
+ * Размер — степень двойки бит под expected кодов с долей ложных «да» falsePositiveRate.
+ * Коды из алфавита хэшируются по упакованному значению ({@link ShortCodeCodec}), без обхода строки.
+ * Добавление и проверка не берут блокировок.
+ */
+final class ShortCodeBloomFilter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int MAX_HASHES = 16;
+
+    private final long[] words;
+    private final long mask;
+    private final int hashes;
+    private final long capacity;
+
+    ShortCodeBloomFilter(long expected, double falsePositiveRate) {
+        long n = Math.max(1, expected);
+        double bits = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long size = Long.highestOneBit(Math.max(64, (long) Math.ceil(bits)) - 1) << 1;
+        if (size / 64 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Слишком большой фильтр кодов: " + expected + " кодов");
+        }
+        this.words = new long[(int) (size / 64)];
+        this.mask = size - 1;
+        this.hashes = (int) Math.max(1, Math.min(MAX_HASHES, Math.round((double) size / n * Math.log(2))));
+        this.capacity = n;
+    }
+
+    /**
+     * Добавляет код; true — изменился хотя бы один бит, то есть код добавлен впервые
+     * (или совпал с другими кодами не по всем битам).
+     */
+    boolean add(String code) {
+        long h1 = hash(code);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            long flag = 1L << bit;
+            long before = (long) WORDS.getAndBitwiseOr(words, (int) (bit >>> 6), flag);
+            changed |= (before & flag) == 0;
+        }
+        return changed;
+    }
+
+    boolean mightContain(String code) {
+        long h1 = hash(code);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if (((long) WORDS.getAcquire(words, (int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Число кодов, под которое рассчитан фильтр.
+     */
+    long capacity() {
+        return capacity;
+    }
+
+    private static long hash(String code) {
+        long packed = ShortCodeCodec.pack(code);
+        if (packed != ShortCodeCodec.NOT_PACKABLE) {
+            return mix(packed);
+        }
+        // FNV-1a по символам, затем перемешивание
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            h ^= code.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,650 @@
+package repository;
+
+import exception.ShortCodeConflictException;
+import model.LinkPage;
+import model.ShortCodeCodec;
+import model.ShortLink;
+
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Общие для файловых хранилищ ссылки в памяти с индексами по id, по shortCode, по владельцу и по сроку жизни.
+ *
+ * <p>Ссылки хранятся не объектами, а столбцами примитивов в страницах по {@value #PAGE_SIZE} слотов:
+ * id в виде UUID — два long, shortCode — упакованное {@link ShortCodeCodec} число, время — секунды эпохи
+ * и наносекунды отдельными столбцами (так представим любой {@link Instant}).
+ * Индексы по id и коду — хэш-таблицы примитивов ({@link SlotHashTable}, {@link LongSlotMap}), у владельца — список с пропусками
+ * ключей (createdAt, id), так что добавление и удаление стоят O(log n) даже для владельца с миллионом ссылок.
+ * Объект {@link ShortLink} строится только при чтении; его счётчик переходов живёт в слоте
+ * (см. {@link SlotShortLink}), поэтому сохранять прочитанную ссылку после перехода не нужно.
+ *
+ * <p>Чтение не берёт блокировок: слот публикуется записью слова состояния, а читатель проверяет,
+ * что метка слота не изменилась, пока он читал столбцы. Изменения выполняются под монитором индекса.
+ */
+final class ShortLinkIndex {
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Слово состояния слота: биты ShortLink (счётчик и активность), признак занятости и поколение слота
+    private static final long LIVE_BIT = 1L << 33;
+    private static final int GENERATION_SHIFT = 34;
+    private static final long GENERATION_MASK = (1L << (64 - GENERATION_SHIFT)) - 1;
+
+    private static final class Page {
+        final long[] idHi = new long[PAGE_SIZE];
+        final long[] idLo = new long[PAGE_SIZE];
+        // id и коды, которые не укладываются в примитивы, хранятся строкой
+        final String[] idText = new String[PAGE_SIZE];
+        final long[] code = new long[PAGE_SIZE];
+        final String[] codeText = new String[PAGE_SIZE];
+        final long[] ownerHi = new long[PAGE_SIZE];
+        final long[] ownerLo = new long[PAGE_SIZE];
+        final long[] createdSeconds = new long[PAGE_SIZE];
+        final int[] createdNanos = new int[PAGE_SIZE];
+        final long[] expiresSeconds = new long[PAGE_SIZE];
+        final int[] expiresNanos = new int[PAGE_SIZE];
+        final int[] maxClicks = new int[PAGE_SIZE];
+        final String[] urls = new String[PAGE_SIZE];
+        final AtomicLongArray state = new AtomicLongArray(PAGE_SIZE);
+    }
+
+    private static final class IntList {
+        int[] items = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == value) {
+                    items[i] = items[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private volatile Page[] pages = new Page[0];
+    private volatile int highWater;
+    private volatile int size;
+
+    private final SlotHashTable byUuidId = new SlotHashTable();
+    private final ConcurrentMap<String, Integer> byTextId = new ConcurrentHashMap<>();
+    private final LongSlotMap byPackedCode = new LongSlotMap();
+    private final ConcurrentMap<String, Integer> byTextCode = new ConcurrentHashMap<>();
+    // Слоты каждого владельца по (createdAt, id); читаются без блокировок
+    private final ConcurrentMap<UUID, ConcurrentSkipListSet<OwnerKey>> byOwner = new ConcurrentHashMap<>();
+
+    // Дальше — только под монитором индекса
+    // Слоты по секунде истечения: очистка читает только голову карты, а не всё хранилище
+    private final NavigableMap<Long, IntList> byExpirySecond = new TreeMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    /**
+     * Добавляет или заменяет ссылку с тем же id. Код, занятый ссылкой с другим id, не отбирается:
+     * генераторы проверяют занятость раньше, чем сохраняют, и два параллельных создания могут выбрать один код.
+     */
+    void put(ShortLink link) throws ShortCodeConflictException {
+        if (link instanceof IndexedShortLink view && view.index == this) {
+            // текущее состояние уже в слоте; устаревшее представление не должно перетирать
+            // более новую запись или воскрешать удалённую
+            return;
+        }
+        Instant createdAt = link.getCreatedAt();
+        Instant expiresAt = link.getExpiresAt();
+        synchronized (this) {
+            int existing = slotOfId(link.getId());
+            int codeOwner = slotOfCode(link.getShortCode());
+            if (codeOwner >= 0 && codeOwner != existing) {
+                throw new ShortCodeConflictException(link.getShortCode());
+            }
+            int slot = allocateSlot();
+            Page page = pages[slot >>> PAGE_SHIFT];
+            int i = slot & PAGE_MASK;
+            writeId(page, i, link.getId());
+            writeCode(page, i, link.getShortCode());
+            page.ownerHi[i] = link.getOwnerId().getMostSignificantBits();
+            page.ownerLo[i] = link.getOwnerId().getLeastSignificantBits();
+            page.createdSeconds[i] = createdAt.getEpochSecond();
+            page.createdNanos[i] = createdAt.getNano();
+            page.expiresSeconds[i] = expiresAt.getEpochSecond();
+            page.expiresNanos[i] = expiresAt.getNano();
+            page.maxClicks[i] = link.getMaxClicks();
+            page.urls[i] = link.getOriginalUrl();
+            long generation = (page.state.get(i) >>> GENERATION_SHIFT) & GENERATION_MASK;
+            page.state.set(i, (generation << GENERATION_SHIFT) | LIVE_BIT | SlotShortLink.stateBits(link));
+
+            indexId(link.getId(), slot);
+            indexCode(link.getShortCode(), slot);
+            if (existing >= 0) {
+                String oldCode = codeOf(existing);
+                if (!oldCode.equals(link.getShortCode())) {
+                    unindexCode(oldCode, existing);
+                }
+                removeFromOwner(existing);
+                removeFromExpiry(existing);
+                retire(existing);
+            } else {
+                size++;
+            }
+            addToOwner(slot);
+            byExpirySecond.computeIfAbsent(expiresAt.getEpochSecond(), s -> new IntList()).add(slot);
+        }
+    }
+
+    /**
+     * Загрузка с диска: запись, чей код уже занят другой ссылкой, пропускается с предупреждением.
+     * Такие записи могли остаться в журнале от версий, которые отбирали код у прежней ссылки.
+     */
+    void putLoaded(ShortLink link) {
+        try {
+            put(link);
+        } catch (ShortCodeConflictException e) {
+            System.out.println("⚠️ Ссылка " + link.getId() + " не загружена: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Представление этого индекса, чья запись с тех пор удалена или заменена.
+     */
+    boolean isStale(ShortLink link) {
+        return link instanceof IndexedShortLink view && view.index == this && !view.isCurrent();
+    }
+
+    synchronized boolean remove(String id) {
+        int slot = slotOfId(id);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    boolean containsId(String id) {
+        return slotOfId(id) >= 0;
+    }
+
+    ShortLink findByShortCode(String shortCode) {
+        ShortLink link = lookup(shortCode);
+        if (link != null || slotOfCode(shortCode) < 0) {
+            return link;
+        }
+        // слот переписали, пока мы его читали: повторяем, исключив конкурентную запись
+        synchronized (this) {
+            return lookup(shortCode);
+        }
+    }
+
+    /**
+     * Поиск пачки кодов: без блокировок, а коды, чьи слоты переписали во время чтения,
+     * перечитываются под одной блокировкой на всю пачку.
+     */
+    Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) {
+        Map<String, ShortLink> found = new HashMap<>();
+        List<String> raced = null;
+        for (String shortCode : shortCodes) {
+            ShortLink link = lookup(shortCode);
+            if (link != null) {
+                found.put(shortCode, link);
+            } else if (slotOfCode(shortCode) >= 0) {
+                if (raced == null) {
+                    raced = new ArrayList<>();
+                }
+                raced.add(shortCode);
+            }
+        }
+        if (raced != null) {
+            synchronized (this) {
+                for (String shortCode : raced) {
+                    ShortLink link = lookup(shortCode);
+                    if (link != null) {
+                        found.put(shortCode, link);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    boolean containsShortCode(String shortCode) {
+        return slotOfCode(shortCode) >= 0;
+    }
+
+    List<ShortLink> findByOwner(UUID ownerId) {
+        ConcurrentSkipListSet<OwnerKey> keys = byOwner.get(ownerId);
+        List<ShortLink> result = new ArrayList<>();
+        if (keys != null) {
+            for (OwnerKey key : keys) {
+                ShortLink link = readLink(key.slot());
+                if (link != null && link.getOwnerId().equals(ownerId)) {
+                    result.add(link);
+                }
+            }
+        }
+        return result;
+    }
+
+    LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть > 0");
+        }
+        ConcurrentSkipListSet<OwnerKey> keys = byOwner.get(ownerId);
+        if (keys == null) {
+            return new LinkPage(List.of(), null);
+        }
+        NavigableSet<OwnerKey> from = cursor == null ? keys : keys.tailSet(cursorKey(OwnerCursor.decode(cursor)), false);
+        List<ShortLink> page = new ArrayList<>(Math.min(pageSize, 64));
+        for (OwnerKey key : from) {
+            ShortLink link = readLink(key.slot());
+            if (link == null || !link.getOwnerId().equals(ownerId)) {
+                continue;
+            }
+            if (page.size() == pageSize) {
+                return new LinkPage(page, OwnerCursor.of(page.get(pageSize - 1)).encode());
+            }
+            page.add(link);
+        }
+        return new LinkPage(page, null);
+    }
+
+    /**
+     * Ссылки с expiresAt строго раньше now (как {@link ShortLink#isExpired}); стоимость зависит
+     * только от числа просроченных ссылок.
+     */
+    List<ShortLink> findExpired(Instant now) {
+        return findExpired(now, Integer.MAX_VALUE);
+    }
+
+    synchronized List<ShortLink> findExpired(Instant now, int limit) {
+        List<ShortLink> expired = new ArrayList<>(Math.min(limit, 256));
+        for (IntList bucket : byExpirySecond.headMap(now.getEpochSecond(), true).values()) {
+            for (int k = 0; k < bucket.size; k++) {
+                if (expired.size() == limit) {
+                    return expired;
+                }
+                int slot = bucket.items[k];
+                if (expiresAt(slot).isBefore(now)) {
+                    IndexedShortLink link = readLink(slot);
+                    if (link != null) {
+                        expired.add(link);
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    synchronized Instant nextExpiry() {
+        Map.Entry<Long, IntList> first = byExpirySecond.firstEntry();
+        if (first == null) {
+            return null;
+        }
+        // в корзине одна секунда, остаётся выбрать наименьшие наносекунды
+        int min = Integer.MAX_VALUE;
+        IntList bucket = first.getValue();
+        for (int k = 0; k < bucket.size; k++) {
+            int slot = bucket.items[k];
+            min = Math.min(min, page(slot).expiresNanos[slot & PAGE_MASK]);
+        }
+        return Instant.ofEpochSecond(first.getKey(), min);
+    }
+
+    Collection<ShortLink> values() {
+        int limit = highWater;
+        List<ShortLink> result = new ArrayList<>(size);
+        for (int slot = 0; slot < limit; slot++) {
+            ShortLink link = readLink(slot);
+            if (link != null) {
+                result.add(link);
+            }
+        }
+        return result;
+    }
+
+    void forEachShortCode(Consumer<String> action) {
+        int limit = highWater;
+        for (int slot = 0; slot < limit; slot++) {
+            String code = readCode(slot);
+            if (code != null) {
+                action.accept(code);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // ---- слоты ----
+
+    private Page page(int slot) {
+        return pages[slot >>> PAGE_SHIFT];
+    }
+
+    private ShortLink lookup(String shortCode) {
+        int slot = slotOfCode(shortCode);
+        if (slot < 0) {
+            return null;
+        }
+        ShortLink link = readLink(slot);
+        return link != null && link.getShortCode().equals(shortCode) ? link : null;
+    }
+
+    /**
+     * Строит представление слота. null — слот свободен или был переписан во время чтения.
+     */
+    private IndexedShortLink readLink(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        long before = page.state.get(i);
+        if ((before & LIVE_BIT) == 0) {
+            return null;
+        }
+        String id = page.idText[i] != null ? page.idText[i] : new UUID(page.idHi[i], page.idLo[i]).toString();
+        String code = page.codeText[i] != null ? page.codeText[i] : ShortCodeCodec.unpack(page.code[i]);
+        UUID owner = new UUID(page.ownerHi[i], page.ownerLo[i]);
+        Instant createdAt = Instant.ofEpochSecond(page.createdSeconds[i], page.createdNanos[i]);
+        Instant expiresAt = Instant.ofEpochSecond(page.expiresSeconds[i], page.expiresNanos[i]);
+        int maxClicks = page.maxClicks[i];
+        String url = page.urls[i];
+        VarHandle.acquireFence();
+        long after = page.state.get(i);
+        if ((after & SlotShortLink.TAG_MASK) != (before & SlotShortLink.TAG_MASK) || url == null) {
+            return null;
+        }
+        return new IndexedShortLink(this, slot, after, id, code, url, owner, maxClicks, createdAt, expiresAt);
+    }
+
+    /**
+     * Код занятого слота без построения представления; null — слот свободен или переписан во время чтения.
+     */
+    private String readCode(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        long before = page.state.get(i);
+        if ((before & LIVE_BIT) == 0) {
+            return null;
+        }
+        String text = page.codeText[i];
+        long packed = page.code[i];
+        VarHandle.acquireFence();
+        long after = page.state.get(i);
+        if ((after & SlotShortLink.TAG_MASK) != (before & SlotShortLink.TAG_MASK)
+                || (text == null && packed == ShortCodeCodec.NOT_PACKABLE)) {
+            return null;
+        }
+        return text != null ? text : ShortCodeCodec.unpack(packed);
+    }
+
+    long rawState(int slot) {
+        return page(slot).state.get(slot & PAGE_MASK);
+    }
+
+    boolean casRawState(int slot, long expected, long update) {
+        return page(slot).state.compareAndSet(slot & PAGE_MASK, expected, update);
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int slot = highWater;
+        if ((slot >>> PAGE_SHIFT) == pages.length) {
+            Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new Page();
+            pages = grown;
+        }
+        highWater = slot + 1;
+        return slot;
+    }
+
+    private void removeSlot(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        unindexId(page.idText[i] != null ? page.idText[i] : null, page.idHi[i], page.idLo[i], slot);
+        unindexCode(codeOf(slot), slot);
+        removeFromOwner(slot);
+        removeFromExpiry(slot);
+        retire(slot);
+        size--;
+    }
+
+    /**
+     * Освобождает слот: новое поколение делает недействительными все выданные представления записи.
+     */
+    private void retire(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        long raw;
+        long next;
+        do {
+            raw = page.state.get(i);
+            long generation = ((raw >>> GENERATION_SHIFT) + 1) & GENERATION_MASK;
+            next = (generation << GENERATION_SHIFT) | SlotShortLink.deactivated(raw);
+        } while (!page.state.compareAndSet(i, raw, next));
+        // строки не держим дольше ссылки
+        page.urls[i] = null;
+        page.idText[i] = null;
+        page.codeText[i] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // ---- индексы по id и коду ----
+
+    private int slotOfId(String id) {
+        UUID uuid = canonicalUuid(id);
+        if (uuid == null) {
+            Integer slot = byTextId.get(id);
+            return slot == null ? -1 : slot;
+        }
+        return byUuidId.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    private void writeId(Page page, int i, String id) {
+        UUID uuid = canonicalUuid(id);
+        if (uuid == null) {
+            page.idText[i] = id;
+        } else {
+            page.idText[i] = null;
+            page.idHi[i] = uuid.getMostSignificantBits();
+            page.idLo[i] = uuid.getLeastSignificantBits();
+        }
+    }
+
+    private void indexId(String id, int slot) {
+        UUID uuid = canonicalUuid(id);
+        if (uuid == null) {
+            byTextId.put(id, slot);
+        } else {
+            byUuidId.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), slot);
+        }
+    }
+
+    private void unindexId(String textId, long hi, long lo, int slot) {
+        if (textId != null) {
+            byTextId.remove(textId, slot);
+        } else {
+            byUuidId.remove(hi, lo, slot);
+        }
+    }
+
+    private int slotOfCode(String code) {
+        long packed = ShortCodeCodec.pack(code);
+        if (packed == ShortCodeCodec.NOT_PACKABLE) {
+            Integer slot = byTextCode.get(code);
+            return slot == null ? -1 : slot;
+        }
+        return byPackedCode.get(packed);
+    }
+
+    private void writeCode(Page page, int i, String code) {
+        long packed = ShortCodeCodec.pack(code);
+        page.code[i] = packed;
+        page.codeText[i] = packed == ShortCodeCodec.NOT_PACKABLE ? code : null;
+    }
+
+    private String codeOf(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        return page.codeText[i] != null ? page.codeText[i] : ShortCodeCodec.unpack(page.code[i]);
+    }
+
+    private void indexCode(String code, int slot) {
+        long packed = ShortCodeCodec.pack(code);
+        if (packed == ShortCodeCodec.NOT_PACKABLE) {
+            byTextCode.put(code, slot);
+        } else {
+            byPackedCode.put(packed, slot);
+        }
+    }
+
+    private void unindexCode(String code, int slot) {
+        long packed = ShortCodeCodec.pack(code);
+        if (packed == ShortCodeCodec.NOT_PACKABLE) {
+            byTextCode.remove(code, slot);
+        } else {
+            byPackedCode.remove(packed, slot);
+        }
+    }
+
+    // ---- владелец ----
+
+    private void addToOwner(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        byOwner.computeIfAbsent(new UUID(page.ownerHi[i], page.ownerLo[i]), owner -> new ConcurrentSkipListSet<>())
+            .add(ownerKey(slot));
+    }
+
+    private void removeFromOwner(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        // столбцы слота ещё не переписаны, поэтому ключ совпадает с добавленным в addToOwner
+        byOwner.computeIfPresent(new UUID(page.ownerHi[i], page.ownerLo[i]), (owner, keys) -> {
+            keys.remove(ownerKey(slot));
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private OwnerKey ownerKey(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        return new OwnerKey(page.createdSeconds[i], page.createdNanos[i], page.idHi[i], page.idLo[i],
+            page.idText[i], slot);
+    }
+
+    private static OwnerKey cursorKey(OwnerCursor cursor) {
+        UUID uuid = canonicalUuid(cursor.id());
+        long seconds = cursor.createdAt().getEpochSecond();
+        int nanos = cursor.createdAt().getNano();
+        return uuid == null
+            ? new OwnerKey(seconds, nanos, 0, 0, cursor.id(), -1)
+            : new OwnerKey(seconds, nanos, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), null, -1);
+    }
+
+    /**
+     * Место слота в списке владельца. Порядок — тот же, что у {@link OwnerCursor}: createdAt, затем id;
+     * slot в сравнении не участвует, поэтому ключ курсора (slot = -1) ищется среди ключей слотов.
+     */
+    private record OwnerKey(long createdSeconds, int createdNanos, long idHi, long idLo, String idText, int slot)
+            implements Comparable<OwnerKey> {
+
+        @Override
+        public int compareTo(OwnerKey other) {
+            int byTime = Long.compare(createdSeconds, other.createdSeconds);
+            if (byTime == 0) {
+                byTime = Integer.compare(createdNanos, other.createdNanos);
+            }
+            if (byTime != 0) {
+                return byTime;
+            }
+            if (idText == null && other.idText == null) {
+                // у UUID в каноническом виде порядок строк совпадает с беззнаковым порядком битов
+                int byHi = Long.compareUnsigned(idHi, other.idHi);
+                return byHi != 0 ? byHi : Long.compareUnsigned(idLo, other.idLo);
+            }
+            return id().compareTo(other.id());
+        }
+
+        private String id() {
+            return idText != null ? idText : new UUID(idHi, idLo).toString();
+        }
+    }
+
+    // ---- срок жизни ----
+
+    private Instant expiresAt(int slot) {
+        Page page = page(slot);
+        int i = slot & PAGE_MASK;
+        return Instant.ofEpochSecond(page.expiresSeconds[i], page.expiresNanos[i]);
+    }
+
+    private void removeFromExpiry(int slot) {
+        long second = page(slot).expiresSeconds[slot & PAGE_MASK];
+        IntList bucket = byExpirySecond.get(second);
+        if (bucket != null) {
+            bucket.remove(slot);
+            if (bucket.size == 0) {
+                byExpirySecond.remove(second);
+            }
+        }
+    }
+
+    // ---- преобразования ----
+
+    private static UUID canonicalUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ссылка, прочитанная из индекса: счётчик переходов и активность живут в слоте.
+     */
+    static final class IndexedShortLink extends SlotShortLink {
+
+        private final ShortLinkIndex index;
+        private final int slot;
+
+        IndexedShortLink(ShortLinkIndex index, int slot, long rawState, String id, String shortCode,
+                         String originalUrl, UUID ownerId, int maxClicks, Instant createdAt, Instant expiresAt) {
+            super(rawState, id, shortCode, originalUrl, ownerId, maxClicks, createdAt, expiresAt);
+            this.index = index;
+            this.slot = slot;
+        }
+
+        @Override
+        long rawState() {
+            return index.rawState(slot);
+        }
+
+        @Override
+        boolean casRawState(long expected, long update) {
+            return index.casRawState(slot, expected, update);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package repository;
+
+import model.ShortLink;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Преобразование ShortLink в JSON и обратно — общий формат для links.json и журнала изменений.
+ */
+final class ShortLinkJson {
+
+    private ShortLinkJson() {
+    }
+
+    static JSONObject toJson(ShortLink link) {
+        JSONObject obj = new JSONObject();
+        obj.put("id", link.getId());
+        obj.put("shortCode", link.getShortCode());
+        obj.put("originalUrl", link.getOriginalUrl());
+        obj.put("ownerId", link.getOwnerId().toString());
+        obj.put("maxClicks", link.getMaxClicks());
+        obj.put("clickCount", link.getClickCount());
+        obj.put("createdAt", link.getCreatedAt().toString());
+        obj.put("expiresAt", link.getExpiresAt().toString());
+        obj.put("active", link.isActive());
+        return obj;
+    }
+
+    static ShortLink fromJson(JSONObject obj) {
+        return new ShortLink(
+                obj.getString("id"),
+                obj.getString("shortCode"),
+                obj.getString("originalUrl"),
+                UUID.fromString(obj.getString("ownerId")),
+                obj.getInt("maxClicks"),
+                obj.getInt("clickCount"),
+                Instant.parse(obj.getString("createdAt")),
+                Instant.parse(obj.getString("expiresAt")),
+                obj.getBoolean("active")
+        );
+    }
+}
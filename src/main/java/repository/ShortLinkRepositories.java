@@ -0,0 +1,58 @@
+package repository;
+
+import config.AppConfig;
+import exception.DataAccessException;
+import metrics.MetricsRegistry;
+import metrics.ShortenerMetrics;
+
+/**
+ * Создаёт хранилище ссылок в соответствии с режимом из конфигурации
+ * и ставит перед ним включённые фильтр Блума по кодам и кэш: попадание в кэш
+ * не проверяет фильтр, а промах кэша по несуществующему коду отсекается фильтром.
+ */
+public final class ShortLinkRepositories {
+
+    private ShortLinkRepositories() {
+    }
+
+    public static ShortLinkRepository open(AppConfig config) throws DataAccessException {
+        return open(config, new ShortenerMetrics());
+    }
+
+    /**
+     * То же, но хранилище пишет в metrics время и объём сброса на диск, а счётчики
+     * фильтра и кэша выгружаются вместе с остальными метриками.
+     */
+    public static ShortLinkRepository open(AppConfig config, ShortenerMetrics metrics) throws DataAccessException {
+        MetricsRegistry registry = metrics.registry();
+        ShortLinkRepository repository = openStore(config, metrics);
+        if (config.bloomFilter().enabled()) {
+            BloomFilterShortLinkRepository bloom = new BloomFilterShortLinkRepository(repository,
+                    config.bloomFilter().expectedCodes(), config.bloomFilter().falsePositiveRate());
+            registry.counter("shortener_bloom_skipped_lookups_total",
+                    "Поиски по коду, отсечённые фильтром", bloom::skippedLookups);
+            registry.counter("shortener_bloom_passed_lookups_total",
+                    "Поиски по коду, пропущенные фильтром в хранилище", bloom::passedLookups);
+            repository = bloom;
+        }
+        if (config.cache().enabled()) {
+            CachingShortLinkRepository cache = new CachingShortLinkRepository(repository, config.cache().maxEntries());
+            registry.counter("shortener_cache_hits_total", "Попадания в кэш ссылок", () -> cache.stats().hits());
+            registry.counter("shortener_cache_misses_total", "Промахи кэша ссылок", () -> cache.stats().misses());
+            registry.counter("shortener_cache_evictions_total", "Вытеснения из кэша ссылок",
+                    () -> cache.stats().evictions());
+            registry.gauge("shortener_cache_size", "Ссылок в кэше", () -> cache.stats().size());
+            repository = cache;
+        }
+        return repository;
+    }
+
+    private static ShortLinkRepository openStore(AppConfig config, ShortenerMetrics metrics)
+            throws DataAccessException {
+        return switch (config.storage().mode()) {
+            case JSON -> new FileJsonShortLinkRepository(config.dbFilePath(), metrics);
+            case LOG -> new AppendLogShortLinkRepository(config.storage(), metrics);
+            case MMAP -> new MappedShortLinkRepository(config.storage());
+        };
+    }
+}
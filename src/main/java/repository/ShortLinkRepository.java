@@ -1,24 +1,133 @@
 package repository;
 
 import exception.DataAccessException;
+import model.LinkPage;
 import model.ShortLink;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface ShortLinkRepository {
 
     void save(ShortLink link) throws DataAccessException;
 
+    /**
+     * Сохраняет пачку ссылок. Файловые хранилища делают это одной записью на диск;
+     * по умолчанию ссылки сохраняются по одной.
+     */
+    default void saveAll(Collection<ShortLink> links) throws DataAccessException {
+        for (ShortLink link : links) {
+            save(link);
+        }
+    }
+
     Optional<ShortLink> findByShortCode(String shortCode) throws DataAccessException;
 
+    /**
+     * Ищет ссылки сразу по пачке кодов. В ответе только найденные коды; повторы во входе допустимы.
+     * По умолчанию коды ищутся по одному.
+     */
+    default Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) throws DataAccessException {
+        Map<String, ShortLink> found = new HashMap<>();
+        for (String shortCode : shortCodes) {
+            findByShortCode(shortCode).ifPresent(link -> found.put(shortCode, link));
+        }
+        return found;
+    }
+
+    /**
+     * Сохраняет текущее состояние тех ссылок, которые всё ещё есть в хранилище, и возвращает их число.
+     * Удалённые за это время ссылки не воскрешаются. Нужен для отложенной записи кликов.
+     */
+    default int updateExisting(Collection<ShortLink> links) throws DataAccessException {
+        int updated = 0;
+        for (ShortLink link : links) {
+            Optional<ShortLink> current = findByShortCode(link.getShortCode());
+            if (current.isPresent() && current.get().getId().equals(link.getId())) {
+                save(link);
+                updated++;
+            }
+        }
+        return updated;
+    }
+
     List<ShortLink> findByOwner(UUID ownerId) throws DataAccessException;
 
+    /**
+     * Страница ссылок владельца в порядке создания. cursor == null — первая страница,
+     * дальше передаётся {@link LinkPage#nextCursor()} предыдущей страницы.
+     * Реализация по умолчанию сортирует полный список; хранилища с индексом по владельцу
+     * переопределяют её, чтобы стоимость зависела только от размера страницы.
+     */
+    default LinkPage findByOwner(UUID ownerId, String cursor, int pageSize) throws DataAccessException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть > 0");
+        }
+        OwnerCursor after = cursor == null ? null : OwnerCursor.decode(cursor);
+        List<ShortLink> sorted = findByOwner(ownerId).stream()
+                .sorted(Comparator.comparing(OwnerCursor::of))
+                .filter(l -> after == null || OwnerCursor.of(l).compareTo(after) > 0)
+                .limit(pageSize + 1L)
+                .toList();
+        if (sorted.size() <= pageSize) {
+            return new LinkPage(sorted, null);
+        }
+        List<ShortLink> page = sorted.subList(0, pageSize);
+        return new LinkPage(page, OwnerCursor.of(page.get(pageSize - 1)).encode());
+    }
+
     void deleteById(String id) throws DataAccessException;
 
+    /**
+     * Удаляет пачку ссылок по id; отсутствующие id пропускаются. Файловые хранилища делают это
+     * одной записью на диск; по умолчанию ссылки удаляются по одной.
+     */
+    default void deleteAllById(Collection<String> ids) throws DataAccessException {
+        for (String id : ids) {
+            deleteById(id);
+        }
+    }
+
     void deleteExpired(Instant now) throws DataAccessException;
 
+    /**
+     * Удаляет не больше limit ссылок, просроченных к моменту now, начиная с самых старых,
+     * и возвращает число удалённых. Реализация по умолчанию удаляет все просроченные за раз
+     * и возвращает 0: без индекса по сроку их не посчитать дешевле полного прохода.
+     */
+    default int deleteExpired(Instant now, int limit) throws DataAccessException {
+        deleteExpired(now);
+        return 0;
+    }
+
+    /**
+     * Записывает на диск удаления, сделанные {@link #deleteExpired(Instant, int)}. Хранилища, которые
+     * переписывают файл целиком, откладывают запись до этого вызова, чтобы проход очистки из многих пачек
+     * стоил одной перезаписи. По умолчанию удаления уже записаны и делать нечего.
+     */
+    default void flushExpiredDeletes() throws DataAccessException {
+    }
+
+    /**
+     * Ближайший срок истечения среди хранимых ссылок (он может быть и в прошлом, если очистка отстаёт).
+     * Пусто, если ссылок нет или хранилище не ведёт индекс по сроку.
+     */
+    default Optional<Instant> nextExpiry() throws DataAccessException {
+        return Optional.empty();
+    }
+
     boolean shortCodeExists(String shortCode) throws DataAccessException;
+
+    /**
+     * Передаёт action код каждой хранимой ссылки. Ссылки, сохранённые или удалённые во время обхода,
+     * могут попасть или не попасть в него. Нужен, чтобы построить фильтр кодов при старте.
+     */
+    void forEachShortCode(Consumer<String> action) throws DataAccessException;
 }
@@ -0,0 +1,147 @@
+package repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Хэш-таблица с открытой адресацией: ключ из двух long → номер слота, без объектов на запись.
+ * Чтение не берёт блокировок; изменять таблицу вызывающий должен из одного потока за раз.
+ * Читатель может увидеть только что удалённый номер слота, поэтому найденная по нему запись
+ * проверяется вызывающим.
+ */
+final class SlotHashTable {
+
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final class Table {
+        final long[] hi;
+        final long[] lo;
+        // номер слота + 1; EMPTY и TOMBSTONE — служебные значения
+        final int[] entries;
+        final int mask;
+
+        Table(int size) {
+            hi = new long[size];
+            lo = new long[size];
+            entries = new int[size];
+            mask = size - 1;
+        }
+    }
+
+    private volatile Table table = new Table(16);
+    // Занятые элементы вместе с удалёнными; меняются только пишущим
+    private int used;
+    private int size;
+
+    int get(long hi, long lo) {
+        Table t = table;
+        int i = hash(hi, lo) & t.mask;
+        for (int probes = 0; probes <= t.mask; probes++) {
+            int entry = (int) ENTRIES.getAcquire(t.entries, i);
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != TOMBSTONE && t.hi[i] == hi && t.lo[i] == lo) {
+                return entry - 1;
+            }
+            i = (i + 1) & t.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Связывает ключ со слотом, заменяя прежнее значение.
+     */
+    void put(long hi, long lo, int slot) {
+        Table t = table;
+        int i = hash(hi, lo) & t.mask;
+        int free = -1;
+        while (true) {
+            int entry = t.entries[i];
+            if (entry == EMPTY) {
+                break;
+            }
+            if (entry == TOMBSTONE) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (t.hi[i] == hi && t.lo[i] == lo) {
+                ENTRIES.setRelease(t.entries, i, slot + 1);
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+        if (free < 0) {
+            if ((used + 1) * 2 > t.entries.length) {
+                resize();
+                put(hi, lo, slot);
+                return;
+            }
+            free = i;
+            used++;
+        }
+        t.hi[free] = hi;
+        t.lo[free] = lo;
+        ENTRIES.setRelease(t.entries, free, slot + 1);
+        size++;
+    }
+
+    /**
+     * Удаляет ключ, только если он всё ещё связан с данным слотом.
+     */
+    void remove(long hi, long lo, int slot) {
+        Table t = table;
+        int i = hash(hi, lo) & t.mask;
+        for (int probes = 0; probes <= t.mask; probes++) {
+            int entry = t.entries[i];
+            if (entry == EMPTY) {
+                return;
+            }
+            if (entry != TOMBSTONE && t.hi[i] == hi && t.lo[i] == lo) {
+                if (entry == slot + 1) {
+                    ENTRIES.setRelease(t.entries, i, TOMBSTONE);
+                    size--;
+                }
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Перекладывает живые ключи в новую таблицу (удалённые при этом отбрасываются) и публикует её.
+     * Читатели, начавшие поиск в старой таблице, дочитывают её без ошибок.
+     */
+    private void resize() {
+        Table old = table;
+        int capacity = old.entries.length;
+        while (size * 4 > capacity) {
+            capacity *= 2;
+        }
+        Table next = new Table(capacity);
+        for (int i = 0; i < old.entries.length; i++) {
+            int entry = old.entries[i];
+            if (entry == EMPTY || entry == TOMBSTONE) {
+                continue;
+            }
+            int j = hash(old.hi[i], old.lo[i]) & next.mask;
+            while (next.entries[j] != EMPTY) {
+                j = (j + 1) & next.mask;
+            }
+            next.hi[j] = old.hi[i];
+            next.lo[j] = old.lo[i];
+            next.entries[j] = entry;
+        }
+        used = size;
+        table = next;
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L + lo;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+}
@@ -0,0 +1,73 @@
+package repository;
+
+import model.ShortLink;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Ссылка-представление записи, хранящейся вне объекта (в слоте хранилища). Неизменяемые поля
+ * скопированы при чтении, а счётчик переходов и активность читаются и меняются compare-and-set
+ * в слове состояния слота, поэтому все представления одной записи делят одно состояние.
+ *
+ * <p>Биты слова выше {@link ShortLink#STATE_BITS} — метка слота (поколение и т.п.), запомненная при чтении.
+ * Хранилище меняет метку при удалении записи; представление с устаревшей меткой видит ссылку
+ * деактивированной и больше не меняет слот.
+ */
+abstract class SlotShortLink extends ShortLink {
+
+    // Биты слова состояния, принадлежащие хранилищу
+    static final long TAG_MASK = ~STATE_BITS;
+
+    private final long tag;
+
+    SlotShortLink(long rawState, String id, String shortCode, String originalUrl, UUID ownerId, int maxClicks,
+                  Instant createdAt, Instant expiresAt) {
+        super(id, shortCode, originalUrl, ownerId, maxClicks, (int) rawState, createdAt, expiresAt,
+                active(rawState));
+        this.tag = rawState & TAG_MASK;
+    }
+
+    abstract long rawState();
+
+    abstract boolean casRawState(long expected, long update);
+
+    /**
+     * Слот по-прежнему хранит ту запись, из которой прочитано представление.
+     */
+    boolean isCurrent() {
+        return (rawState() & TAG_MASK) == tag;
+    }
+
+    @Override
+    protected long loadState() {
+        long raw = rawState();
+        if ((raw & TAG_MASK) != tag) {
+            return pack((int) raw, false);
+        }
+        return raw & STATE_BITS;
+    }
+
+    @Override
+    protected boolean casState(long expected, long update) {
+        return casRawState(tag | expected, tag | update);
+    }
+
+    static boolean active(long rawState) {
+        return (rawState & STATE_BITS) == pack((int) rawState, true);
+    }
+
+    /**
+     * Биты состояния ссылки (счётчик и активность) для записи в слот.
+     */
+    static long stateBits(ShortLink link) {
+        return pack(link.getClickCount(), link.isActive());
+    }
+
+    /**
+     * Те же биты состояния, но ссылка неактивна.
+     */
+    static long deactivated(long rawState) {
+        return pack((int) rawState, false);
+    }
+}
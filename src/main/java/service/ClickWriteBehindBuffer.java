@@ -0,0 +1,119 @@
+package service;
+
+import exception.DataAccessException;
+import model.ShortLink;
+import repository.ShortLinkRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Отложенная запись счётчиков переходов. Клик меняет только счётчик в памяти и помечает ссылку,
+ * а фоновый поток раз в intervalMillis (или при threshold помеченных ссылках) сохраняет
+ * их одним вызовом {@link ShortLinkRepository#updateExisting}. Деактивация по лимиту
+ * сохраняется сразу, чтобы исчерпанная ссылка не ожила после перезапуска.
+ * При аварийном завершении теряются не более чем клики последнего интервала.
+ */
+public class ClickWriteBehindBuffer implements Runnable {
+
+    private final ShortLinkRepository repository;
+    private final long intervalMillis;
+    private final int threshold;
+    private final Map<String, ShortLink> dirty = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private Thread workerThread;
+
+    public ClickWriteBehindBuffer(ShortLinkRepository repository, long intervalMillis, int threshold) {
+        this.repository = repository;
+        this.intervalMillis = intervalMillis;
+        this.threshold = threshold;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerThread = new Thread(this, "click-flush-thread");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Останавливает фоновый поток и сохраняет всё накопленное.
+     */
+    public void stop() throws DataAccessException {
+        running = false;
+        if (workerThread != null) {
+            LockSupport.unpark(workerThread);
+            try {
+                workerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    public void recordClick(ShortLink link) {
+        dirty.put(link.getId(), link);
+        if (dirty.size() >= threshold && workerThread != null) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+
+    public void recordDeactivation(ShortLink link) throws DataAccessException {
+        dirty.remove(link.getId());
+        repository.updateExisting(List.of(link));
+    }
+
+    public int pendingCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Сохраняет помеченные ссылки и возвращает их число. Если запись не удалась,
+     * ссылки снова помечаются и будут сохранены при следующем сбросе.
+     */
+    public int flush() throws DataAccessException {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        List<ShortLink> batch = new ArrayList<>(dirty.size());
+        for (ShortLink link : dirty.values()) {
+            // клик, пришедший после удаления из карты, снова пометит ссылку — он не потеряется
+            if (dirty.remove(link.getId(), link)) {
+                batch.add(link);
+            }
+        }
+        try {
+            return repository.updateExisting(batch);
+        } catch (DataAccessException | RuntimeException e) {
+            for (ShortLink link : batch) {
+                dirty.putIfAbsent(link.getId(), link);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+            if (!running) {
+                break;
+            }
+            try {
+                flush();
+            } catch (DataAccessException e) {
+                System.out.println("⚠️ Ошибка сохранения счётчиков переходов: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("⚠️ Неожиданная ошибка в потоке сохранения кликов: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package service;
+
+import model.CodeSpaceStats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Длина новых случайных кодов. Случайный код длины L занят с вероятностью, равной заполненности
+ * пространства кодов этой длины, поэтому доля попаданий в занятый код за окно из {@value #WINDOW} попыток —
+ * оценка заполненности. Когда оценка для текущей длины превышает порог, новые коды становятся
+ * на символ длиннее (но не длиннее maxLength): число повторов на один код остаётся ограниченным.
+ * Уже выданные коды не меняются и продолжают открываться. После перезапуска длина снова растёт
+ * от начальной за одно окно попыток на каждую заполненную длину.
+ */
+public class CodeLengthPolicy {
+
+    static final int WINDOW = 1024;
+    private static final long COLLISION_UNIT = 1L << 32;
+    private static final long COUNT_MASK = COLLISION_UNIT - 1;
+
+    private final int maxLength;
+    private final double threshold;
+    private final AtomicInteger currentLength;
+    // Текущее окно по длине: попытки в младших 32 битах, попадания в занятый код — в старших
+    private final AtomicLong[] windows;
+    // Оценка заполненности по последнему окну (биты double), -1 — окно ещё не набрано
+    private final AtomicLongArray occupancy;
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * threshold == 0 — длина не растёт.
+     */
+    public CodeLengthPolicy(int baseLength, int maxLength, double threshold) {
+        if (baseLength <= 0) {
+            throw new IllegalArgumentException("Длина короткого кода должна быть > 0");
+        }
+        if (maxLength < baseLength) {
+            throw new IllegalArgumentException("Максимальная длина кода не может быть меньше начальной");
+        }
+        if (threshold < 0 || threshold >= 1) {
+            throw new IllegalArgumentException("Порог заполненности должен быть в диапазоне [0, 1)");
+        }
+        this.maxLength = threshold == 0 ? baseLength : maxLength;
+        this.threshold = threshold;
+        this.currentLength = new AtomicInteger(baseLength);
+        this.windows = new AtomicLong[this.maxLength + 1];
+        this.occupancy = new AtomicLongArray(this.maxLength + 1);
+        for (int length = 0; length <= this.maxLength; length++) {
+            windows[length] = new AtomicLong();
+            occupancy.set(length, Double.doubleToRawLongBits(-1));
+        }
+    }
+
+    public static CodeLengthPolicy fixed(int length) {
+        return new CodeLengthPolicy(length, length, 0);
+    }
+
+    public int currentLength() {
+        return currentLength.get();
+    }
+
+    /**
+     * Учитывает попытку выдать код длины length; collided — код оказался занят.
+     */
+    public void record(int length, boolean collided) {
+        attempts.increment();
+        if (collided) {
+            collisions.increment();
+        }
+        if (length > maxLength) {
+            return;
+        }
+        long window = windows[length].addAndGet(collided ? COLLISION_UNIT + 1 : 1);
+        if ((window & COUNT_MASK) != WINDOW) {
+            return;
+        }
+        // закрыть окно может только поток, сделавший в нём последнюю попытку; более поздние попытки остаются
+        windows[length].addAndGet(-window);
+        double estimate = (double) (window >>> 32) / WINDOW;
+        occupancy.set(length, Double.doubleToRawLongBits(estimate));
+        if (estimate > threshold && threshold > 0 && length < maxLength) {
+            currentLength.compareAndSet(length, length + 1);
+        }
+    }
+
+    public CodeSpaceStats stats() {
+        Map<Integer, Double> estimates = new TreeMap<>();
+        for (int length = 1; length <= maxLength; length++) {
+            double estimate = Double.longBitsToDouble(occupancy.get(length));
+            if (estimate >= 0) {
+                estimates.put(length, estimate);
+            }
+        }
+        return new CodeSpaceStats(currentLength(), attempts.sum(), collisions.sum(), estimates);
+    }
+}
@@ -1,24 +1,71 @@
 package service;
 
+import config.CleanupConfig;
 import exception.DataAccessException;
+import metrics.CleanupEvent;
+import metrics.MetricsRegistry;
+import metrics.ShortenerMetrics;
+import model.CleanupStats;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая очистка просроченных ссылок. Поток просыпается к ближайшему сроку истечения
+ * (но не реже чем раз в maxIntervalMillis — так подхватываются ссылки, созданные во время сна)
+ * и удаляет ссылки пачками по batchSize. Если за tickBudgetMillis удалить всё не удалось,
+ * остаток удаляется в следующем проходе после такой же паузы, чтобы очистка не занимала
+ * хранилище надолго. В конце прохода хранилище записывает отложенные удаления
+ * ({@link repository.ShortLinkRepository#flushExpiredDeletes()}).
+ */
 public class ExpirationCleanupService implements Runnable {
 
+    private static final double NANOS_PER_SECOND = 1e9;
+
     private final UrlShortenerService urlShortenerService;
-    private final long intervalMillis;
+    private final long maxIntervalMillis;
+    private final int batchSize;
+    private final long tickBudgetMillis;
+    private final ShortenerMetrics metrics;
     private volatile boolean running = false;
     private Thread workerThread;
 
-    // Раз в час: 60 * 60 * 1000 миллисекунд
-    private static final long ONE_HOUR_MILLIS = 60L * 60L * 1000L;
+    // Метрики пишет только поток очистки
+    private volatile long ticks;
+    private volatile long removedTotal;
+    private volatile int lastTickRemoved;
+    private volatile long lastBatchNanos;
+    private volatile long maxBatchNanos;
 
     public ExpirationCleanupService(UrlShortenerService urlShortenerService) {
-        this(urlShortenerService, ONE_HOUR_MILLIS);
+        this(urlShortenerService, CleanupConfig.defaults());
     }
 
     public ExpirationCleanupService(UrlShortenerService urlShortenerService, long intervalMillis) {
+        this(urlShortenerService, new CleanupConfig(intervalMillis,
+                CleanupConfig.defaults().batchSize(), CleanupConfig.defaults().tickBudgetMillis()));
+    }
+
+    public ExpirationCleanupService(UrlShortenerService urlShortenerService, CleanupConfig config) {
+        this(urlShortenerService, config, new ShortenerMetrics());
+    }
+
+    public ExpirationCleanupService(UrlShortenerService urlShortenerService, CleanupConfig config,
+                                   ShortenerMetrics metrics) {
         this.urlShortenerService = urlShortenerService;
-        this.intervalMillis = intervalMillis;
+        this.metrics = metrics;
+        this.maxIntervalMillis = config.maxIntervalMillis();
+        this.batchSize = config.batchSize();
+        this.tickBudgetMillis = config.tickBudgetMillis();
+        MetricsRegistry registry = metrics.registry();
+        registry.gauge("shortener_cleanup_lag_seconds", "Насколько просрочена самая старая неудалённая ссылка",
+                this::lagSeconds);
+        registry.gauge("shortener_cleanup_last_batch_seconds", "Длительность последней пачки очистки",
+                () -> lastBatchNanos / NANOS_PER_SECOND);
+        registry.gauge("shortener_cleanup_max_batch_seconds", "Самая долгая пачка очистки с запуска",
+                () -> maxBatchNanos / NANOS_PER_SECOND);
     }
 
     public void start() {
@@ -41,19 +88,103 @@ public class ExpirationCleanupService implements Runnable {
     @Override
     public void run() {
         while (running) {
+            long waitMillis = maxIntervalMillis;
             try {
-                urlShortenerService.cleanupExpiredLinks();
+                waitMillis = tick();
             } catch (DataAccessException e) {
                 System.out.println("⚠️ Ошибка фоновой очистки просроченных ссылок: " + e.getMessage());
             } catch (Exception e) {
                 System.out.println("⚠️ Неожиданная ошибка в потоке очистки: " + e.getMessage());
             }
             try {
-                Thread.sleep(intervalMillis);
+                Thread.sleep(waitMillis);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
         }
     }
+
+    /**
+     * Один проход очистки. Возвращает, через сколько миллисекунд нужен следующий.
+     */
+    long tick() throws DataAccessException {
+        CleanupEvent event = new CleanupEvent();
+        event.begin();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tickBudgetMillis);
+        int removedThisTick = 0;
+        int batches = 0;
+        boolean backlog = false;
+        try {
+            while (true) {
+                batches++;
+                long start = System.nanoTime();
+                int removed = urlShortenerService.cleanupExpiredLinks(batchSize);
+                long end = System.nanoTime();
+                recordBatch(end - start);
+                removedThisTick += removed;
+                if (removed < batchSize) {
+                    break;
+                }
+                if (end >= deadline) {
+                    backlog = true;
+                    break;
+                }
+            }
+        } finally {
+            if (removedThisTick > 0) {
+                urlShortenerService.finishExpiredCleanup();
+            }
+        }
+        ticks++;
+        removedTotal += removedThisTick;
+        lastTickRemoved = removedThisTick;
+        metrics.recordCleanupRun(removedThisTick);
+        event.report(removedThisTick, batches, backlog);
+        return backlog ? tickBudgetMillis : millisUntilNextExpiry();
+    }
+
+    public CleanupStats stats() throws DataAccessException {
+        return new CleanupStats(ticks, removedTotal, lastTickRemoved,
+                Duration.ofNanos(lastBatchNanos), Duration.ofNanos(maxBatchNanos), overdueLag());
+    }
+
+    /**
+     * На сколько самая старая неудалённая ссылка просрочена к этому моменту; ноль, если просроченных нет.
+     */
+    private Duration overdueLag() throws DataAccessException {
+        Optional<Instant> next = urlShortenerService.nextLinkExpiry();
+        Instant now = Instant.now();
+        if (next.isPresent() && next.get().isBefore(now)) {
+            return Duration.between(next.get(), now);
+        }
+        return Duration.ZERO;
+    }
+
+    private double lagSeconds() {
+        try {
+            return overdueLag().toNanos() / NANOS_PER_SECOND;
+        } catch (DataAccessException e) {
+            // выгрузка метрик не должна падать из-за хранилища
+            return Double.NaN;
+        }
+    }
+
+    private void recordBatch(long nanos) {
+        metrics.recordCleanupBatch(nanos);
+        lastBatchNanos = nanos;
+        if (nanos > maxBatchNanos) {
+            maxBatchNanos = nanos;
+        }
+    }
+
+    private long millisUntilNextExpiry() throws DataAccessException {
+        Optional<Instant> next = urlShortenerService.nextLinkExpiry();
+        if (next.isEmpty()) {
+            return maxIntervalMillis;
+        }
+        // ссылка считается просроченной строго после expiresAt, отсюда +1 мс
+        long delay = Duration.between(Instant.now(), next.get()).toMillis() + 1;
+        return Math.max(1, Math.min(delay, maxIntervalMillis));
+    }
 }
@@ -0,0 +1,98 @@
+package service;
+
+import exception.DataAccessException;
+import repository.ShortLinkRepository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Удаление просроченных ссылок, замеченных при переходе, вне потока запроса.
+ * Запрос только ставит id в очередь, а фоновый поток удаляет накопленное.
+ * Если удаление не удалось, ссылку всё равно уберёт {@link ExpirationCleanupService}.
+ */
+public class ExpiredLinkDeleter implements Runnable {
+
+    private static final long IDLE_PARK_MILLIS = 1000;
+
+    private final ShortLinkRepository repository;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = false;
+    private Thread workerThread;
+
+    public ExpiredLinkDeleter(ShortLinkRepository repository) {
+        this.repository = repository;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerThread = new Thread(this, "expired-delete-thread");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Останавливает фоновый поток и удаляет всё, что осталось в очереди.
+     */
+    public void stop() throws DataAccessException {
+        running = false;
+        if (workerThread != null) {
+            LockSupport.unpark(workerThread);
+            try {
+                workerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        deletePending();
+    }
+
+    public void schedule(String linkId) {
+        if (pending.add(linkId) && workerThread != null) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Удаляет накопленные ссылки одной пачкой (у файловых хранилищ — одной записью на диск)
+     * и возвращает их число.
+     */
+    public int deletePending() throws DataAccessException {
+        List<String> batch = new ArrayList<>();
+        Iterator<String> it = pending.iterator();
+        while (it.hasNext()) {
+            batch.add(it.next());
+            it.remove();
+        }
+        if (!batch.isEmpty()) {
+            repository.deleteAllById(batch);
+        }
+        return batch.size();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                deletePending();
+            } catch (DataAccessException e) {
+                System.out.println("⚠️ Ошибка удаления просроченной ссылки: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("⚠️ Неожиданная ошибка в потоке удаления ссылок: " + e.getMessage());
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_PARK_MILLIS));
+        }
+    }
+}
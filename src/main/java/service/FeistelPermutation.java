@@ -0,0 +1,75 @@
+package service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Перестановка чисел [0, domain), заданная ключом: сеть Фейстеля на наименьшем чётном числе бит,
+ * вмещающем domain, и «обход цикла» — результат шифруется повторно, пока не попадёт в диапазон.
+ * Разные числа всегда дают разные результаты. Перестановка прячет порядок номеров,
+ * но не является криптостойкой.
+ */
+final class FeistelPermutation {
+
+    private static final int ROUNDS = 8;
+
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    FeistelPermutation(long domain, String secret) {
+        if (domain < 2 || domain > 1L << 62) {
+            throw new IllegalArgumentException("Некорректный размер пространства перестановки: " + domain);
+        }
+        this.domain = domain;
+        int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        ByteBuffer digest = ByteBuffer.wrap(sha512(secret));
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = digest.getLong();
+        }
+    }
+
+    long permute(long value) {
+        if (value < 0 || value >= domain) {
+            throw new IllegalArgumentException("Число вне пространства перестановки: " + value);
+        }
+        // на 2*halfBits битах — биекция; повторяя её, из-за пределов domain рано или поздно вернёмся внутрь
+        do {
+            value = encrypt(value);
+        } while (value >= domain);
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long key : roundKeys) {
+            long next = left ^ (round(right, key) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private static long round(long half, long key) {
+        long h = half ^ key;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static byte[] sha512(String secret) {
+        try {
+            return MessageDigest.getInstance("SHA-512").digest(secret.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-512 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package service;
+
+import model.ResolveOutcome;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Коды, которые недавно не привели к переходу, и причина этого. Повторный запрос такого кода
+ * стоит одного поиска в хэш-таблице. Запись живёт ttlMillis и сбрасывается раньше,
+ * если код снова выдан новой ссылке. При переполнении сначала выбрасываются истёкшие записи,
+ * затем произвольные.
+ * <p>
+ * Код запоминается по результату поиска в хранилище, а новая ссылка могла получить этот код уже после
+ * поиска. Поэтому вызывающий читает {@link #version()} до поиска и передаёт в {@link #put}: если за это время
+ * был сброс хоть одного кода, запись не сохраняется.
+ */
+public class NegativeLookupCache {
+
+    private record Entry(ResolveOutcome outcome, long deadlineNanos) {
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public NegativeLookupCache(long ttlMillis, int maxEntries) {
+        if (ttlMillis <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Некорректные параметры кэша мёртвых кодов");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Запомненная причина или null, если кода нет в кэше или запись устарела.
+     */
+    public ResolveOutcome get(String shortCode) {
+        Entry entry = entries.get(shortCode);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.deadlineNanos() >= 0) {
+            entries.remove(shortCode, entry);
+            return null;
+        }
+        hits.increment();
+        return entry.outcome();
+    }
+
+    /**
+     * Версия сбросов; читается до поиска кода в хранилище.
+     */
+    public long version() {
+        return invalidations.get();
+    }
+
+    /**
+     * Запоминает код, если с момента чтения version ни один код не сбрасывался.
+     */
+    public void put(String shortCode, ResolveOutcome outcome, long version) {
+        if (invalidations.get() != version) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            shrink();
+        }
+        Entry entry = new Entry(outcome, System.nanoTime() + ttlNanos);
+        entries.put(shortCode, entry);
+        // сброс мог случиться между проверкой и вставкой: он увеличивает версию раньше, чем удаляет запись,
+        // поэтому либо удалит нашу запись сам, либо мы увидим новую версию здесь
+        if (invalidations.get() != version) {
+            entries.remove(shortCode, entry);
+        }
+    }
+
+    public void invalidate(String shortCode) {
+        invalidations.incrementAndGet();
+        entries.remove(shortCode);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void shrink() {
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> now - e.deadlineNanos() >= 0);
+        // порядок обхода ConcurrentHashMap не связан с порядком вставки — выбрасываются случайные записи
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() >= maxEntries - maxEntries / 10 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
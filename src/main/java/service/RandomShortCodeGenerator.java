@@ -0,0 +1,53 @@
+package service;
+
+import exception.DataAccessException;
+import model.ShortCodeCodec;
+import repository.ShortLinkRepository;
+
+import java.security.SecureRandom;
+
+/**
+ * Случайный код; занятые коды отбрасываются проверкой в хранилище. Длину задаёт {@link CodeLengthPolicy}:
+ * каждая проверка учитывается в ней, и при заполнении пространства кодов длина растёт.
+ */
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+
+    private final CodeLengthPolicy lengthPolicy;
+    private final ShortLinkRepository repository;
+    private final SecureRandom random = new SecureRandom();
+
+    public RandomShortCodeGenerator(int length, ShortLinkRepository repository) {
+        this(CodeLengthPolicy.fixed(length), repository);
+    }
+
+    public RandomShortCodeGenerator(CodeLengthPolicy lengthPolicy, ShortLinkRepository repository) {
+        this.lengthPolicy = lengthPolicy;
+        this.repository = repository;
+    }
+
+    @Override
+    public String nextCode() throws DataAccessException {
+        while (true) {
+            int length = lengthPolicy.currentLength();
+            String code = randomCode(length);
+            boolean taken = repository.shortCodeExists(code);
+            lengthPolicy.record(length, taken);
+            if (!taken) {
+                return code;
+            }
+        }
+    }
+
+    public CodeLengthPolicy lengthPolicy() {
+        return lengthPolicy;
+    }
+
+    private String randomCode(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int idx = random.nextInt(ShortCodeCodec.ALPHABET.length());
+            sb.append(ShortCodeCodec.ALPHABET.charAt(idx));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package service;
+
+import config.ShortCodeConfig;
+import exception.DataAccessException;
+import model.ShortCodeCodec;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Код из возрастающего номера: номер переставляется ключом по всем кодам заданной длины
+ * ({@link FeistelPermutation}) и записывается цифрами {@link ShortCodeCodec#ALPHABET}.
+ * Разные номера дают разные коды, поэтому собственные коды генератора не повторяются без проверок,
+ * а соседние номера дают непохожие коды. Коды другой стратегии той же длины (например, случайные,
+ * созданные до переключения) перестановка не обходит: хранилище отвергает такой код при сохранении,
+ * и сервис берёт следующий номер. Чтобы обойтись без этих повторов, после перехода с random
+ * задают другую длину кода.
+ * <p>
+ * Номера резервируются блоками: перед выдачей первого номера блока его верхняя граница
+ * сохраняется в файл. После перезапуска выдача продолжается с сохранённой границы,
+ * неиспользованный остаток блока пропускается.
+ */
+public class SequenceShortCodeGenerator implements ShortCodeGenerator {
+
+    private final int length;
+    private final long keyspace;
+    private final FeistelPermutation permutation;
+    private final Path sequenceFile;
+    private final int blockSize;
+
+    // Следующий номер и граница зарезервированного блока; защищены монитором
+    private long next;
+    private long reservedUntil;
+
+    public SequenceShortCodeGenerator(int length, ShortCodeConfig config) throws DataAccessException {
+        this(length, config.secret(), Path.of(config.sequenceFilePath()), config.blockSize());
+    }
+
+    public SequenceShortCodeGenerator(int length, String secret, Path sequenceFile, int blockSize)
+            throws DataAccessException {
+        if (length <= 0 || length > ShortCodeCodec.MAX_PACKED_LENGTH) {
+            throw new IllegalArgumentException("Длина кода для стратегии sequence должна быть от 1 до "
+                    + ShortCodeCodec.MAX_PACKED_LENGTH);
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока номеров должен быть > 0");
+        }
+        this.length = length;
+        this.keyspace = keyspace(length);
+        this.permutation = new FeistelPermutation(keyspace, secret);
+        this.sequenceFile = sequenceFile;
+        this.blockSize = blockSize;
+        this.next = readReserved();
+        this.reservedUntil = next;
+    }
+
+    @Override
+    public String nextCode() throws DataAccessException {
+        return format(permutation.permute(reserve(1)));
+    }
+
+    /**
+     * Номера пачки берутся одним диапазоном: граница в файле сдвигается не больше одного раза.
+     */
+    @Override
+    public List<String> nextCodes(int count) throws DataAccessException {
+        long first = reserve(count);
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            codes.add(format(permutation.permute(first + i)));
+        }
+        return codes;
+    }
+
+    /**
+     * Выдаёт count подряд идущих номеров и возвращает первый из них.
+     */
+    private synchronized long reserve(int count) throws DataAccessException {
+        if (keyspace - next < count) {
+            throw new IllegalStateException("Коды длины " + length + " закончились");
+        }
+        if (next + count > reservedUntil) {
+            long until = Math.min(keyspace, next + Math.max(count, blockSize));
+            writeReserved(until);
+            reservedUntil = until;
+        }
+        long first = next;
+        next += count;
+        return first;
+    }
+
+    private String format(long value) {
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = ShortCodeCodec.ALPHABET.charAt((int) (value % ShortCodeCodec.ALPHABET.length()));
+            value /= ShortCodeCodec.ALPHABET.length();
+        }
+        return new String(chars);
+    }
+
+    private long readReserved() throws DataAccessException {
+        if (!Files.exists(sequenceFile)) {
+            return 0;
+        }
+        try {
+            String text = Files.readString(sequenceFile, StandardCharsets.UTF_8).trim();
+            long value = Long.parseLong(text);
+            if (value < 0) {
+                throw new NumberFormatException(text);
+            }
+            return value;
+        } catch (IOException | NumberFormatException e) {
+            throw new DataAccessException("Не удалось прочитать счётчик кодов " + sequenceFile, e);
+        }
+    }
+
+    private void writeReserved(long until) throws DataAccessException {
+        Path tmp = sequenceFile.resolveSibling(sequenceFile.getFileName() + ".tmp");
+        try {
+            Path parent = sequenceFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileOutputStream out = new FileOutputStream(tmp.toFile())) {
+                out.write(Long.toString(until).getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            // Граница блока появляется на диске целиком до выдачи первого номера из блока
+            Files.move(tmp, sequenceFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new DataAccessException("Не удалось сохранить счётчик кодов " + sequenceFile, e);
+        }
+    }
+
+    private static long keyspace(int length) {
+        long size = 1;
+        for (int i = 0; i < length; i++) {
+            size *= ShortCodeCodec.ALPHABET.length();
+        }
+        return size;
+    }
+}
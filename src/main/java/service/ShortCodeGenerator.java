@@ -0,0 +1,28 @@
+package service;
+
+import exception.DataAccessException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Источник коротких кодов для новых ссылок. Каждый выданный код свободен.
+ */
+public interface ShortCodeGenerator {
+
+    String nextCode() throws DataAccessException;
+
+    /**
+     * count различных свободных кодов для пачки ссылок. По умолчанию коды берутся по одному;
+     * совпавший внутри пачки код заменяется следующим, ведь до сохранения пачки хранилище о нём не знает.
+     */
+    default List<String> nextCodes(int count) throws DataAccessException {
+        Set<String> codes = new LinkedHashSet<>();
+        while (codes.size() < count) {
+            codes.add(nextCode());
+        }
+        return new ArrayList<>(codes);
+    }
+}
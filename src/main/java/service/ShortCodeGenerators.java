@@ -0,0 +1,64 @@
+package service;
+
+import config.AppConfig;
+import exception.DataAccessException;
+import metrics.MetricsRegistry;
+import metrics.ShortenerMetrics;
+import repository.ShortLinkRepository;
+
+/**
+ * Создаёт генератор коротких кодов в соответствии со стратегией из конфигурации.
+ * Запас кодов ({@link ShortCodePool}) возвращается незапущенным: его поток запускает вызывающий.
+ */
+public final class ShortCodeGenerators {
+
+    private ShortCodeGenerators() {
+    }
+
+    public static ShortCodeGenerator create(AppConfig config, ShortLinkRepository repository)
+            throws DataAccessException {
+        return create(config, repository, new ShortenerMetrics());
+    }
+
+    /**
+     * То же, но длина новых кодов, оценка заполненности по длинам и счётчики попыток
+     * выгружаются вместе с остальными метриками.
+     */
+    public static ShortCodeGenerator create(AppConfig config, ShortLinkRepository repository,
+                                            ShortenerMetrics metrics) throws DataAccessException {
+        MetricsRegistry registry = metrics.registry();
+        return switch (config.shortCode().strategy()) {
+            case RANDOM -> {
+                CodeLengthPolicy lengthPolicy = new CodeLengthPolicy(config.shortCodeLength(),
+                        config.shortCode().maxLength(), config.shortCode().growThreshold());
+                registerCodeSpace(registry, lengthPolicy, config);
+                yield config.shortCode().poolEnabled()
+                        ? new ShortCodePool(repository, lengthPolicy,
+                                config.shortCode().poolSize(), config.shortCode().poolLowWater())
+                        : new RandomShortCodeGenerator(lengthPolicy, repository);
+            }
+            case SEQUENCE -> {
+                int length = config.shortCodeLength();
+                registry.gauge("shortener_code_length", "Длина новых коротких кодов", () -> length);
+                yield new SequenceShortCodeGenerator(length, config.shortCode());
+            }
+        };
+    }
+
+    private static void registerCodeSpace(MetricsRegistry registry, CodeLengthPolicy policy, AppConfig config) {
+        registry.gauge("shortener_code_length", "Длина новых коротких кодов", policy::currentLength);
+        registry.counter("shortener_code_attempts_total", "Попытки выдать случайный код",
+                () -> policy.stats().attempts());
+        registry.counter("shortener_code_collisions_total", "Попытки, попавшие в занятый код",
+                () -> policy.stats().collisions());
+        int maxLength = config.shortCode().growThreshold() == 0
+                ? config.shortCodeLength()
+                : config.shortCode().maxLength();
+        for (int length = config.shortCodeLength(); length <= maxLength; length++) {
+            int l = length;
+            // NaN — для этой длины ещё не набралось окно попыток
+            registry.gauge("shortener_code_occupancy", "Оценка заполненности кодов данной длины",
+                    () -> policy.stats().occupancy().getOrDefault(l, Double.NaN), "length", Integer.toString(l));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package service;
+
+import exception.DataAccessException;
+import model.ShortCodeCodec;
+import repository.ShortLinkRepository;
+
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Запас заранее проверенных случайных кодов. Фоновый поток берёт случайные байты у SecureRandom
+ * пачкой, превращает их в коды, отбрасывает занятые в хранилище и складывает свободные в очередь
+ * не длиннее capacity. Создание ссылки только забирает код из очереди; когда в ней остаётся
+ * lowWater кодов, поток будится и доливает очередь. Если очередь пуста, код генерируется
+ * на месте, как в {@link RandomShortCodeGenerator}. Длину кодов задаёт {@link CodeLengthPolicy};
+ * коды прежней длины, уже лежащие в очереди, остаются свободными и выдаются как есть.
+ */
+public class ShortCodePool implements ShortCodeGenerator, Runnable {
+
+    // Байт даёт символ, если его младшие 6 бит меньше 62: так все символы равновероятны
+    private static final int BITS_MASK = 0x3F;
+    private static final long IDLE_PARK_MILLIS = 1000;
+    private static final int MAX_CANDIDATES_PER_SLOT = 4;
+
+    private final ShortLinkRepository repository;
+    private final CodeLengthPolicy lengthPolicy;
+    private final int capacity;
+    private final int lowWater;
+    private final RandomShortCodeGenerator fallback;
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] randomBytes;
+
+    private final Queue<String> codes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger available = new AtomicInteger();
+    // Коды, лежащие в очереди: один и тот же код не попадёт в неё дважды
+    private final Set<String> pooled = ConcurrentHashMap.newKeySet();
+    private final LongAdder misses = new LongAdder();
+
+    private volatile boolean running = false;
+    private Thread workerThread;
+
+    public ShortCodePool(ShortLinkRepository repository, int length, int capacity, int lowWater) {
+        this(repository, CodeLengthPolicy.fixed(length), capacity, lowWater);
+    }
+
+    public ShortCodePool(ShortLinkRepository repository, CodeLengthPolicy lengthPolicy, int capacity, int lowWater) {
+        if (capacity <= 0 || lowWater < 0 || lowWater >= capacity) {
+            throw new IllegalArgumentException("Некорректные размеры запаса кодов");
+        }
+        this.repository = repository;
+        this.lengthPolicy = lengthPolicy;
+        this.capacity = capacity;
+        this.lowWater = lowWater;
+        this.fallback = new RandomShortCodeGenerator(lengthPolicy, repository);
+        this.randomBytes = new byte[Math.min(capacity, 256) * 8];
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        workerThread = new Thread(this, "short-code-pool-thread");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (workerThread != null) {
+            LockSupport.unpark(workerThread);
+            try {
+                workerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String nextCode() throws DataAccessException {
+        String code = codes.poll();
+        if (code == null) {
+            misses.increment();
+            wakeProducer();
+            return fallback.nextCode();
+        }
+        pooled.remove(code);
+        if (available.decrementAndGet() <= lowWater) {
+            wakeProducer();
+        }
+        return code;
+    }
+
+    public int available() {
+        return available.get();
+    }
+
+    public CodeLengthPolicy lengthPolicy() {
+        return lengthPolicy;
+    }
+
+    /**
+     * Сколько раз очередь оказалась пустой и код пришлось генерировать в потоке запроса.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Доливает очередь до capacity и возвращает число добавленных кодов. Проверяет не больше
+     * нескольких capacity кандидатов, чтобы почти заполненное пространство кодов не заняло поток навсегда.
+     * Вызывается фоновым потоком; одновременно доливать из нескольких потоков нельзя.
+     */
+    int refill() throws DataAccessException {
+        int added = 0;
+        int candidates = capacity * MAX_CANDIDATES_PER_SLOT;
+        char[] chars = new char[lengthPolicy.currentLength()];
+        int filled = 0;
+        while (available.get() < capacity && candidates > 0) {
+            random.nextBytes(randomBytes);
+            for (int i = 0; i < randomBytes.length && available.get() < capacity && candidates > 0; i++) {
+                int digit = randomBytes[i] & BITS_MASK;
+                if (digit >= ShortCodeCodec.ALPHABET.length()) {
+                    continue;
+                }
+                chars[filled++] = ShortCodeCodec.ALPHABET.charAt(digit);
+                if (filled < chars.length) {
+                    continue;
+                }
+                filled = 0;
+                candidates--;
+                String code = new String(chars);
+                if (pooled.contains(code)) {
+                    continue;
+                }
+                boolean taken = repository.shortCodeExists(code);
+                lengthPolicy.record(chars.length, taken);
+                if (chars.length != lengthPolicy.currentLength()) {
+                    chars = new char[lengthPolicy.currentLength()];
+                }
+                if (!taken) {
+                    pooled.add(code);
+                    codes.offer(code);
+                    available.incrementAndGet();
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                refill();
+            } catch (DataAccessException e) {
+                System.out.println("⚠️ Ошибка проверки кодов для запаса: " + e.getMessage());
+            } catch (Exception e) {
+                System.out.println("⚠️ Неожиданная ошибка в потоке запаса кодов: " + e.getMessage());
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_PARK_MILLIS));
+        }
+    }
+
+    private void wakeProducer() {
+        Thread worker = workerThread;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+}
@@ -1,37 +1,92 @@
 package service;
 
 import exception.*;
+import metrics.CreateLinkEvent;
+import metrics.ResolveEvent;
+import metrics.ShortenerMetrics;
+import model.ClickResult;
+import model.LinkCreationResult;
+import model.LinkPage;
+import model.ResolveOutcome;
+import model.ResolveResult;
 import model.ShortLink;
 import model.UserProfile;
 import repository.ShortLinkRepository;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 import config.AppConfig;
 import repository.UserRepository;
 
 
 public class UrlShortenerService {
 
-    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    // С какого размера пачки URL проверяются параллельно
+    private static final int PARALLEL_VALIDATION_THRESHOLD = 1024;
+    // Сколько раз создание ссылки берёт новый код, если выбранный успела занять другая ссылка
+    private static final int MAX_CODE_CONFLICTS = 10;
 
-    private final int shortCodeLength;
     private final Duration linkTtl;
     private final int minClicksAllowed;
     private final int maxClicksAllowed;
 
     private final ShortLinkRepository repository;
-    private final SecureRandom random = new SecureRandom();
+    private final ShortCodeGenerator codeGenerator;
+    private final NegativeLookupCache deadCodes;
+    private final ExpiredLinkDeleter expiredDeleter;
     private final UserRepository userRepository;
+    private final ClickWriteBehindBuffer clickBuffer;
+    private final ShortenerMetrics metrics;
 
     public UrlShortenerService(ShortLinkRepository repository, AppConfig config, UserRepository userRepository) {
+        this(repository, config, userRepository, null);
+    }
+
+    /**
+     * clickBuffer == null — каждый переход сохраняется в хранилище сразу.
+     */
+    public UrlShortenerService(ShortLinkRepository repository, AppConfig config, UserRepository userRepository,
+                               ClickWriteBehindBuffer clickBuffer) {
+        this(repository, config, userRepository, clickBuffer,
+                new RandomShortCodeGenerator(config.shortCodeLength(), repository));
+    }
+
+    public UrlShortenerService(ShortLinkRepository repository, AppConfig config, UserRepository userRepository,
+                               ClickWriteBehindBuffer clickBuffer, ShortCodeGenerator codeGenerator) {
+        this(repository, config, userRepository, clickBuffer, codeGenerator, null);
+    }
+
+    /**
+     * expiredDeleter == null — просроченная ссылка, замеченная при переходе, удаляется в потоке запроса.
+     */
+    public UrlShortenerService(ShortLinkRepository repository, AppConfig config, UserRepository userRepository,
+                               ClickWriteBehindBuffer clickBuffer, ShortCodeGenerator codeGenerator,
+                               ExpiredLinkDeleter expiredDeleter) {
+        this(repository, config, userRepository, clickBuffer, codeGenerator, expiredDeleter, new ShortenerMetrics());
+    }
+
+    public UrlShortenerService(ShortLinkRepository repository, AppConfig config, UserRepository userRepository,
+                               ClickWriteBehindBuffer clickBuffer, ShortCodeGenerator codeGenerator,
+                               ExpiredLinkDeleter expiredDeleter, ShortenerMetrics metrics) {
         this.repository = repository;
-        this.shortCodeLength = config.shortCodeLength();
+        this.metrics = metrics;
+        this.clickBuffer = clickBuffer;
+        this.codeGenerator = codeGenerator;
+        this.expiredDeleter = expiredDeleter;
+        this.deadCodes = config.negativeCache().enabled()
+                ? new NegativeLookupCache(config.negativeCache().ttlMillis(), config.negativeCache().maxEntries())
+                : null;
         this.linkTtl = config.linkTtl();
         this.minClicksAllowed = config.minClicksAllowed();
         this.maxClicksAllowed = config.maxClicksAllowed();
@@ -42,6 +97,143 @@ public class UrlShortenerService {
     public ShortLink createShortLink(UUID userId, String originalUrl)
             throws DataAccessException {
 
+        long start = System.nanoTime();
+        CreateLinkEvent event = new CreateLinkEvent();
+        event.begin();
+        validateUrl(originalUrl);
+        UserProfile user = linkOwner(userId);
+
+        ShortLink link = saveWithFreshCode(newLink(user, codeGenerator.nextCode(), originalUrl, Instant.now()));
+        if (deadCodes != null) {
+            // код мог недавно принадлежать удалённой ссылке
+            deadCodes.invalidate(link.getShortCode());
+        }
+        metrics.recordCreate(start);
+        event.report(link.getShortCode());
+        return link;
+    }
+
+    /**
+     * Создаёт ссылки на каждый URL из списка. Пользователь проверяется один раз, URL проверяются
+     * параллельно (для больших пачек), коды берутся у генератора пачкой, а все ссылки сохраняются
+     * одной записью в хранилище. Результаты идут в порядке URL: некорректный URL получает
+     * причину отказа и не мешает остальным. Ошибка хранилища прерывает всю пачку.
+     */
+    public List<LinkCreationResult> createShortLinks(UUID userId, List<String> originalUrls)
+            throws DataAccessException {
+
+        long start = System.nanoTime();
+        UserProfile user = linkOwner(userId);
+
+        String[] errors = new String[originalUrls.size()];
+        IntStream indexes = IntStream.range(0, originalUrls.size());
+        if (originalUrls.size() >= PARALLEL_VALIDATION_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            try {
+                validateUrl(originalUrls.get(i));
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        });
+
+        int valid = 0;
+        for (String error : errors) {
+            if (error == null) {
+                valid++;
+            }
+        }
+        List<String> codes = valid == 0 ? List.of() : codeGenerator.nextCodes(valid);
+
+        Instant now = Instant.now();
+        List<ShortLink> links = new ArrayList<>(valid);
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] == null) {
+                links.add(newLink(user, codes.get(links.size()), originalUrls.get(i), now));
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                repository.saveAll(links);
+                break;
+            } catch (ShortCodeConflictException e) {
+                if (attempt == MAX_CODE_CONFLICTS) {
+                    throw e;
+                }
+                // часть пачки могла сохраниться; повторное сохранение с тем же id лишь заменяет ссылку
+                replaceTakenCodes(links);
+            }
+        }
+
+        List<LinkCreationResult> results = new ArrayList<>(originalUrls.size());
+        int next = 0;
+        for (int i = 0; i < errors.length; i++) {
+            String url = originalUrls.get(i);
+            results.add(errors[i] != null
+                    ? LinkCreationResult.rejected(url, errors[i])
+                    : LinkCreationResult.created(url, links.get(next++)));
+        }
+        if (deadCodes != null) {
+            for (ShortLink link : links) {
+                deadCodes.invalidate(link.getShortCode());
+            }
+        }
+        metrics.recordCreateBatch(start, links.size());
+        return results;
+    }
+
+    /**
+     * Выдаёт новые коды только тем ссылкам пачки, чей код занят ссылкой с другим id
+     * (или повторяется внутри пачки), чтобы пачка снова сохранилась одной записью.
+     */
+    private void replaceTakenCodes(List<ShortLink> links) throws DataAccessException {
+        List<String> codes = new ArrayList<>(links.size());
+        for (ShortLink link : links) {
+            codes.add(link.getShortCode());
+        }
+        Map<String, ShortLink> stored = repository.findByShortCodes(codes);
+        Set<String> seen = new HashSet<>();
+        List<Integer> taken = new ArrayList<>();
+        for (int k = 0; k < links.size(); k++) {
+            ShortLink link = links.get(k);
+            ShortLink holder = stored.get(link.getShortCode());
+            if ((holder != null && !holder.getId().equals(link.getId())) || !seen.add(link.getShortCode())) {
+                taken.add(k);
+            }
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+        List<String> fresh = codeGenerator.nextCodes(taken.size());
+        for (int j = 0; j < taken.size(); j++) {
+            ShortLink link = links.get(taken.get(j));
+            links.set(taken.get(j), new ShortLink(link.getId(), fresh.get(j), link.getOriginalUrl(),
+                    link.getOwnerId(), link.getMaxClicks(), 0, link.getCreatedAt(), link.getExpiresAt(), true));
+        }
+    }
+
+    /**
+     * Сохраняет ссылку; если её код за время между выбором и сохранением заняла другая ссылка,
+     * берёт у генератора новый код и пробует снова.
+     */
+    private ShortLink saveWithFreshCode(ShortLink link) throws DataAccessException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                repository.save(link);
+                return link;
+            } catch (ShortCodeConflictException e) {
+                if (attempt == MAX_CODE_CONFLICTS) {
+                    throw e;
+                }
+                link = new ShortLink(link.getId(), codeGenerator.nextCode(), link.getOriginalUrl(),
+                        link.getOwnerId(), link.getMaxClicks(), 0, link.getCreatedAt(), link.getExpiresAt(), true);
+            }
+        }
+    }
+
+    private static void validateUrl(String originalUrl) {
         if (originalUrl == null || originalUrl.isBlank()) {
             throw new IllegalArgumentException("URL не может быть пустым");
         }
@@ -59,7 +251,9 @@ public class UrlShortenerService {
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException("Некорректный формат URL: " + e.getMessage());
         }
+    }
 
+    private UserProfile linkOwner(UUID userId) throws DataAccessException {
         UserProfile user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден"));
 
@@ -67,30 +261,25 @@ public class UrlShortenerService {
         if (maxClicks < minClicksAllowed || maxClicks > maxClicksAllowed) {
             throw new IllegalStateException("У пользователя заданы некорректные настройки лимита");
         }
+        return user;
+    }
 
+    private ShortLink newLink(UserProfile user, String shortCode, String originalUrl, Instant now) {
         Duration ttl = Duration.ofHours(user.getTtlHours());
         if (ttl.isZero() || ttl.isNegative()) {
             ttl = linkTtl;
         }
-
-        String shortCode = generateUniqueShortCode();
-        Instant now = Instant.now();
-        Instant expiresAt = now.plus(ttl);
-
-        ShortLink link = new ShortLink(
+        return new ShortLink(
                 UUID.randomUUID().toString(),
                 shortCode,
                 originalUrl,
-                userId,
-                maxClicks,
+                user.getId(),
+                user.getDefaultMaxClicks(),
                 0,
                 now,
-                expiresAt,
+                now.plus(ttl),
                 true
         );
-
-        repository.save(link);
-        return link;
     }
 
 
@@ -98,46 +287,186 @@ public class UrlShortenerService {
             throws DataAccessException, LinkNotFoundException,
             LinkExpiredException, ClickLimitExceededException {
 
+        long start = System.nanoTime();
+        ResolveEvent event = new ResolveEvent();
+        event.begin();
+        try {
+            String url = resolve(shortCode);
+            metrics.recordResolved(start);
+            event.report(shortCode, "ok");
+            return url;
+        } catch (LinkNotFoundException e) {
+            metrics.recordResolveRejected(ResolveOutcome.NOT_FOUND, start);
+            event.report(shortCode, "not_found");
+            throw e;
+        } catch (LinkExpiredException e) {
+            metrics.recordResolveRejected(ResolveOutcome.EXPIRED, start);
+            event.report(shortCode, "expired");
+            throw e;
+        } catch (ClickLimitExceededException e) {
+            metrics.recordResolveRejected(ResolveOutcome.DEACTIVATED, start);
+            event.report(shortCode, "limit");
+            throw e;
+        } catch (DataAccessException | RuntimeException e) {
+            metrics.recordResolveFailed(start);
+            event.report(shortCode, "error");
+            throw e;
+        }
+    }
+
+    private String resolve(String shortCode)
+            throws DataAccessException, LinkNotFoundException,
+            LinkExpiredException, ClickLimitExceededException {
+
+        long version = 0;
+        if (deadCodes != null) {
+            ResolveOutcome known = deadCodes.get(shortCode);
+            if (known != null) {
+                reject(known);
+            }
+            version = deadCodes.version();
+        }
+
         Instant now = Instant.now();
 
         var opt = repository.findByShortCode(shortCode);
         if (opt.isEmpty()) {
-            throw new LinkNotFoundException("Ссылка не найдена");
+            rejectAndRemember(shortCode, ResolveOutcome.NOT_FOUND, version);
         }
 
         ShortLink link = opt.get();
 
         if (!link.isActive()) {
-            throw new ClickLimitExceededException("Ссылка деактивирована");
+            rejectAndRemember(shortCode, ResolveOutcome.DEACTIVATED, version);
         }
 
         if (link.isExpired(now)) {
-            repository.deleteById(link.getId());
-            throw new LinkExpiredException("Срок жизни ссылки истёк");
+            deleteExpired(link);
+            rejectAndRemember(shortCode, ResolveOutcome.EXPIRED, version);
         }
 
-        if (link.isClickLimitExceeded()) {
-            link.deactivate();
-            repository.save(link);
+        ClickResult click = link.registerClick();
+        if (click.changedState()) {
+            persistClick(link, click);
+        }
+        if (click == ClickResult.DEACTIVATED) {
+            rejectAndRemember(shortCode, ResolveOutcome.DEACTIVATED, version);
+        }
+        if (click == ClickResult.EXHAUSTED) {
+            if (deadCodes != null) {
+                deadCodes.put(shortCode, ResolveOutcome.DEACTIVATED, version);
+            }
             throw new ClickLimitExceededException("Лимит переходов исчерпан");
         }
+        if (click == ClickResult.ALLOWED_LAST && deadCodes != null) {
+            deadCodes.put(shortCode, ResolveOutcome.DEACTIVATED, version);
+        }
+        return link.getOriginalUrl();
+    }
 
-        link.incrementClickCount();
-        if (link.isClickLimitExceeded()) {
-            link.deactivate();
+    /**
+     * Переход сразу по пачке кодов — для проверщиков ссылок и сервисов предпросмотра.
+     * Хранилище опрашивается одним запросом, результат — по одному на каждый код в исходном порядке,
+     * промахи не бросают исключений. peek == true — только посмотреть: клики не считаются,
+     * просроченные ссылки не удаляются, мёртвые коды не запоминаются. Ошибка хранилища проваливает всю пачку.
+     */
+    public List<ResolveResult> resolveShortLinks(List<String> shortCodes, boolean peek) throws DataAccessException {
+        long start = System.nanoTime();
+        ResolveOutcome[] known = new ResolveOutcome[shortCodes.size()];
+        Set<String> lookup = new HashSet<>();
+        long version = deadCodes == null ? 0 : deadCodes.version();
+        for (int i = 0; i < known.length; i++) {
+            String shortCode = shortCodes.get(i);
+            known[i] = deadCodes == null ? null : deadCodes.get(shortCode);
+            if (known[i] == null) {
+                lookup.add(shortCode);
+            }
         }
-        repository.save(link);
+        Map<String, ShortLink> found = lookup.isEmpty() ? Map.of() : repository.findByShortCodes(lookup);
 
-        return link.getOriginalUrl();
+        Instant now = Instant.now();
+        List<ResolveResult> results = new ArrayList<>(known.length);
+        // без буфера кликов изменённые ссылки сохраняются одной пачкой
+        Set<ShortLink> changed = clickBuffer == null ? new LinkedHashSet<>() : null;
+        for (int i = 0; i < known.length; i++) {
+            String shortCode = shortCodes.get(i);
+            ResolveOutcome outcome = known[i];
+            ShortLink link = found.get(shortCode);
+            if (outcome == null) {
+                outcome = peek ? peekOutcome(link, now) : clickOutcome(link, now, changed, version);
+                if (outcome != null && !peek && deadCodes != null) {
+                    deadCodes.put(shortCode, outcome, version);
+                }
+            }
+            results.add(outcome == null
+                    ? ResolveResult.resolved(shortCode, link.getOriginalUrl())
+                    : ResolveResult.rejected(shortCode, outcome));
+        }
+        if (changed != null && !changed.isEmpty()) {
+            repository.saveAll(changed);
+        }
+        metrics.recordResolveBatch(start, known.length);
+        return results;
+    }
+
+    private static ResolveOutcome peekOutcome(ShortLink link, Instant now) {
+        if (link == null) {
+            return ResolveOutcome.NOT_FOUND;
+        }
+        if (!link.isActive()) {
+            return ResolveOutcome.DEACTIVATED;
+        }
+        if (link.isExpired(now)) {
+            return ResolveOutcome.EXPIRED;
+        }
+        return link.isClickLimitExceeded() ? ResolveOutcome.DEACTIVATED : null;
+    }
+
+    /**
+     * Засчитывает клик, как {@link #resolveShortLink}, и возвращает причину отказа или null.
+     * changed == null — состояние сохраняется через буфер кликов сразу.
+     */
+    private ResolveOutcome clickOutcome(ShortLink link, Instant now, Set<ShortLink> changed, long version)
+            throws DataAccessException {
+        if (link == null) {
+            return ResolveOutcome.NOT_FOUND;
+        }
+        if (!link.isActive()) {
+            return ResolveOutcome.DEACTIVATED;
+        }
+        if (link.isExpired(now)) {
+            deleteExpired(link);
+            return ResolveOutcome.EXPIRED;
+        }
+        ClickResult click = link.registerClick();
+        if (click.changedState()) {
+            if (changed == null) {
+                persistClick(link, click);
+            } else {
+                changed.add(link);
+            }
+        }
+        if (click == ClickResult.DEACTIVATED || click == ClickResult.EXHAUSTED) {
+            return ResolveOutcome.DEACTIVATED;
+        }
+        if (click == ClickResult.ALLOWED_LAST && deadCodes != null) {
+            deadCodes.put(link.getShortCode(), ResolveOutcome.DEACTIVATED, version);
+        }
+        return null;
     }
 
     public List<ShortLink> getUserLinks(UUID userId) throws DataAccessException {
         return repository.findByOwner(userId);
     }
 
+    public LinkPage getUserLinks(UUID userId, String cursor, int pageSize) throws DataAccessException {
+        return repository.findByOwner(userId, cursor, pageSize);
+    }
+
     public void deleteUserLink(UUID userId, String shortCode)
             throws DataAccessException, LinkNotFoundException, AccessDeniedException {
 
+        long start = System.nanoTime();
         var opt = repository.findByShortCode(shortCode);
         if (opt.isEmpty()) {
             throw new LinkNotFoundException("Ссылка не найдена");
@@ -147,27 +476,70 @@ public class UrlShortenerService {
             throw new AccessDeniedException("Нельзя удалить ссылку другого пользователя");
         }
         repository.deleteById(link.getId());
+        if (deadCodes != null) {
+            deadCodes.invalidate(shortCode);
+        }
+        metrics.recordDelete(start);
     }
 
     public void cleanupExpiredLinks() throws DataAccessException {
         repository.deleteExpired(Instant.now());
     }
 
-    private String generateUniqueShortCode() throws DataAccessException {
-        while (true) {
-            String code = randomCode();
-            if (!repository.shortCodeExists(code)) {
-                return code;
-            }
+    /**
+     * Удаляет не больше maxBatch просроченных ссылок и возвращает число удалённых.
+     */
+    public int cleanupExpiredLinks(int maxBatch) throws DataAccessException {
+        return repository.deleteExpired(Instant.now(), maxBatch);
+    }
+
+    /**
+     * Завершает проход очистки пачками: хранилище записывает отложенные удаления.
+     */
+    public void finishExpiredCleanup() throws DataAccessException {
+        repository.flushExpiredDeletes();
+    }
+
+    public Optional<Instant> nextLinkExpiry() throws DataAccessException {
+        return repository.nextExpiry();
+    }
+
+    private void persistClick(ShortLink link, ClickResult click) throws DataAccessException {
+        if (clickBuffer == null) {
+            repository.save(link);
+        } else if (click == ClickResult.ALLOWED) {
+            clickBuffer.recordClick(link);
+        } else {
+            clickBuffer.recordDeactivation(link);
+        }
+    }
+
+    private void deleteExpired(ShortLink link) throws DataAccessException {
+        if (expiredDeleter == null) {
+            repository.deleteById(link.getId());
+        } else {
+            expiredDeleter.schedule(link.getId());
+        }
+    }
+
+    /**
+     * Запоминает код как мёртвый (если с чтения version код не выдали заново) и бросает исключение,
+     * соответствующее причине.
+     */
+    private void rejectAndRemember(String shortCode, ResolveOutcome outcome, long version)
+            throws LinkNotFoundException, LinkExpiredException, ClickLimitExceededException {
+        if (deadCodes != null) {
+            deadCodes.put(shortCode, outcome, version);
         }
+        reject(outcome);
     }
 
-    private String randomCode() {
-        StringBuilder sb = new StringBuilder(shortCodeLength);
-        for (int i = 0; i < shortCodeLength; i++) {
-            int idx = random.nextInt(ALPHABET.length());
-            sb.append(ALPHABET.charAt(idx));
+    private static void reject(ResolveOutcome outcome)
+            throws LinkNotFoundException, LinkExpiredException, ClickLimitExceededException {
+        switch (outcome) {
+            case NOT_FOUND -> throw new LinkNotFoundException("Ссылка не найдена");
+            case EXPIRED -> throw new LinkExpiredException("Срок жизни ссылки истёк");
+            case DEACTIVATED -> throw new ClickLimitExceededException("Ссылка деактивирована");
         }
-        return sb.toString();
     }
 }
@@ -75,6 +75,11 @@ public class ConsoleApplicationTest {
             return storage.values().stream()
                 .anyMatch(l -> l.getShortCode().equals(shortCode));
         }
+
+        @Override
+        public void forEachShortCode(java.util.function.Consumer<String> action) {
+            storage.values().forEach(l -> action.accept(l.getShortCode()));
+        }
     }
 
     static class InMemoryUserRepository implements UserRepository {
@@ -0,0 +1,108 @@
+package app;
+
+import config.AppConfig;
+import model.ShortLink;
+import model.UserProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.InMemoryShortLinkRepository;
+import service.InMemoryUserRepository;
+import service.UrlShortenerService;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты HTTP-сервера переходов:
+ *  - GET /{код} отвечает 302 на исходный URL и засчитывает переход
+ *  - HEAD отвечает тем же статусом и Location, но переход не засчитывает
+ *  - неизвестный код — 404, исчерпанная ссылка — 410, другие методы — 405
+ */
+public class RedirectHttpServerTest {
+
+    private RedirectHttpServer server;
+    private UrlShortenerService service;
+    private UUID userId;
+    private final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        InMemoryUserRepository userRepo = new InMemoryUserRepository();
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "src/db/test-links.json", "src/db/test-users.json", "clck.test");
+        service = new UrlShortenerService(new InMemoryShortLinkRepository(), config, userRepo);
+        userId = UUID.randomUUID();
+        userRepo.save(new UserProfile(userId, 2, 24));
+        server = new RedirectHttpServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void redirectsUntilLimitIsExhausted() throws Exception {
+        ShortLink link = service.createShortLink(userId, "https://example.com/путь?q=1");
+
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<String> response = get("/" + link.getShortCode());
+            assertEquals(302, response.statusCode());
+            assertEquals("https://example.com/%D0%BF%D1%83%D1%82%D1%8C?q=1", response.headers().firstValue("Location").orElseThrow());
+            assertEquals("no-store", response.headers().firstValue("Cache-Control").orElseThrow());
+        }
+        assertEquals(2, link.getClickCount());
+        assertEquals(410, get("/" + link.getShortCode()).statusCode());
+    }
+
+    @Test
+    void unknownCodesAndMethodsAreRejected() throws Exception {
+        assertEquals(404, get("/Nope01").statusCode());
+        assertEquals(404, get("/").statusCode());
+        assertEquals(404, get("/a/b").statusCode());
+
+        HttpRequest post = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/Nope01"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        assertEquals(405, client.send(post, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    @Test
+    void headAnswersLikeGetWithoutCountingClicks() throws Exception {
+        ShortLink link = service.createShortLink(userId, "https://example.com/head");
+        HttpRequest head = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/" + link.getShortCode()))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            HttpResponse<Void> response = client.send(head, HttpResponse.BodyHandlers.discarding());
+            assertEquals(302, response.statusCode());
+            assertEquals("https://example.com/head", response.headers().firstValue("Location").orElseThrow());
+        }
+        assertEquals(0, link.getClickCount(), "HEAD не расходует лимит");
+        assertEquals(302, get("/" + link.getShortCode()).statusCode());
+        assertEquals(1, link.getClickCount());
+
+        HttpRequest missing = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/Nope01"))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        assertEquals(404, client.send(missing, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+}
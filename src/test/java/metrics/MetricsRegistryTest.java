@@ -0,0 +1,129 @@
+package metrics;
+
+import config.AppConfig;
+import exception.LinkNotFoundException;
+import model.ShortLink;
+import model.UserProfile;
+import org.junit.jupiter.api.Test;
+import service.InMemoryShortLinkRepository;
+import service.InMemoryUserRepository;
+import service.RandomShortCodeGenerator;
+import service.UrlShortenerService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты метрик:
+ *  - корзины гистограммы идут подряд, а квантили точны с относительной ошибкой не больше 1/8
+ *  - выгрузка в формате Prometheus группирует ряды по имени и экранирует метки
+ *  - сервис раскладывает переходы по исходам
+ *  - файл метрик заменяется целиком
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    void bucketsAreContiguousAndQuantilesAreWithinBucketError() {
+        long expectedLower = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(expectedLower));
+            assertEquals(bucket, LatencyHistogram.bucket(upper));
+            if (upper == Long.MAX_VALUE) {
+                assertEquals(LatencyHistogram.BUCKETS - 1, bucket);
+                break;
+            }
+            expectedLower = upper + 1;
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1_000);
+        }
+        histogram.record(-5);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100_001, snapshot.count());
+        assertEquals(100_000_000L, snapshot.maxNanos());
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            double exact = q * 100_000_000L;
+            long estimate = snapshot.valueAtQuantile(q);
+            assertTrue(estimate >= exact * 0.99 && estimate <= exact * 1.125, q + " → " + estimate);
+        }
+        assertEquals(100_000_000L, snapshot.valueAtQuantile(1.0));
+        assertEquals(0, new LatencyHistogram().snapshot().valueAtQuantile(0.5));
+    }
+
+    @Test
+    void prometheusExportGroupsSeriesAndEscapesLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LongAdder ok = registry.counter("requests_total", "Запросы", "status", "ok");
+        LongAdder odd = registry.counter("requests_total", "Запросы", "status", "a\"b");
+        assertSame(ok, registry.counter("requests_total", "Запросы", "status", "ok"));
+        ok.add(3);
+        odd.increment();
+        registry.gauge("queue_size", "Очередь", () -> 2.5);
+        registry.histogram("latency_seconds", "Задержка").record(2_000_000_000L);
+
+        String text = registry.toPrometheus();
+        assertEquals(1, text.split("# TYPE requests_total counter", -1).length - 1);
+        assertTrue(text.contains("requests_total{status=\"ok\"} 3\n"));
+        assertTrue(text.contains("requests_total{status=\"a\\\"b\"} 1\n"));
+        assertTrue(text.contains("queue_size 2.5\n"));
+        assertTrue(text.contains("# TYPE latency_seconds summary\n"));
+        assertTrue(text.contains("latency_seconds{quantile=\"0.5\"} 2.0\n"));
+        assertTrue(text.contains("latency_seconds_count 1\n"));
+
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("queue_size", "Очередь"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("x_total", "X", "only-name"));
+    }
+
+    @Test
+    void serviceRecordsResolveOutcomes() throws Exception {
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "src/db/test-links.json", "src/db/test-users.json", "clck.test");
+        InMemoryShortLinkRepository links = new InMemoryShortLinkRepository();
+        UrlShortenerService service = new UrlShortenerService(links, config, users,
+                null, new RandomShortCodeGenerator(6, links), null, metrics);
+        UUID userId = UUID.randomUUID();
+        users.save(new UserProfile(userId, 1, 24));
+
+        ShortLink link = service.createShortLink(userId, "https://example.com");
+        service.resolveShortLink(link.getShortCode());
+        assertThrows(Exception.class, () -> service.resolveShortLink(link.getShortCode()));
+        assertThrows(LinkNotFoundException.class, () -> service.resolveShortLink("Nope01"));
+        service.deleteUserLink(userId, link.getShortCode());
+
+        String text = metrics.registry().toPrometheus();
+        assertTrue(text.contains("shortener_create_seconds_count 1\n"));
+        assertTrue(text.contains("shortener_resolve_seconds_count{outcome=\"ok\"} 1\n"));
+        assertTrue(text.contains("shortener_resolve_seconds_count{outcome=\"limit\"} 1\n"));
+        assertTrue(text.contains("shortener_resolve_seconds_count{outcome=\"not_found\"} 1\n"));
+        assertTrue(text.contains("shortener_resolve_seconds_count{outcome=\"expired\"} 0\n"));
+        assertTrue(text.contains("shortener_delete_seconds_count 1\n"));
+    }
+
+    @Test
+    void fileWriterReplacesFileWhole() throws Exception {
+        Path dir = Files.createTempDirectory("metrics-");
+        Path file = dir.resolve("nested").resolve("metrics.prom");
+        MetricsRegistry registry = new MetricsRegistry();
+        LongAdder counter = registry.counter("events_total", "События");
+        MetricsFileWriter writer = new MetricsFileWriter(registry, file, 60_000);
+
+        writer.write();
+        assertTrue(Files.readString(file).contains("events_total 0\n"));
+
+        writer.start();
+        counter.add(7);
+        writer.stop();
+        assertTrue(Files.readString(file).contains("events_total 7\n"), "Остановка пишет последний снимок");
+        assertFalse(Files.exists(file.resolveSibling("metrics.prom.tmp")));
+    }
+}
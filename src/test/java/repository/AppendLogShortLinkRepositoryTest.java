@@ -0,0 +1,218 @@
+package repository;
+
+import config.DurabilityPolicy;
+import config.StorageConfig;
+import config.StorageMode;
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты журнального хранилища ссылок:
+ *  - состояние восстанавливается проигрыванием журнала
+ *  - изменения дописываются в конец, а не переписывают файл
+ *  - оборванная последняя запись отбрасывается
+ *  - конкурентные записи через групповую запись не теряются ни при одной политике fsync
+ *  - снимок с компактификацией заменяет старые сегменты, не теряя изменений
+ *  - конкурентные чтения, записи и удаления не нарушают индексы
+ */
+public class AppendLogShortLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner, int clicks) {
+        Instant now = Instant.now();
+        return new ShortLink(UUID.randomUUID().toString(), code, "https://" + code + ".com",
+            owner, 10, clicks, now, now.plusSeconds(3600), true);
+    }
+
+    @Test
+    void stateIsRebuiltByReplayingTheLog() throws Exception {
+        Path dir = Files.createTempDirectory("links-log-");
+        UUID owner = UUID.randomUUID();
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(dir.toString())) {
+            ShortLink kept = link("Keep01", owner, 0);
+            repo.save(kept);
+            repo.save(link("Drop01", owner, 0));
+            kept.incrementClickCount();
+            repo.save(kept);
+            repo.deleteById(repo.findByShortCode("Drop01").orElseThrow().getId());
+        }
+
+        try (AppendLogShortLinkRepository reloaded = new AppendLogShortLinkRepository(dir.toString())) {
+            assertEquals(1, reloaded.findByShortCode("Keep01").orElseThrow().getClickCount(),
+                "Последняя запись по ссылке должна побеждать");
+            assertFalse(reloaded.shortCodeExists("Drop01"), "Удалённая ссылка не должна восстанавливаться");
+            assertEquals(1, reloaded.findByOwner(owner).size());
+        }
+    }
+
+    @Test
+    void mutationAppendsOneRecordInsteadOfRewritingFile() throws Exception {
+        Path dir = Files.createTempDirectory("links-log-append-");
+        Path log = AppendLogShortLinkRepository.segmentFile(dir, 1);
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(dir.toString())) {
+            repo.save(link("App001", UUID.randomUUID(), 0));
+            long before = Files.size(log);
+            String head = Files.readString(log);
+
+            repo.save(link("App002", UUID.randomUUID(), 0));
+
+            assertTrue(Files.size(log) > before);
+            assertTrue(Files.readString(log).startsWith(head), "Старые записи не должны переписываться");
+            assertEquals(2, Files.readAllLines(log).size(), "Одна запись на одно изменение");
+        }
+    }
+
+    @Test
+    void tornTailRecordIsDiscardedOnStartup() throws Exception {
+        Path dir = Files.createTempDirectory("links-log-torn-");
+        Path log = AppendLogShortLinkRepository.segmentFile(dir, 1);
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(dir.toString())) {
+            repo.save(link("Good01", UUID.randomUUID(), 0));
+        }
+        // имитируем падение процесса посреди записи
+        Files.write(log, "{\"op\":\"put\",\"id\":\"x".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(dir.toString())) {
+            assertTrue(repo.shortCodeExists("Good01"));
+            repo.save(link("Good02", UUID.randomUUID(), 0));
+        }
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(dir.toString())) {
+            assertTrue(repo.shortCodeExists("Good01"));
+            assertTrue(repo.shortCodeExists("Good02"), "Запись после оборванного хвоста должна читаться");
+        }
+    }
+
+    @Test
+    void concurrentSavesAreAllDurableUnderEveryPolicy() throws Exception {
+        for (DurabilityPolicy policy : DurabilityPolicy.values()) {
+            Path dir = Files.createTempDirectory("links-log-group-" + policy + "-");
+            int threads = 8;
+            int perThread = 50;
+
+            try (AppendLogShortLinkRepository repo =
+                     new AppendLogShortLinkRepository(
+                         new StorageConfig(StorageMode.LOG, dir.toString(), policy, 20, 0, 0))) {
+                ExecutorService pool = Executors.newFixedThreadPool(threads);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            repo.save(link("G" + thread + "x" + i, UUID.randomUUID(), 0));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+                pool.shutdown();
+            }
+
+            try (AppendLogShortLinkRepository reloaded = new AppendLogShortLinkRepository(dir.toString())) {
+                for (int t = 0; t < threads; t++) {
+                    for (int i = 0; i < perThread; i++) {
+                        assertTrue(reloaded.shortCodeExists("G" + t + "x" + i),
+                            "Запись потеряна при политике " + policy);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void compactionReplacesOldSegmentsWithSnapshot() throws Exception {
+        Path dir = Files.createTempDirectory("links-log-compact-");
+        UUID owner = UUID.randomUUID();
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(dir.toString())) {
+            ShortLink hot = link("Hot001", owner, 0);
+            for (int i = 0; i < 100; i++) {
+                hot.incrementClickCount();
+                repo.save(hot);
+            }
+            ShortLink dead = link("Dead01", owner, 0);
+            repo.save(dead);
+            repo.deleteById(dead.getId());
+            long before = Files.size(AppendLogShortLinkRepository.segmentFile(dir, 1));
+
+            repo.compact();
+
+            assertFalse(Files.exists(AppendLogShortLinkRepository.segmentFile(dir, 1)),
+                "Сегменты, покрытые снимком, должны удаляться");
+            Path snapshot = AppendLogShortLinkRepository.snapshotFile(dir, 2);
+            assertEquals(1, Files.readAllLines(snapshot).size(), "В снимке только живые ссылки");
+            assertTrue(Files.size(snapshot) < before);
+
+            // изменения после снимка попадают в новый сегмент
+            hot.incrementClickCount();
+            repo.save(hot);
+            repo.save(link("After1", owner, 0));
+        }
+
+        try (AppendLogShortLinkRepository reloaded = new AppendLogShortLinkRepository(dir.toString())) {
+            assertEquals(101, reloaded.findByShortCode("Hot001").orElseThrow().getClickCount());
+            assertTrue(reloaded.shortCodeExists("After1"));
+            assertFalse(reloaded.shortCodeExists("Dead01"));
+        }
+    }
+
+    @Test
+    void concurrentReadersAndWritersKeepIndexesConsistent() throws Exception {
+        Path dir = Files.createTempDirectory("links-log-concurrent-");
+        int threads = 8;
+        int perThread = 100;
+        UUID owner = UUID.randomUUID();
+
+        try (AppendLogShortLinkRepository repo = new AppendLogShortLinkRepository(
+                 new StorageConfig(StorageMode.LOG, dir.toString(), DurabilityPolicy.NONE, 0, 0, 0))) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads * 2);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ShortLink l = link("C" + thread + "x" + i, owner, 0);
+                        repo.save(l);
+                        if (i % 2 == 1) {
+                            repo.deleteById(l.getId());
+                        }
+                    }
+                    return null;
+                }));
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        repo.findByShortCode("C" + thread + "x" + i);
+                        repo.findByOwner(owner, null, 10);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            pool.shutdown();
+
+            assertEquals(threads * perThread / 2, repo.findByOwner(owner).size());
+            assertTrue(repo.shortCodeExists("C0x0"));
+            assertFalse(repo.shortCodeExists("C0x1"));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package repository;
+
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+import service.InMemoryShortLinkRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты фильтра Блума перед хранилищем:
+ *  - фильтр строится по хранилищу при старте, а промахи не доходят до хранилища
+ *  - рост сверх расчётного числа кодов и удаления не дают ложных «нет»
+ *  - доля ложных срабатываний близка к расчётной
+ *  - фильтр оборачивает любое хранилище: обход кодов входит в контракт репозитория
+ */
+public class BloomFilterShortLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner) {
+        Instant now = Instant.now();
+        return new ShortLink(UUID.randomUUID().toString(), code, "https://" + code + ".com",
+            owner, 5, 0, now, now.plusSeconds(3600), true);
+    }
+
+    @Test
+    void filterIsBuiltFromStoreAndMissesSkipIt() throws Exception {
+        Path dir = Files.createTempDirectory("links-bloom-");
+        UUID owner = UUID.randomUUID();
+        try (MappedShortLinkRepository store = new MappedShortLinkRepository(dir.toString(), 100)) {
+            store.save(link("Seen01", owner));
+            store.save(link("with-dash", owner));
+        }
+
+        try (BloomFilterShortLinkRepository repo = new BloomFilterShortLinkRepository(
+                new MappedShortLinkRepository(dir.toString(), 100), 1000, 0.01)) {
+            assertTrue(repo.findByShortCode("Seen01").isPresent(), "Коды из хранилища попадают в фильтр при старте");
+            assertTrue(repo.shortCodeExists("with-dash"));
+
+            for (int i = 0; i < 100; i++) {
+                assertFalse(repo.shortCodeExists("Miss" + i));
+            }
+            assertTrue(repo.skippedLookups() >= 95, "Почти все промахи отсекаются фильтром");
+
+            repo.save(link("Fresh1", owner));
+            assertTrue(repo.findByShortCode("Fresh1").isPresent(), "Сохранённый код сразу виден");
+        }
+    }
+
+    @Test
+    void growthAndDeletesNeverHideLiveCodes() throws Exception {
+        Path file = Files.createTempFile("links-bloom-", ".json");
+        UUID owner = UUID.randomUUID();
+        BloomFilterShortLinkRepository repo = new BloomFilterShortLinkRepository(
+                new FileJsonShortLinkRepository(file.toString()), 16, 0.01);
+
+        List<ShortLink> saved = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ShortLink l = link("Grow" + i, owner);
+            repo.save(l);
+            saved.add(l);
+            assertTrue(repo.shortCodeExists(l.getShortCode()), "Ложное «нет» во время роста: " + l.getShortCode());
+        }
+        for (int i = 0; i < 250; i++) {
+            repo.deleteById(saved.get(i).getId());
+        }
+        repo.rebuild();
+
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i >= 250, repo.findByShortCode("Grow" + i).isPresent(), "Grow" + i);
+        }
+        repo.close();
+    }
+
+    @Test
+    void falsePositiveRateIsCloseToConfigured() {
+        ShortCodeBloomFilter filter = new ShortCodeBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("in" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("in" + i));
+            if (filter.mightContain("out" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "Ложных срабатываний: " + falsePositives);
+    }
+
+    @Test
+    void wrapsAnyStoreThatListsItsCodes() throws Exception {
+        InMemoryShortLinkRepository store = new InMemoryShortLinkRepository();
+        UUID owner = UUID.randomUUID();
+        store.save(link("Mem001", owner));
+
+        try (BloomFilterShortLinkRepository repo = new BloomFilterShortLinkRepository(store, 1000, 0.01)) {
+            assertTrue(repo.findByShortCode("Mem001").isPresent());
+            repo.save(link("Mem002", owner));
+            assertTrue(repo.shortCodeExists("Mem002"));
+            assertFalse(repo.shortCodeExists("Nope01"));
+        }
+    }
+}
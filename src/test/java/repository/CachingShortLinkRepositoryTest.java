@@ -0,0 +1,157 @@
+package repository;
+
+import exception.DataAccessException;
+import model.CacheStats;
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты кэша ссылок:
+ *  - повторный поиск обслуживается из памяти, а сохранение, удаление и истечение срока сбрасывают запись
+ *  - разовый проход по множеству кодов не вытесняет часто запрашиваемые ссылки
+ *  - пачка кодов берёт попадания из памяти, а промахи догружает одним запросом к хранилищу
+ */
+public class CachingShortLinkRepositoryTest {
+
+    private static class CountingRepository extends FileJsonShortLinkRepository {
+        int lookups;
+        int batchLookups;
+        Collection<String> lastBatch;
+
+        CountingRepository() throws Exception {
+            super(Files.createTempFile("links-cache-", ".json").toString());
+        }
+
+        @Override
+        public Optional<ShortLink> findByShortCode(String shortCode) {
+            lookups++;
+            return super.findByShortCode(shortCode);
+        }
+
+        @Override
+        public Map<String, ShortLink> findByShortCodes(Collection<String> shortCodes) {
+            batchLookups++;
+            lastBatch = List.copyOf(shortCodes);
+            return super.findByShortCodes(shortCodes);
+        }
+    }
+
+    private static ShortLink link(String id, String code, Instant expiresAt) {
+        return new ShortLink(id, code, "https://" + code + ".com", UUID.randomUUID(), 5, 0,
+            Instant.now(), expiresAt, true);
+    }
+
+    @Test
+    void hitsAreServedFromMemoryAndWritesInvalidate() throws Exception {
+        CountingRepository store = new CountingRepository();
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(store, 100);
+        String id = UUID.randomUUID().toString();
+        cache.save(link(id, "Hot001", Instant.now().plusSeconds(3600)));
+
+        ShortLink first = cache.findByShortCode("Hot001").orElseThrow();
+        assertSame(first, cache.findByShortCode("Hot001").orElseThrow());
+        assertEquals(1, store.lookups);
+        cache.save(first);
+        cache.findByShortCode("Hot001");
+        assertEquals(1, store.lookups, "Сохранение той же ссылки после перехода не сбрасывает запись");
+
+        // та же ссылка под новым кодом: старый код больше не выдаётся
+        cache.save(link(id, "Hot002", Instant.now().plusSeconds(3600)));
+        assertTrue(cache.findByShortCode("Hot001").isEmpty());
+        assertTrue(cache.findByShortCode("Hot002").isPresent());
+
+        cache.deleteById(id);
+        assertTrue(cache.findByShortCode("Hot002").isEmpty(), "Удалённая ссылка не выдаётся из кэша");
+
+        String expiringId = UUID.randomUUID().toString();
+        cache.save(link(expiringId, "Soon01", Instant.now().plusMillis(50)));
+        assertTrue(cache.findByShortCode("Soon01").isPresent());
+        Thread.sleep(100);
+        store.deleteExpired(Instant.now());
+        assertTrue(cache.findByShortCode("Soon01").isEmpty(), "Просроченная ссылка не выдаётся из кэша");
+
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertTrue(stats.hitRate() > 0 && stats.hitRate() < 1);
+    }
+
+    @Test
+    void oneOffScanDoesNotEvictHotLinks() throws Exception {
+        CountingRepository store = new CountingRepository();
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(store, 100);
+        Instant expiresAt = Instant.now().plusSeconds(3600);
+        for (int i = 0; i < 1050; i++) {
+            store.save(link(UUID.randomUUID().toString(), "Code" + i, expiresAt));
+        }
+
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.findByShortCode("Code" + i);
+            }
+        }
+        for (int i = 50; i < 1050; i++) {
+            cache.findByShortCode("Code" + i);
+        }
+
+        store.lookups = 0;
+        for (int i = 0; i < 50; i++) {
+            cache.findByShortCode("Code" + i);
+        }
+        assertTrue(store.lookups <= 5, "Популярные ссылки вытеснены проходом: промахов " + store.lookups);
+        assertTrue(cache.stats().rejections() > 0);
+        assertTrue(cache.stats().size() <= 100);
+    }
+
+    @Test
+    void failedSaveStillInvalidates() throws Exception {
+        ShortLinkRepository failing = new FileJsonShortLinkRepository(
+                Files.createTempFile("links-cache-fail-", ".json").toString()) {
+            @Override
+            public synchronized void save(ShortLink link) throws DataAccessException {
+                super.save(link);
+                throw new DataAccessException("диск переполнен", null);
+            }
+        };
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(failing, 10);
+        String id = UUID.randomUUID().toString();
+        assertThrows(DataAccessException.class,
+                () -> cache.save(link(id, "Fail01", Instant.now().plusSeconds(3600))));
+        cache.findByShortCode("Fail01").orElseThrow();
+
+        assertThrows(DataAccessException.class,
+                () -> cache.save(link(id, "Fail02", Instant.now().plusSeconds(3600))));
+        assertTrue(cache.findByShortCode("Fail01").isEmpty(), "Запись сброшена, даже если хранилище бросило ошибку");
+    }
+
+    @Test
+    void batchLookupServesHitsFromMemoryAndLoadsMissesOnce() throws Exception {
+        CountingRepository store = new CountingRepository();
+        CachingShortLinkRepository cache = new CachingShortLinkRepository(store, 100);
+        for (String code : List.of("Bat001", "Bat002", "Bat003")) {
+            cache.save(link(UUID.randomUUID().toString(), code, Instant.now().plusSeconds(3600)));
+        }
+        ShortLink cached = cache.findByShortCode("Bat001").orElseThrow();
+
+        Map<String, ShortLink> found = cache.findByShortCodes(List.of("Bat001", "Bat002", "Bat003", "Nope01", "Bat001"));
+
+        assertEquals(3, found.size());
+        assertSame(cached, found.get("Bat001"));
+        assertEquals(1, store.batchLookups, "Промахи догружаются одним запросом");
+        assertEquals(3, store.lastBatch.size(), "Попадания до хранилища не доходят");
+        assertFalse(store.lastBatch.contains("Bat001"));
+
+        assertSame(found.get("Bat002"), cache.findByShortCode("Bat002").orElseThrow(),
+            "Догруженные пачкой ссылки попадают в кэш");
+        assertEquals(1, store.lookups);
+    }
+}
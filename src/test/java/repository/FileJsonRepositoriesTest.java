@@ -1,5 +1,6 @@
 package repository;
 
+import metrics.ShortenerMetrics;
 import model.ShortLink;
 import model.UserProfile;
 import org.junit.jupiter.api.Test;
@@ -7,8 +8,12 @@ import org.junit.jupiter.api.Test;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -143,6 +148,80 @@ public class FileJsonRepositoriesTest {
             "Просроченная ссылка должна быть удалена");
     }
 
+    @Test
+    void expiredBatchesHonorLimitAndShareOneRewrite() throws Exception {
+        Path tempFile = Files.createTempFile("links-expired-limit-test-", ".json");
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString(), metrics);
+
+        UUID ownerId = UUID.randomUUID();
+        Instant now = Instant.now();
+        for (int i = 0; i < 3; i++) {
+            repo.save(new ShortLink(UUID.randomUUID().toString(), "Lim00" + i, "https://x.com", ownerId, 5, 0,
+                now.minusSeconds(100), now.minusSeconds(10 + i), true));
+        }
+
+        // пачки ограничены limit, но файл при этом не переписывается
+        assertEquals(1, repo.deleteExpired(now, 1));
+        assertEquals(2, repo.deleteExpired(now, 5));
+        assertEquals(0, repo.deleteExpired(now, 5));
+        assertTrue(repo.findByShortCode("Lim000").isEmpty());
+        assertTrue(metrics.registry().toPrometheus().contains("shortener_store_flush_seconds_count 3\n"));
+
+        repo.flushExpiredDeletes();
+        repo.flushExpiredDeletes();
+        assertTrue(metrics.registry().toPrometheus().contains("shortener_store_flush_seconds_count 4\n"),
+            "Все пачки прохода записываются одной перезаписью");
+
+        FileJsonShortLinkRepository reloaded = new FileJsonShortLinkRepository(tempFile.toString());
+        assertTrue(reloaded.findByShortCode("Lim000").isEmpty());
+        assertTrue(reloaded.findByShortCode("Lim002").isEmpty());
+    }
+
+    @Test
+    void farFutureDatesSurviveSaveAndLoad() throws Exception {
+        Path tempFile = Files.createTempFile("links-far-future-test-", ".json");
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString());
+
+        // за пределами 2262 года наносекунды эпохи уже не помещаются в long
+        Instant farFuture = Instant.parse("+100000-01-01T00:00:00.000000001Z");
+        Instant now = Instant.now();
+        repo.save(new ShortLink(UUID.randomUUID().toString(), "Far001", "https://far.com", UUID.randomUUID(), 5, 0,
+            now, farFuture, true));
+
+        FileJsonShortLinkRepository reloaded = new FileJsonShortLinkRepository(tempFile.toString());
+        assertEquals(farFuture, reloaded.findByShortCode("Far001").orElseThrow().getExpiresAt());
+        assertEquals(farFuture, reloaded.nextExpiry().orElseThrow());
+        assertEquals(0, reloaded.deleteExpired(now, 10));
+    }
+
+    @Test
+    void expiryIndexFollowsReplacedLinksAndBoundary() throws Exception {
+        Path tempFile = Files.createTempFile("links-expiry-index-test-", ".json");
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString());
+
+        UUID ownerId = UUID.randomUUID();
+        Instant now = Instant.now();
+        String id = UUID.randomUUID().toString();
+        // сначала ссылка просрочена, затем перезаписана с продлённым сроком — старая запись индекса не должна остаться
+        repo.save(new ShortLink(id, "Ext001", "https://a.com", ownerId, 5, 0,
+            now.minusSeconds(100), now.minusSeconds(1), true));
+        repo.save(new ShortLink(id, "Ext001", "https://a.com", ownerId, 5, 0,
+            now.minusSeconds(100), now.plusSeconds(3600), true));
+        // истекает ровно в now — по isExpired ещё жива
+        repo.save(new ShortLink(UUID.randomUUID().toString(), "Edge01", "https://b.com", ownerId, 5, 0,
+            now.minusSeconds(100), now, true));
+
+        repo.deleteExpired(now);
+
+        assertTrue(repo.findByShortCode("Ext001").isPresent(), "Продлённая ссылка не должна быть удалена");
+        assertTrue(repo.findByShortCode("Edge01").isPresent(), "Ссылка с expiresAt == now ещё не просрочена");
+
+        repo.deleteExpired(now.plusMillis(1));
+        assertTrue(repo.findByShortCode("Edge01").isEmpty());
+        assertTrue(repo.findByShortCode("Ext001").isPresent());
+    }
+
     @Test
     void shortCodeExistsReturnsTrueIfShortCodeAlreadyUsed() throws Exception {
         Path tempFile = Files.createTempFile("links-exists-test-", ".json");
@@ -168,4 +247,124 @@ public class FileJsonRepositoriesTest {
         assertFalse(repo.shortCodeExists("Another"),
             "shortCodeExists должен возвращать false для несуществующего кода");
     }
+
+    @Test
+    void shortCodeIndexStaysConsistentAfterReplaceAndReload() throws Exception {
+        Path tempFile = Files.createTempFile("links-index-test-", ".json");
+
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString());
+
+        UUID ownerId = UUID.randomUUID();
+        String id = UUID.randomUUID().toString();
+        Instant now = Instant.now();
+        repo.save(new ShortLink(id, "Old777", "https://old.com", ownerId,
+            5, 0, now, now.plusSeconds(3600), true));
+
+        // та же ссылка (тот же id) сохраняется с другим кодом — старый код не должен резолвиться
+        repo.save(new ShortLink(id, "New777", "https://new.com", ownerId,
+            5, 0, now, now.plusSeconds(3600), true));
+
+        assertFalse(repo.shortCodeExists("Old777"));
+        assertTrue(repo.findByShortCode("New777").isPresent());
+
+        // индекс восстанавливается при загрузке из файла
+        FileJsonShortLinkRepository reloaded = new FileJsonShortLinkRepository(tempFile.toString());
+        assertEquals("https://new.com", reloaded.findByShortCode("New777").orElseThrow().getOriginalUrl());
+        assertTrue(reloaded.findByShortCode("Old777").isEmpty());
+
+        reloaded.deleteById(id);
+        assertFalse(reloaded.shortCodeExists("New777"),
+            "После deleteById код должен исчезнуть из индекса");
+    }
+
+    @Test
+    void findByOwnerPagesThroughLinksInCreationOrder() throws Exception {
+        Path tempFile = Files.createTempFile("links-page-test-", ".json");
+
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString());
+
+        UUID ownerId = UUID.randomUUID();
+        Instant base = Instant.now();
+        // сохраняем в обратном порядке, чтобы проверить сортировку по createdAt
+        for (int i = 4; i >= 0; i--) {
+            repo.save(new ShortLink(UUID.randomUUID().toString(), "Pag00" + i,
+                "https://page.com/" + i, ownerId, 5, 0,
+                base.plusSeconds(i), base.plusSeconds(3600), true));
+        }
+        repo.save(new ShortLink(UUID.randomUUID().toString(), "Other1",
+            "https://other.com", UUID.randomUUID(), 5, 0,
+            base, base.plusSeconds(3600), true));
+
+        var first = repo.findByOwner(ownerId, null, 2);
+        assertEquals(List.of("Pag000", "Pag001"),
+            first.links().stream().map(ShortLink::getShortCode).toList());
+        assertTrue(first.hasNext());
+
+        var second = repo.findByOwner(ownerId, first.nextCursor(), 2);
+        assertEquals(List.of("Pag002", "Pag003"),
+            second.links().stream().map(ShortLink::getShortCode).toList());
+
+        var last = repo.findByOwner(ownerId, second.nextCursor(), 2);
+        assertEquals(List.of("Pag004"),
+            last.links().stream().map(ShortLink::getShortCode).toList());
+        assertFalse(last.hasNext(), "Последняя страница не должна возвращать курсор");
+
+        assertThrows(IllegalArgumentException.class,
+            () -> repo.findByOwner(ownerId, "не-курсор", 2));
+    }
+
+    @Test
+    void readsDoNotWaitForWriterHoldingTheRepositoryMonitor() throws Exception {
+        Path tempFile = Files.createTempFile("links-lockfree-test-", ".json");
+
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString());
+        repo.save(new ShortLink(UUID.randomUUID().toString(), "Fast01", "https://fast.com",
+            UUID.randomUUID(), 5, 0, Instant.now(), Instant.now().plusSeconds(3600), true));
+
+        CountDownLatch writerInside = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        // имитируем долгую запись файла: держим монитор репозитория, как это делает save/deleteExpired
+        Thread slowWriter = new Thread(() -> {
+            synchronized (repo) {
+                writerInside.countDown();
+                try {
+                    releaseWriter.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        slowWriter.start();
+        writerInside.await();
+        try {
+            var found = CompletableFuture.supplyAsync(() -> repo.findByShortCode("Fast01"))
+                .get(2, TimeUnit.SECONDS);
+            assertTrue(found.isPresent(), "Чтение должно выполняться, пока запись держит монитор");
+        } finally {
+            releaseWriter.countDown();
+            slowWriter.join();
+        }
+    }
+
+    @Test
+    void saveAllWritesTheWholeBatchInOneFlush() throws Exception {
+        Path tempFile = Files.createTempFile("links-batch-", ".json");
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        FileJsonShortLinkRepository repo = new FileJsonShortLinkRepository(tempFile.toString(), metrics);
+
+        UUID ownerId = UUID.randomUUID();
+        Instant now = Instant.now();
+        List<ShortLink> links = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            links.add(new ShortLink(UUID.randomUUID().toString(), "Bat" + i, "https://example.com/" + i,
+                ownerId, 3, 0, now, now.plusSeconds(3600), true));
+        }
+        repo.saveAll(links);
+
+        assertTrue(metrics.registry().toPrometheus().contains("shortener_store_flush_seconds_count 1\n"),
+            "Пачка должна записываться в файл одним проходом");
+        FileJsonShortLinkRepository reloaded = new FileJsonShortLinkRepository(tempFile.toString());
+        assertEquals(50, reloaded.findByOwner(ownerId).size());
+        assertTrue(reloaded.shortCodeExists("Bat49"));
+    }
 }
@@ -0,0 +1,388 @@
+package repository;
+
+import exception.DataAccessException;
+import exception.ShortCodeConflictException;
+import model.ClickResult;
+import model.LinkPage;
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты отображаемого в память хранилища ссылок:
+ *  - данные и счётчики переживают переоткрытие, в том числе без штатного закрытия
+ *  - перезапись ссылки с тем же id не дублирует её, в том числе после сбоя посреди перезаписи
+ *  - представления одной записи делят счётчик, а представление удалённой записи неактивно
+ *  - повторное использование слотов и перестройка индекса не ломают поиск
+ *  - код, занятый ссылкой с другим id, не отбирается у неё
+ *  - промах без конкурентной записи не ждёт монитор хранилища
+ *  - поиск пачкой находит живые коды и пропускает удалённые, неизвестные и слишком длинные
+ *  - страницы владельца идут в порядке создания и после удаления ссылки курсора, перезаписи и сбоя
+ *  - просроченные удаляются пачками с самых старых; куча сроков и свободные слоты переживают переоткрытие
+ */
+public class MappedShortLinkRepositoryTest {
+
+    private static ShortLink link(String code, UUID owner, int maxClicks) {
+        Instant now = Instant.now();
+        return new ShortLink(UUID.randomUUID().toString(), code, "https://" + code + ".com/путь",
+            owner, maxClicks, 0, now, now.plusSeconds(3600), true);
+    }
+
+    @Test
+    void linksAndClicksSurviveReopen() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-");
+        UUID owner = UUID.randomUUID();
+        ShortLink original = link("Keep01", owner, 10);
+
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 100)) {
+            repo.save(original);
+            repo.save(link("Drop01", owner, 10));
+            ShortLink stored = repo.findByShortCode("Keep01").orElseThrow();
+            stored.registerClick();
+            stored.registerClick();
+            repo.save(stored);
+            repo.deleteById(repo.findByShortCode("Drop01").orElseThrow().getId());
+        }
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(dir.toString(), 100)) {
+            ShortLink loaded = reopened.findByShortCode("Keep01").orElseThrow();
+            assertEquals(original.getId(), loaded.getId());
+            assertEquals(original.getOriginalUrl(), loaded.getOriginalUrl());
+            assertEquals(original.getOwnerId(), loaded.getOwnerId());
+            assertEquals(original.getExpiresAt(), loaded.getExpiresAt());
+            assertEquals(2, loaded.getClickCount());
+            assertFalse(reopened.shortCodeExists("Drop01"));
+            assertEquals(1, reopened.findByOwner(owner).size());
+        }
+    }
+
+    @Test
+    void indexIsRebuiltAfterUncleanShutdown() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-crash-");
+        UUID owner = UUID.randomUUID();
+
+        MappedShortLinkRepository crashed = new MappedShortLinkRepository(dir.toString(), 100);
+        crashed.save(link("Crash1", owner, 10));
+        crashed.save(link("Crash2", owner, 10));
+        // close() не вызывается — как после аварийного завершения процесса
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(dir.toString(), 100)) {
+            assertTrue(reopened.findByShortCode("Crash1").isPresent());
+            assertTrue(reopened.findByShortCode("Crash2").isPresent());
+        }
+    }
+
+    @Test
+    void replacingLinkWithSameIdKeepsSingleRecord() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-replace-");
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        String id = UUID.randomUUID().toString();
+
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 10)) {
+            repo.save(new ShortLink(id, "Old001", "https://a.com", owner, 5, 1, now, now.plusSeconds(60), true));
+            repo.save(new ShortLink(id, "New001", "https://a.com", owner, 5, 3, now, now.plusSeconds(120), true));
+
+            assertFalse(repo.shortCodeExists("Old001"), "Старый код должен уйти из индекса");
+            ShortLink loaded = repo.findByShortCode("New001").orElseThrow();
+            assertEquals(3, loaded.getClickCount());
+            assertEquals(now.plusSeconds(120), loaded.getExpiresAt());
+            assertEquals(1, repo.findByOwner(owner).size());
+            assertEquals(1, repo.size());
+        }
+    }
+
+    @Test
+    void crashBetweenWritingAndRetiringKeepsNewestRecord() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-torn-");
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        String id = UUID.randomUUID().toString();
+
+        MappedShortLinkRepository crashed = new MappedShortLinkRepository(dir.toString(), 10);
+        crashed.save(new ShortLink(id, "Old002", "https://a.com", owner, 5, 0, now, now.plusSeconds(60), true));
+        crashed.save(new ShortLink(id, "New002", "https://b.com", owner, 5, 0, now, now.plusSeconds(120), true));
+        // новая запись уже в слоте 1, а старую в слоте 0 «не успели» освободить; close() не вызывается
+        try (FileChannel channel = FileChannel.open(dir.resolve("links.dat"), StandardOpenOption.WRITE)) {
+            ByteBuffer live = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 1);
+            channel.write(live, MappedShortLinkRepository.offset(0) + MappedShortLinkRepository.R_STATUS);
+        }
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(dir.toString(), 10)) {
+            assertFalse(reopened.shortCodeExists("Old002"), "Устаревшая копия не должна попасть в индекс");
+            assertEquals("https://b.com", reopened.findByShortCode("New002").orElseThrow().getOriginalUrl());
+            assertEquals(1, reopened.findByOwner(owner).size());
+            assertEquals(1, reopened.size());
+            assertEquals(now.plusSeconds(120), reopened.nextExpiry().orElseThrow());
+
+            reopened.deleteById(id);
+            assertFalse(reopened.shortCodeExists("New002"));
+            assertTrue(reopened.findByOwner(owner).isEmpty());
+        }
+    }
+
+    @Test
+    void viewsShareStateAndDeletedViewBecomesInactive() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-views-");
+        UUID owner = UUID.randomUUID();
+
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 10)) {
+            repo.save(link("View01", owner, 2));
+            ShortLink first = repo.findByShortCode("View01").orElseThrow();
+            ShortLink second = repo.findByShortCode("View01").orElseThrow();
+
+            assertEquals(ClickResult.ALLOWED, first.registerClick());
+            assertEquals(ClickResult.ALLOWED_LAST, second.registerClick());
+            assertEquals(ClickResult.DEACTIVATED, first.registerClick(), "Лимит общий для всех представлений");
+
+            repo.save(link("View02", owner, 5));
+            ShortLink stale = repo.findByShortCode("View02").orElseThrow();
+            repo.deleteById(stale.getId());
+            // освободившийся слот занимает другая ссылка — старое представление её не трогает
+            repo.save(link("View03", owner, 5));
+
+            assertFalse(stale.isActive());
+            assertEquals(ClickResult.DEACTIVATED, stale.registerClick());
+            assertEquals(0, repo.findByShortCode("View03").orElseThrow().getClickCount());
+        }
+    }
+
+    @Test
+    void slotReuseAndIndexRebuildKeepLookupsCorrect() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-churn-");
+        UUID owner = UUID.randomUUID();
+
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 4)) {
+            repo.save(link("Stay01", owner, 5));
+            for (int i = 0; i < 200; i++) {
+                ShortLink temp = link("Tmp" + i, owner, 5);
+                repo.save(temp);
+                assertTrue(repo.shortCodeExists("Tmp" + i));
+                repo.deleteById(temp.getId());
+            }
+            assertTrue(repo.findByShortCode("Stay01").isPresent());
+            assertFalse(repo.shortCodeExists("Tmp199"));
+            assertEquals(1, repo.size());
+
+            for (int i = 0; i < 3; i++) {
+                repo.save(link("Fill" + i, owner, 5));
+            }
+            assertThrows(DataAccessException.class, () -> repo.save(link("Over01", owner, 5)),
+                "Сверх ёмкости сохранять нельзя");
+        }
+    }
+
+    @Test
+    void concurrentClicksThroughSeparateViewsNeverExceedLimit() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-clicks-");
+        UUID owner = UUID.randomUUID();
+        int limit = 500;
+
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 10)) {
+            repo.save(link("Race01", owner, limit));
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    int allowed = 0;
+                    for (int i = 0; i < 200; i++) {
+                        if (repo.findByShortCode("Race01").orElseThrow().registerClick().isAllowed()) {
+                            allowed++;
+                        }
+                    }
+                    return allowed;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> f : results) {
+                total += f.get();
+            }
+            pool.shutdown();
+
+            assertEquals(limit, total);
+            ShortLink stored = repo.findByShortCode("Race01").orElseThrow();
+            assertEquals(limit, stored.getClickCount());
+            assertFalse(stored.isActive());
+        }
+    }
+
+    @Test
+    void batchLookupFindsLiveCodesAndSkipsMissingOnes() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-batch-");
+        UUID owner = UUID.randomUUID();
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 100)) {
+            for (int i = 0; i < 20; i++) {
+                repo.save(link("Many" + i, owner, 5));
+            }
+            repo.deleteById(repo.findByShortCode("Many3").orElseThrow().getId());
+
+            List<String> codes = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                codes.add("Many" + i);
+            }
+            codes.add("Absent");
+            codes.add("x".repeat(100));
+            Map<String, ShortLink> found = repo.findByShortCodes(codes);
+
+            assertEquals(19, found.size());
+            assertFalse(found.containsKey("Many3"));
+            assertEquals("https://Many7.com/путь", found.get("Many7").getOriginalUrl());
+        }
+    }
+
+    @Test
+    void codeTakenByAnotherIdIsRejected() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-conflict-");
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 100)) {
+            ShortLink first = link("Same01", UUID.randomUUID(), 5);
+            repo.save(first);
+
+            assertThrows(ShortCodeConflictException.class, () -> repo.save(link("Same01", UUID.randomUUID(), 5)));
+            assertEquals(first.getId(), repo.findByShortCode("Same01").orElseThrow().getId());
+            assertEquals(1, repo.findByOwner(first.getOwnerId()).size());
+        }
+    }
+
+    @Test
+    void missesDoNotWaitForMonitorHeldWithoutWrites() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-miss-");
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 100)) {
+            repo.save(link("Here01", UUID.randomUUID(), 5));
+
+            CountDownLatch holderInside = new CountDownLatch(1);
+            CountDownLatch releaseHolder = new CountDownLatch(1);
+            // монитор занят (например, обходом кодов), но структура не меняется
+            Thread holder = new Thread(() -> {
+                synchronized (repo) {
+                    holderInside.countDown();
+                    try {
+                        releaseHolder.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            holder.start();
+            holderInside.await();
+            try {
+                assertTrue(CompletableFuture.supplyAsync(() -> repo.findByShortCode("Nope01"))
+                    .get(2, TimeUnit.SECONDS).isEmpty(), "Настоящий промах не должен ждать монитор");
+                assertTrue(CompletableFuture.supplyAsync(() -> repo.findByShortCodes(List.of("Nope01", "Here01")))
+                    .get(2, TimeUnit.SECONDS).containsKey("Here01"));
+            } finally {
+                releaseHolder.countDown();
+                holder.join();
+            }
+        }
+    }
+
+    @Test
+    void ownerPagesFollowCreationOrderThroughUpdatesDeletesAndCrash() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-pages-");
+        UUID owner = UUID.randomUUID();
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+        Random random = new Random(7);
+        List<ShortLink> expected = new ArrayList<>();
+
+        MappedShortLinkRepository crashed = new MappedShortLinkRepository(dir.toString(), 64);
+        for (int i = 0; i < 40; i++) {
+            // createdAt не по порядку вставки и с совпадениями — порядок решает id
+            ShortLink link = new ShortLink(UUID.randomUUID().toString(), "Pg" + i, "https://p.com/" + i, owner, 5, 0,
+                base.plusSeconds(random.nextInt(10)), base.plusSeconds(3600), true);
+            crashed.save(link);
+            expected.add(link);
+        }
+        crashed.save(link("Else01", UUID.randomUUID(), 5));
+        for (int i = 0; i < 10; i++) {
+            ShortLink gone = expected.remove(random.nextInt(expected.size()));
+            crashed.deleteById(gone.getId());
+        }
+        ShortLink moved = expected.remove(0);
+        ShortLink renamed = new ShortLink(moved.getId(), "Moved1", moved.getOriginalUrl(), owner, 5, 0,
+            base.plusSeconds(30), base.plusSeconds(3600), true);
+        crashed.save(renamed);
+        expected.add(renamed);
+        expected.sort(Comparator.comparing(ShortLink::getCreatedAt).thenComparing(ShortLink::getId));
+
+        assertEquals(codes(expected), codes(allPages(crashed, owner, 7)));
+        // close() не вызывается: списки владельцев строятся заново по записям
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(dir.toString(), 64)) {
+            assertEquals(codes(expected), codes(allPages(reopened, owner, 7)));
+            assertEquals(expected.size(), reopened.findByOwner(owner).size());
+
+            LinkPage first = reopened.findByOwner(owner, null, 5);
+            reopened.deleteById(first.links().get(4).getId());
+            LinkPage second = reopened.findByOwner(owner, first.nextCursor(), 5);
+            assertEquals(expected.get(5).getShortCode(), second.links().get(0).getShortCode(),
+                "Удаление ссылки курсора не должно сбивать следующую страницу");
+        }
+    }
+
+    @Test
+    void expiredLinksLeaveOldestFirstAndStateSurvivesCleanReopen() throws Exception {
+        Path dir = Files.createTempDirectory("links-mmap-expiry-");
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+
+        try (MappedShortLinkRepository repo = new MappedShortLinkRepository(dir.toString(), 3)) {
+            for (int i = 0; i < 3; i++) {
+                repo.save(new ShortLink(UUID.randomUUID().toString(), "Exp" + i, "https://e.com", owner, 5, 0,
+                    now.minusSeconds(100), now.minusSeconds(10 * (3 - i)), true));
+            }
+            assertEquals(now.minusSeconds(30), repo.nextExpiry().orElseThrow());
+            assertEquals(2, repo.deleteExpired(now, 2));
+            assertFalse(repo.shortCodeExists("Exp0"));
+            assertFalse(repo.shortCodeExists("Exp1"));
+            assertEquals(now.minusSeconds(10), repo.nextExpiry().orElseThrow());
+        }
+
+        try (MappedShortLinkRepository reopened = new MappedShortLinkRepository(dir.toString(), 3)) {
+            assertEquals(now.minusSeconds(10), reopened.nextExpiry().orElseThrow());
+            assertEquals(1, reopened.size());
+            // ёмкость 3: без сохранённого стека свободных слотов места бы не нашлось
+            reopened.save(link("Live01", owner, 5));
+            reopened.save(link("Live02", owner, 5));
+            assertEquals(3, reopened.size());
+            assertEquals(1, reopened.deleteExpired(now, 10));
+            assertEquals(0, reopened.deleteExpired(now, 10));
+            assertEquals(2, reopened.findByOwner(owner).size());
+        }
+    }
+
+    private static List<ShortLink> allPages(MappedShortLinkRepository repo, UUID owner, int pageSize) {
+        List<ShortLink> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            LinkPage page = repo.findByOwner(owner, cursor, pageSize);
+            assertTrue(page.links().size() <= pageSize);
+            all.addAll(page.links());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return all;
+    }
+
+    private static List<String> codes(List<ShortLink> links) {
+        return links.stream().map(ShortLink::getShortCode).toList();
+    }
+}
@@ -0,0 +1,193 @@
+package repository;
+
+import exception.ShortCodeConflictException;
+import model.ClickResult;
+import model.LinkPage;
+import model.ShortCodeCodec;
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты компактного индекса ссылок в памяти:
+ *  - коды и id, которые не укладываются в примитивы, хранятся строкой и находятся так же
+ *  - представления одной записи делят счётчик, устаревшее представление не воскрешает запись
+ *  - порядок ссылок владельца совпадает с порядком курсора страниц, в том числе у владельца с множеством ссылок
+ *  - таблица упакованных кодов переживает расширение и не удаляет чужую привязку
+ *  - код, занятый ссылкой с другим id, не отбирается у неё
+ */
+public class ShortLinkIndexTest {
+
+    private static ShortLink link(String id, String code, UUID owner, Instant createdAt) {
+        return new ShortLink(id, code, "https://" + code + ".com", owner, 3, 0,
+            createdAt, createdAt.plusSeconds(3600), true);
+    }
+
+    @Test
+    void packedCodesRoundTripAndOtherCodesFallBackToText() throws Exception {
+        for (String code : List.of("a", "aaaaaa", "Z9", "abc123", "9999999999")) {
+            long packed = ShortCodeCodec.pack(code);
+            assertTrue(packed >= 0, code);
+            assertEquals(code, ShortCodeCodec.unpack(packed));
+        }
+        assertNotEquals(ShortCodeCodec.pack("a"), ShortCodeCodec.pack("aa"),
+            "Ведущие «нулевые» символы не должны теряться");
+        assertEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack("with-dash"));
+        assertEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack("elevenchars"));
+
+        ShortLinkIndex index = new ShortLinkIndex();
+        UUID owner = UUID.randomUUID();
+        Instant now = Instant.now();
+        index.put(link("plain-id", "with-dash", owner, now));
+        index.put(link(UUID.randomUUID().toString(), "Kod123", owner, now));
+
+        assertEquals("plain-id", index.findByShortCode("with-dash").getId());
+        assertTrue(index.containsId("plain-id"));
+        assertTrue(index.containsShortCode("Kod123"));
+        assertEquals(2, index.findByOwner(owner).size());
+        assertEquals(now, index.findByShortCode("Kod123").getCreatedAt(), "Время хранится без потери точности");
+
+        assertTrue(index.remove("plain-id"));
+        assertFalse(index.containsShortCode("with-dash"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void viewsShareStateAndStaleViewDoesNotResurrect() throws Exception {
+        ShortLinkIndex index = new ShortLinkIndex();
+        UUID owner = UUID.randomUUID();
+        String id = UUID.randomUUID().toString();
+        index.put(link(id, "Share1", owner, Instant.now()));
+
+        ShortLink first = index.findByShortCode("Share1");
+        ShortLink second = index.findByShortCode("Share1");
+        assertEquals(ClickResult.ALLOWED, first.registerClick());
+        assertEquals(1, second.getClickCount(), "Счётчик живёт в слоте, а не в объекте");
+
+        index.remove(id);
+        index.put(link(UUID.randomUUID().toString(), "Other1", owner, Instant.now()));
+        assertTrue(index.isStale(first));
+        assertEquals(ClickResult.DEACTIVATED, first.registerClick());
+
+        index.put(first);
+        assertFalse(index.containsShortCode("Share1"), "Устаревшее представление не должно воскрешать ссылку");
+        assertEquals(0, index.findByShortCode("Other1").getClickCount());
+    }
+
+    @Test
+    void ownerOrderMatchesCursorOrder() throws Exception {
+        ShortLinkIndex index = new ShortLinkIndex();
+        UUID owner = UUID.randomUUID();
+        Instant base = Instant.now();
+        List<ShortLink> saved = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // много ссылок с одинаковым createdAt — порядок решает id, в том числе не-UUID
+            String id = i % 10 == 0 ? "text-" + i : UUID.randomUUID().toString();
+            ShortLink l = link(id, "Ord" + i, owner, base.plusSeconds(i % 4));
+            saved.add(l);
+            index.put(l);
+        }
+        List<String> expected = saved.stream()
+            .sorted(Comparator.comparing(OwnerCursor::of))
+            .map(ShortLink::getId)
+            .toList();
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            LinkPage page = index.findByOwner(owner, cursor, 7);
+            page.links().forEach(l -> paged.add(l.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, paged);
+        assertEquals(expected, index.findByOwner(owner).stream().map(ShortLink::getId).toList());
+    }
+
+    @Test
+    void longSlotMapSurvivesResizeAndGuardsRemove() {
+        LongSlotMap map = new LongSlotMap();
+        for (int slot = 0; slot < 1000; slot++) {
+            map.put(ShortCodeCodec.pack("c" + slot), slot);
+        }
+        for (int slot = 0; slot < 1000; slot++) {
+            assertEquals(slot, map.get(ShortCodeCodec.pack("c" + slot)));
+        }
+        assertEquals(-1, map.get(ShortCodeCodec.pack("missing")));
+
+        long key = ShortCodeCodec.pack("c7");
+        map.put(key, 5000);
+        map.remove(key, 7);
+        assertEquals(5000, map.get(key), "Удаление по старому слоту не должно снимать новую привязку");
+        map.remove(key, 5000);
+        assertEquals(-1, map.get(key));
+        assertEquals(999, map.size());
+    }
+
+    @Test
+    void codeTakenByAnotherIdIsRejected() throws Exception {
+        ShortLinkIndex index = new ShortLinkIndex();
+        UUID owner = UUID.randomUUID();
+        UUID stranger = UUID.randomUUID();
+        Instant now = Instant.now();
+        String firstId = UUID.randomUUID().toString();
+        index.put(link(firstId, "Same01", owner, now));
+
+        assertThrows(ShortCodeConflictException.class,
+            () -> index.put(link(UUID.randomUUID().toString(), "Same01", stranger, now)));
+        assertEquals(firstId, index.findByShortCode("Same01").getId(), "Чужая ссылка не вытесняется");
+        assertEquals(1, index.size());
+        assertTrue(index.findByOwner(stranger).isEmpty());
+
+        // та же ссылка может сохраниться повторно и сменить код
+        index.put(link(firstId, "Same02", owner, now));
+        assertFalse(index.containsShortCode("Same01"));
+        assertEquals(firstId, index.findByShortCode("Same02").getId());
+    }
+
+    @Test
+    void heavyOwnerSurvivesReplaceAndRemoveInOrder() throws Exception {
+        ShortLinkIndex index = new ShortLinkIndex();
+        UUID owner = UUID.randomUUID();
+        Instant base = Instant.now();
+        List<ShortLink> saved = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ShortLink l = link(UUID.randomUUID().toString(), "H" + i, owner, base.plusMillis(i % 50));
+            saved.add(l);
+            index.put(l);
+        }
+        List<ShortLink> kept = new ArrayList<>();
+        for (int i = 0; i < saved.size(); i++) {
+            ShortLink l = saved.get(i);
+            if (i % 2 == 0) {
+                index.remove(l.getId());
+            } else {
+                // повторное сохранение той же ссылки не должно её дублировать
+                index.put(link(l.getId(), l.getShortCode(), owner, l.getCreatedAt()));
+                kept.add(l);
+            }
+        }
+        List<String> expected = kept.stream()
+            .sorted(Comparator.comparing(OwnerCursor::of))
+            .map(ShortLink::getId)
+            .toList();
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            LinkPage page = index.findByOwner(owner, cursor, 997);
+            page.links().forEach(l -> paged.add(l.getId()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, paged);
+        assertEquals(10_000, index.findByOwner(owner).size());
+    }
+}
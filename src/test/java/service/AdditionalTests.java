@@ -2,6 +2,7 @@ package service;
 
 import config.AppConfig;
 import exception.LinkNotFoundException;
+import model.ClickResult;
 import model.ShortLink;
 import model.UserProfile;
 import org.junit.jupiter.api.BeforeEach;
@@ -135,4 +136,25 @@ public class AdditionalTests {
         assertTrue(link.isExpired(now.plus(Duration.ofHours(3))),
             "После истечения TTL ссылка должна считаться просроченной");
     }
+
+    @Test
+    void registerClickDecidesOutcomeAndDeactivatesAtomically() {
+        Instant now = Instant.now();
+        ShortLink link = new ShortLink(UUID.randomUUID().toString(), "CAS001",
+            "https://cas.com", UUID.randomUUID(), 2, 0,
+            now, now.plus(Duration.ofHours(1)), true);
+
+        assertEquals(ClickResult.ALLOWED, link.registerClick());
+        assertEquals(ClickResult.ALLOWED_LAST, link.registerClick());
+        assertFalse(link.isActive(), "Последний разрешённый переход должен деактивировать ссылку");
+        assertEquals(ClickResult.DEACTIVATED, link.registerClick());
+        assertEquals(2, link.getClickCount(), "Отклонённый переход не увеличивает счётчик");
+
+        // ссылка, загруженная с исчерпанным лимитом, но ещё активная
+        ShortLink stale = new ShortLink(UUID.randomUUID().toString(), "CAS002",
+            "https://cas.com", UUID.randomUUID(), 2, 2,
+            now, now.plus(Duration.ofHours(1)), true);
+        assertEquals(ClickResult.EXHAUSTED, stale.registerClick());
+        assertFalse(stale.isActive());
+    }
 }
@@ -0,0 +1,97 @@
+package service;
+
+import config.AppConfig;
+import exception.ClickLimitExceededException;
+import model.ShortLink;
+import model.UserProfile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClickWriteBehindBufferTest {
+
+    private CountingRepository linkRepo;
+    private ClickWriteBehindBuffer buffer;
+    private UrlShortenerService service;
+    private UUID userId;
+
+    private static class CountingRepository extends InMemoryShortLinkRepository {
+        int saves;
+
+        @Override
+        public void save(ShortLink link) {
+            saves++;
+            super.save(link);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        linkRepo = new CountingRepository();
+        InMemoryUserRepository userRepo = new InMemoryUserRepository();
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "src/db/test-links.json", "src/db/test-users.json", "clck.test");
+        // без start(): сброс вызывается в тестах явно
+        buffer = new ClickWriteBehindBuffer(linkRepo, 60_000, 1000);
+        service = new UrlShortenerService(linkRepo, config, userRepo, buffer);
+        userId = UUID.randomUUID();
+        userRepo.save(new UserProfile(userId, 3, 24));
+    }
+
+    @Test
+    void clicksAreKeptInMemoryUntilFlush() throws Exception {
+        ShortLink link = service.createShortLink(userId, "https://example.com");
+        linkRepo.saves = 0;
+
+        service.resolveShortLink(link.getShortCode());
+        service.resolveShortLink(link.getShortCode());
+
+        assertEquals(0, linkRepo.saves, "Клики не должны сохраняться на каждый переход");
+        assertEquals(1, buffer.pendingCount());
+        assertEquals(1, buffer.flush());
+        assertEquals(1, linkRepo.saves);
+        assertEquals(2, linkRepo.findByShortCode(link.getShortCode()).orElseThrow().getClickCount());
+        assertEquals(0, buffer.flush(), "После сброса буфер пуст");
+    }
+
+    @Test
+    void deactivationIsPersistedImmediately() throws Exception {
+        ShortLink link = service.createShortLink(userId, "https://example.com");
+        linkRepo.saves = 0;
+
+        service.resolveShortLink(link.getShortCode());
+        service.resolveShortLink(link.getShortCode());
+        service.resolveShortLink(link.getShortCode());
+
+        assertEquals(1, linkRepo.saves, "Последний разрешённый переход сохраняется сразу");
+        assertEquals(0, buffer.pendingCount());
+        assertThrows(ClickLimitExceededException.class, () -> service.resolveShortLink(link.getShortCode()));
+    }
+
+    @Test
+    void flushDoesNotResurrectDeletedLink() throws Exception {
+        ShortLink link = service.createShortLink(userId, "https://example.com");
+        service.resolveShortLink(link.getShortCode());
+
+        service.deleteUserLink(userId, link.getShortCode());
+
+        assertEquals(0, buffer.flush());
+        assertTrue(linkRepo.findByShortCode(link.getShortCode()).isEmpty());
+    }
+
+    @Test
+    void stopFlushesPendingClicks() throws Exception {
+        ShortLink link = service.createShortLink(userId, "https://example.com");
+        buffer.start();
+        service.resolveShortLink(link.getShortCode());
+
+        buffer.stop();
+
+        assertEquals(0, buffer.pendingCount());
+        assertEquals(1, linkRepo.findByShortCode(link.getShortCode()).orElseThrow().getClickCount());
+    }
+}
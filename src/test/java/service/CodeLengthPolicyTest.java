@@ -0,0 +1,80 @@
+package service;
+
+import config.AppConfig;
+import metrics.ShortenerMetrics;
+import model.CodeSpaceStats;
+import model.ShortCodeCodec;
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты роста длины кодов:
+ *  - при заполнении коротких кодов новые коды становятся длиннее, а метрики показывают заполненность
+ *  - фиксированная длина не растёт, сколько бы ни было повторов
+ *  - длина, заполненность по длинам и счётчики попыток выгружаются вместе с остальными метриками
+ */
+public class CodeLengthPolicyTest {
+
+    private static InMemoryShortLinkRepository repositoryWithSingleCharCodes(int count) {
+        InMemoryShortLinkRepository repo = new InMemoryShortLinkRepository();
+        Instant now = Instant.now();
+        for (int i = 0; i < count; i++) {
+            String code = String.valueOf(ShortCodeCodec.ALPHABET.charAt(i));
+            repo.save(new ShortLink(UUID.randomUUID().toString(), code, "https://" + code + ".com",
+                    UUID.randomUUID(), 5, 0, now, now.plusSeconds(3600), true));
+        }
+        return repo;
+    }
+
+    @Test
+    void lengthGrowsWhenShorterCodesFillUp() throws Exception {
+        // 31 из 62 кодов длины 1 заняты: каждая вторая попытка — повтор
+        InMemoryShortLinkRepository repo = repositoryWithSingleCharCodes(31);
+        CodeLengthPolicy policy = new CodeLengthPolicy(1, 3, 0.25);
+        RandomShortCodeGenerator generator = new RandomShortCodeGenerator(policy, repo);
+
+        for (int i = 0; i < 3 * CodeLengthPolicy.WINDOW; i++) {
+            assertFalse(repo.shortCodeExists(generator.nextCode()));
+        }
+
+        CodeSpaceStats stats = policy.stats();
+        assertEquals(2, stats.currentLength());
+        assertEquals(0.5, stats.occupancy().get(1), 0.1);
+        assertTrue(stats.retryRate() > 0 && stats.retryRate() < 0.5, "Повторы были только на длине 1");
+        assertTrue(repo.findByShortCode("a").isPresent(), "Существующие коды не меняются");
+    }
+
+    @Test
+    void fixedLengthNeverGrows() throws Exception {
+        InMemoryShortLinkRepository repo = repositoryWithSingleCharCodes(55);
+        CodeLengthPolicy policy = CodeLengthPolicy.fixed(1);
+        RandomShortCodeGenerator generator = new RandomShortCodeGenerator(policy, repo);
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(1, generator.nextCode().length());
+        }
+        assertEquals(1, policy.stats().currentLength());
+        assertTrue(policy.stats().collisions() > 0);
+    }
+
+    @Test
+    void codeSpaceIsExportedWithOtherMetrics() throws Exception {
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "unused-links.json", "unused-users.json", "clck.test");
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        ShortCodeGenerators.create(config, new InMemoryShortLinkRepository(), metrics);
+
+        String text = metrics.registry().toPrometheus();
+        assertTrue(text.contains("shortener_code_length 6.0\n"), text);
+        assertTrue(text.contains("shortener_code_attempts_total 0\n"), text);
+        assertTrue(text.contains("shortener_code_collisions_total 0\n"), text);
+        assertTrue(text.contains("shortener_code_occupancy{length=\"6\"} NaN\n"), text);
+        assertTrue(text.contains("shortener_code_occupancy{length=\"10\"} NaN\n"), text);
+    }
+}
@@ -1,9 +1,18 @@
 package service;
 
 import config.AppConfig;
+import config.CleanupConfig;
+import metrics.ShortenerMetrics;
+import model.CleanupStats;
+import model.ShortLink;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,8 +40,9 @@ public class ExpirationCleanupServiceTest {
         }
 
         @Override
-        public void cleanupExpiredLinks() {
+        public int cleanupExpiredLinks(int maxBatch) {
             cleanupCalls++;
+            return 0;
         }
 
         public int getCleanupCalls() {
@@ -40,6 +50,131 @@ public class ExpirationCleanupServiceTest {
         }
     }
 
+    /**
+     * Хранилище в памяти с пакетным удалением по сроку, как у файловых хранилищ с индексом.
+     */
+    static class ExpiryAwareRepository extends InMemoryShortLinkRepository {
+        int batches = 0;
+        int flushes = 0;
+
+        @Override
+        public synchronized int deleteExpired(Instant now, int limit) {
+            batches++;
+            List<ShortLink> expired = findByOwner(OWNER).stream()
+                    .filter(l -> l.isExpired(now))
+                    .sorted(Comparator.comparing(ShortLink::getExpiresAt))
+                    .limit(limit)
+                    .toList();
+            expired.forEach(l -> deleteById(l.getId()));
+            return expired.size();
+        }
+
+        @Override
+        public synchronized void flushExpiredDeletes() {
+            flushes++;
+        }
+
+        @Override
+        public synchronized Optional<Instant> nextExpiry() {
+            return findByOwner(OWNER).stream().map(ShortLink::getExpiresAt).min(Comparator.naturalOrder());
+        }
+
+        @Override
+        public synchronized void save(ShortLink link) {
+            super.save(link);
+        }
+    }
+
+    private static final UUID OWNER = UUID.randomUUID();
+
+    private static ShortLink linkExpiringAt(Instant expiresAt) {
+        return new ShortLink(UUID.randomUUID().toString(), UUID.randomUUID().toString().substring(0, 8),
+                "https://example.com", OWNER, 5, 0, expiresAt.minusSeconds(3600), expiresAt, true);
+    }
+
+    private static UrlShortenerService serviceOver(ExpiryAwareRepository repo) {
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "src/db/test-links.json", "src/db/test-users.json", "clck.test");
+        return new UrlShortenerService(repo, config, new InMemoryUserRepository());
+    }
+
+    @Test
+    void tickDeletesInBatchesAndSchedulesNextExpiry() throws Exception {
+        ExpiryAwareRepository repo = new ExpiryAwareRepository();
+        for (int i = 0; i < 25; i++) {
+            repo.save(linkExpiringAt(Instant.now().minusSeconds(10 + i)));
+        }
+        repo.save(linkExpiringAt(Instant.now().plusSeconds(5)));
+        ExpirationCleanupService cleanup = new ExpirationCleanupService(serviceOver(repo),
+                new CleanupConfig(60_000, 10, 10_000));
+
+        long wait = cleanup.tick();
+
+        assertEquals(1, repo.size(), "Должна остаться только живая ссылка");
+        assertEquals(3, repo.batches, "25 ссылок при пачке 10 — три вызова");
+        assertEquals(1, repo.flushes, "Отложенные удаления записываются один раз за проход");
+        assertTrue(wait > 0 && wait <= 5001, "Следующий проход — к сроку живой ссылки, а не через интервал");
+        CleanupStats stats = cleanup.stats();
+        assertEquals(25, stats.removedTotal());
+        assertEquals(Duration.ZERO, stats.overdueLag());
+    }
+
+    @Test
+    void tickStopsWhenBudgetIsSpentAndReportsLag() throws Exception {
+        ExpiryAwareRepository repo = new ExpiryAwareRepository() {
+            @Override
+            public synchronized int deleteExpired(Instant now, int limit) {
+                int removed = super.deleteExpired(now, limit);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return removed;
+            }
+        };
+        for (int i = 0; i < 10; i++) {
+            repo.save(linkExpiringAt(Instant.now().minusSeconds(60)));
+        }
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        ExpirationCleanupService cleanup = new ExpirationCleanupService(serviceOver(repo),
+                new CleanupConfig(60_000, 1, 1), metrics);
+
+        long wait = cleanup.tick();
+
+        assertEquals(1, wait, "При невыполненной работе следующий проход — через бюджет");
+        assertEquals(9, repo.size(), "За один проход с исчерпанным бюджетом — одна пачка");
+        assertTrue(cleanup.stats().overdueLag().getSeconds() >= 59);
+        assertTrue(cleanup.stats().maxBatchDuration().toMillis() >= 5);
+
+        // отставание и пачки видны и в выгрузке метрик, без вызова stats()
+        String dump = metrics.registry().toPrometheus();
+        double lag = Double.parseDouble(dump.lines()
+                .filter(line -> line.startsWith("shortener_cleanup_lag_seconds "))
+                .findFirst().orElseThrow().substring("shortener_cleanup_lag_seconds ".length()));
+        assertTrue(lag >= 59, dump);
+        assertTrue(dump.contains("shortener_cleanup_max_batch_seconds "), dump);
+    }
+
+    @Test
+    void linkIsRemovedSoonAfterItExpires() throws Exception {
+        ExpiryAwareRepository repo = new ExpiryAwareRepository();
+        repo.save(linkExpiringAt(Instant.now().plusMillis(200)));
+        ExpirationCleanupService cleanup = new ExpirationCleanupService(serviceOver(repo),
+                new CleanupConfig(60_000, 100, 20));
+
+        cleanup.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (repo.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            cleanup.stop();
+        }
+        assertEquals(0, repo.size(), "Ссылка должна удалиться к сроку, а не через интервал в минуту");
+    }
+
     @Test
     void cleanupServiceCallsCleanupPeriodically() throws InterruptedException {
         FakeUrlService fakeService = new FakeUrlService();
@@ -0,0 +1,105 @@
+package service;
+
+import config.AppConfig;
+import config.CleanupConfig;
+import exception.LinkNotFoundException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import model.ShortLink;
+import model.UserProfile;
+import org.junit.jupiter.api.Test;
+import repository.FileJsonShortLinkRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты событий Flight Recorder:
+ *  - без явного включения события сервиса не пишутся
+ *  - включённые с нулевым порогом события несут код, исход, число записей и объём записи
+ */
+public class FlightRecorderEventsTest {
+
+    private static final List<String> EVENTS = List.of("shortener.Resolve", "shortener.CreateLink",
+            "shortener.StoreFlush", "shortener.StoreLoad", "shortener.Cleanup");
+
+    private static List<RecordedEvent> record(boolean enable, Path dir) throws Exception {
+        Path dump = dir.resolve(enable ? "enabled.jfr" : "default.jfr");
+        try (Recording recording = new Recording()) {
+            if (enable) {
+                for (String name : EVENTS) {
+                    recording.enable(name).withThreshold(Duration.ZERO);
+                }
+            }
+            recording.start();
+            exercise(dir.resolve(enable ? "enabled-links.json" : "default-links.json"));
+            recording.stop();
+            recording.dump(dump);
+        }
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().startsWith("shortener."))
+                .toList();
+    }
+
+    private static void exercise(Path linksFile) throws Exception {
+        FileJsonShortLinkRepository repository = new FileJsonShortLinkRepository(linksFile.toString());
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                linksFile.toString(), "src/db/test-users.json", "clck.test");
+        UrlShortenerService service = new UrlShortenerService(repository, config, users);
+        UUID userId = UUID.randomUUID();
+        users.save(new UserProfile(userId, 5, 24));
+
+        ShortLink link = service.createShortLink(userId, "https://example.com");
+        service.resolveShortLink(link.getShortCode());
+        assertThrows(LinkNotFoundException.class, () -> service.resolveShortLink("Nope01"));
+
+        Instant past = Instant.now().minusSeconds(60);
+        repository.save(new ShortLink(UUID.randomUUID().toString(), "Old001", "https://old.com", userId,
+                5, 0, past.minusSeconds(60), past, true));
+        new ExpirationCleanupService(service, new CleanupConfig(60_000, 10, 20)).tick();
+    }
+
+    @Test
+    void eventsAreDisabledByDefault() throws Exception {
+        assertEquals(List.of(), record(false, Files.createTempDirectory("jfr-off-")));
+    }
+
+    @Test
+    void enabledEventsCarryDetails() throws Exception {
+        List<RecordedEvent> events = record(true, Files.createTempDirectory("jfr-on-"));
+
+        List<RecordedEvent> resolves = byName(events, "shortener.Resolve");
+        assertEquals(2, resolves.size());
+        assertEquals("ok", resolves.get(0).getString("outcome"));
+        assertEquals("Nope01", resolves.get(1).getString("shortCode"));
+        assertEquals("not_found", resolves.get(1).getString("outcome"));
+
+        assertEquals(1, byName(events, "shortener.CreateLink").size());
+        assertEquals(1, byName(events, "shortener.StoreLoad").size());
+
+        List<RecordedEvent> flushes = byName(events, "shortener.StoreFlush");
+        assertFalse(flushes.isEmpty());
+        RecordedEvent first = flushes.get(0);
+        assertEquals("json", first.getString("store"));
+        assertEquals(1, first.getInt("records"));
+        assertTrue(first.getLong("bytes") > 0);
+        assertTrue(first.getDuration("lockWait").toNanos() >= 0);
+
+        RecordedEvent cleanup = byName(events, "shortener.Cleanup").get(0);
+        assertEquals(1, cleanup.getInt("removed"));
+        assertEquals(1, cleanup.getInt("batches"));
+        assertFalse(cleanup.getBoolean("backlog"));
+    }
+
+    private static List<RecordedEvent> byName(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+}
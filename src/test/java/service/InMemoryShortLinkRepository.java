@@ -5,6 +5,7 @@ import repository.ShortLinkRepository;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class InMemoryShortLinkRepository implements ShortLinkRepository {
@@ -50,6 +51,11 @@ public class InMemoryShortLinkRepository implements ShortLinkRepository {
                 .anyMatch(l -> l.getShortCode().equals(shortCode));
     }
 
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        storage.values().forEach(l -> action.accept(l.getShortCode()));
+    }
+
     public int size() {
         return storage.size();
     }
@@ -0,0 +1,161 @@
+package service;
+
+import config.AppConfig;
+import exception.ClickLimitExceededException;
+import exception.LinkExpiredException;
+import exception.LinkNotFoundException;
+import metrics.ShortenerMetrics;
+import model.ResolveOutcome;
+import model.ShortLink;
+import model.UserProfile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import repository.FileJsonShortLinkRepository;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты кэша мёртвых кодов:
+ *  - повторный переход по отсутствующему, исчерпанному или просроченному коду не идёт в хранилище
+ *  - код, снова выданный новой ссылке, перестаёт считаться мёртвым, в том числе если выдан во время поиска
+ *  - просроченная ссылка удаляется не в потоке запроса, а накопленные удаления пишутся на диск одной записью
+ *  - запись кэша устаревает по времени
+ */
+public class NegativeLookupCacheTest {
+
+    private CountingRepository linkRepo;
+    private ExpiredLinkDeleter deleter;
+    private UrlShortenerService service;
+    private UUID userId;
+    private final FixedCodeGenerator codes = new FixedCodeGenerator();
+
+    private static class CountingRepository extends InMemoryShortLinkRepository {
+        int lookups;
+
+        @Override
+        public Optional<ShortLink> findByShortCode(String shortCode) {
+            lookups++;
+            return super.findByShortCode(shortCode);
+        }
+    }
+
+    // Выдаёт заранее заданный код, чтобы проверить повторную выдачу
+    private static class FixedCodeGenerator implements ShortCodeGenerator {
+        String next;
+
+        @Override
+        public String nextCode() {
+            return next;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        linkRepo = new CountingRepository();
+        InMemoryUserRepository userRepo = new InMemoryUserRepository();
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "src/db/test-links.json", "src/db/test-users.json", "clck.test");
+        // без start(): удаление вызывается в тестах явно
+        deleter = new ExpiredLinkDeleter(linkRepo);
+        service = new UrlShortenerService(linkRepo, config, userRepo, null, codes, deleter);
+        userId = UUID.randomUUID();
+        userRepo.save(new UserProfile(userId, 1, 24));
+    }
+
+    @Test
+    void deadCodesAreAnsweredWithoutRepository() throws Exception {
+        assertThrows(LinkNotFoundException.class, () -> service.resolveShortLink("Ghost1"));
+        assertThrows(LinkNotFoundException.class, () -> service.resolveShortLink("Ghost1"));
+        assertEquals(1, linkRepo.lookups);
+
+        codes.next = "Once01";
+        service.createShortLink(userId, "https://example.com");
+        service.resolveShortLink("Once01");
+        linkRepo.lookups = 0;
+        assertThrows(ClickLimitExceededException.class, () -> service.resolveShortLink("Once01"));
+        assertEquals(0, linkRepo.lookups, "Последний переход сразу запоминает код как исчерпанный");
+    }
+
+    @Test
+    void reissuedCodeIsNoLongerDead() throws Exception {
+        assertThrows(LinkNotFoundException.class, () -> service.resolveShortLink("Reuse1"));
+
+        codes.next = "Reuse1";
+        service.createShortLink(userId, "https://example.com");
+        assertEquals("https://example.com", service.resolveShortLink("Reuse1"));
+    }
+
+    @Test
+    void expiredLinkIsDeletedOffRequestThread() throws Exception {
+        Instant past = Instant.now().minusSeconds(60);
+        linkRepo.save(new ShortLink(UUID.randomUUID().toString(), "Old001", "https://old.com", userId,
+                5, 0, past.minusSeconds(3600), past, true));
+
+        assertThrows(LinkExpiredException.class, () -> service.resolveShortLink("Old001"));
+        assertTrue(linkRepo.shortCodeExists("Old001"), "Запрос не удаляет ссылку сам");
+        assertEquals(1, deleter.pendingCount());
+        assertThrows(LinkExpiredException.class, () -> service.resolveShortLink("Old001"));
+
+        assertEquals(1, deleter.deletePending());
+        assertFalse(linkRepo.shortCodeExists("Old001"));
+    }
+
+    @Test
+    void entriesExpireAfterTtl() throws Exception {
+        NegativeLookupCache cache = new NegativeLookupCache(30, 10);
+        cache.put("Dead01", ResolveOutcome.EXPIRED, cache.version());
+        assertEquals(ResolveOutcome.EXPIRED, cache.get("Dead01"));
+        Thread.sleep(60);
+        assertNull(cache.get("Dead01"));
+
+        for (int i = 0; i < 50; i++) {
+            cache.put("Bot" + i, ResolveOutcome.NOT_FOUND, cache.version());
+        }
+        assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    void staleMissIsNotRememberedAfterInvalidate() {
+        NegativeLookupCache cache = new NegativeLookupCache(60_000, 10);
+        // поиск начался до того, как код выдали новой ссылке
+        long version = cache.version();
+        cache.invalidate("Race01");
+        cache.put("Race01", ResolveOutcome.NOT_FOUND, version);
+        assertNull(cache.get("Race01"));
+
+        cache.put("Race01", ResolveOutcome.NOT_FOUND, cache.version());
+        assertEquals(ResolveOutcome.NOT_FOUND, cache.get("Race01"));
+    }
+
+    @Test
+    void pendingDeletesShareOneFileRewrite() throws Exception {
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        FileJsonShortLinkRepository store = new FileJsonShortLinkRepository(
+            Files.createTempFile("links-deleter-", ".json").toString(), metrics);
+        ExpiredLinkDeleter fileDeleter = new ExpiredLinkDeleter(store);
+        Instant past = Instant.now().minusSeconds(60);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ShortLink link = new ShortLink(UUID.randomUUID().toString(), "Gone0" + i, "https://gone.com", userId, 5, 0,
+                past.minusSeconds(3600), past, true);
+            store.save(link);
+            ids.add(link.getId());
+        }
+        ids.forEach(fileDeleter::schedule);
+        fileDeleter.schedule(UUID.randomUUID().toString());
+
+        assertEquals(6, fileDeleter.deletePending());
+        assertFalse(store.shortCodeExists("Gone03"));
+        // пять сохранений и одна запись на всю очередь удалений
+        assertTrue(metrics.registry().toPrometheus().contains("shortener_store_flush_seconds_count 6\n"));
+        assertEquals(0, fileDeleter.deletePending());
+    }
+}
@@ -0,0 +1,119 @@
+package service;
+
+import config.AppConfig;
+import model.ShortCodeCodec;
+import model.ShortLink;
+import model.UserProfile;
+import org.junit.jupiter.api.Test;
+import repository.FileJsonShortLinkRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты генерации кодов из счётчика:
+ *  - перестановка покрывает все коды заданной длины без повторов, затем коды заканчиваются
+ *  - после перезапуска выдача продолжается за сохранённой границей блока
+ *  - разные секреты дают разные последовательности кодов
+ *  - код, уже занятый ссылкой другой стратегии, пропускается, а не отбирается у неё
+ *  - пачка кодов берёт номера одним диапазоном в том же порядке, что и коды по одному
+ */
+public class SequenceShortCodeGeneratorTest {
+
+    @Test
+    void coversWholeKeyspaceWithoutRepeats() throws Exception {
+        Path file = Files.createTempDirectory("codes-all-").resolve("shortcode.seq");
+        SequenceShortCodeGenerator generator = new SequenceShortCodeGenerator(2, "секрет", file, 100);
+
+        int keyspace = ShortCodeCodec.ALPHABET.length() * ShortCodeCodec.ALPHABET.length();
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < keyspace; i++) {
+            String code = generator.nextCode();
+            assertEquals(2, code.length());
+            assertNotEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack(code), code);
+            assertTrue(codes.add(code), "Код повторился: " + code);
+        }
+        assertThrows(IllegalStateException.class, generator::nextCode);
+    }
+
+    @Test
+    void restartContinuesAfterReservedBlock() throws Exception {
+        Path file = Files.createTempDirectory("codes-restart-").resolve("shortcode.seq");
+        Set<String> codes = new HashSet<>();
+
+        SequenceShortCodeGenerator first = new SequenceShortCodeGenerator(6, "секрет", file, 10);
+        for (int i = 0; i < 15; i++) {
+            codes.add(first.nextCode());
+        }
+        assertEquals("20", Files.readString(file), "Зарезервированы два блока по 10 номеров");
+
+        // процесс перезапущен: остаток второго блока пропускается
+        SequenceShortCodeGenerator second = new SequenceShortCodeGenerator(6, "секрет", file, 10);
+        for (int i = 0; i < 15; i++) {
+            assertTrue(codes.add(second.nextCode()), "Коды после перезапуска не должны повторяться");
+        }
+        assertEquals("40", Files.readString(file));
+    }
+
+    @Test
+    void secretChangesSequence() throws Exception {
+        Path dir = Files.createTempDirectory("codes-secret-");
+        SequenceShortCodeGenerator a = new SequenceShortCodeGenerator(6, "первый", dir.resolve("a.seq"), 100);
+        SequenceShortCodeGenerator b = new SequenceShortCodeGenerator(6, "второй", dir.resolve("b.seq"), 100);
+
+        int same = 0;
+        for (int i = 0; i < 20; i++) {
+            if (a.nextCode().equals(b.nextCode())) {
+                same++;
+            }
+        }
+        assertTrue(same < 2, "Последовательности с разными секретами должны различаться");
+    }
+
+    @Test
+    void batchTakesOneRangeInSequenceOrder() throws Exception {
+        Path dir = Files.createTempDirectory("codes-batch-");
+        SequenceShortCodeGenerator batched = new SequenceShortCodeGenerator(6, "секрет", dir.resolve("a.seq"), 10);
+        SequenceShortCodeGenerator single = new SequenceShortCodeGenerator(6, "секрет", dir.resolve("b.seq"), 10);
+
+        List<String> codes = batched.nextCodes(25);
+        assertEquals("25", Files.readString(dir.resolve("a.seq")), "Пачка больше блока резервирует ровно себя");
+        for (String code : codes) {
+            assertEquals(single.nextCode(), code);
+        }
+        assertEquals(single.nextCode(), batched.nextCode());
+        assertEquals("35", Files.readString(dir.resolve("a.seq")));
+    }
+
+    @Test
+    void codeLeftByAnotherStrategyIsSkippedNotReused() throws Exception {
+        Path dir = Files.createTempDirectory("codes-migrate-");
+        String firstCode = new SequenceShortCodeGenerator(6, "секрет", dir.resolve("probe.seq"), 10).nextCode();
+        FileJsonShortLinkRepository store = new FileJsonShortLinkRepository(dir.resolve("links.json").toString());
+        Instant now = Instant.now();
+        // ссылка, созданная раньше случайной стратегией, с тем же кодом, что выдаст счётчик
+        ShortLink old = new ShortLink(UUID.randomUUID().toString(), firstCode, "https://old.example",
+                UUID.randomUUID(), 5, 0, now, now.plusSeconds(3600), true);
+        store.save(old);
+
+        InMemoryUserRepository users = new InMemoryUserRepository();
+        UserProfile user = new UserProfile(UUID.randomUUID(), 5, 24);
+        users.save(user);
+        AppConfig config = new AppConfig(Duration.ofHours(24), 6, 1, 1000, 10,
+                "unused-links.json", "unused-users.json", "clck.test");
+        UrlShortenerService service = new UrlShortenerService(store, config, users, null,
+                new SequenceShortCodeGenerator(6, "секрет", dir.resolve("shortcode.seq"), 10));
+
+        ShortLink created = service.createShortLink(user.getId(), "https://new.example");
+        assertNotEquals(firstCode, created.getShortCode());
+        assertEquals(old.getId(), store.findByShortCode(firstCode).orElseThrow().getId());
+    }
+}
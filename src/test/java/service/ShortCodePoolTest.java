@@ -0,0 +1,71 @@
+package service;
+
+import model.ShortCodeCodec;
+import model.ShortLink;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тесты запаса коротких кодов:
+ *  - запас доливается до размера только свободными и неповторяющимися кодами
+ *  - почти заполненное пространство кодов не зацикливает доливку
+ *  - пустой запас не мешает созданию кода
+ */
+public class ShortCodePoolTest {
+
+    private static void occupy(InMemoryShortLinkRepository repo, String code) {
+        Instant now = Instant.now();
+        repo.save(new ShortLink(UUID.randomUUID().toString(), code, "https://" + code + ".com",
+                UUID.randomUUID(), 5, 0, now, now.plusSeconds(3600), true));
+    }
+
+    @Test
+    void refillAddsOnlyFreeDistinctCodes() throws Exception {
+        InMemoryShortLinkRepository repo = new InMemoryShortLinkRepository();
+        for (char c = 'a'; c <= 'z'; c++) {
+            occupy(repo, String.valueOf(c));
+        }
+        // без start(): доливка вызывается в тесте явно
+        ShortCodePool pool = new ShortCodePool(repo, 1, 20, 5);
+        pool.refill();
+        assertEquals(20, pool.available());
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            String code = pool.nextCode();
+            assertFalse(repo.shortCodeExists(code), "Занятый код не должен попасть в запас: " + code);
+            assertTrue(codes.add(code), "Код повторился: " + code);
+        }
+        assertEquals(0, pool.available());
+        assertEquals(0, pool.misses());
+    }
+
+    @Test
+    void refillGivesUpWhenKeyspaceIsAlmostFull() throws Exception {
+        InMemoryShortLinkRepository repo = new InMemoryShortLinkRepository();
+        String alphabet = ShortCodeCodec.ALPHABET;
+        for (int i = 1; i < alphabet.length(); i++) {
+            occupy(repo, String.valueOf(alphabet.charAt(i)));
+        }
+        ShortCodePool pool = new ShortCodePool(repo, 1, 10, 2);
+
+        pool.refill();
+        assertTrue(pool.available() <= 1, "Свободен единственный код");
+    }
+
+    @Test
+    void emptyPoolFallsBackToInlineGeneration() throws Exception {
+        InMemoryShortLinkRepository repo = new InMemoryShortLinkRepository();
+        ShortCodePool pool = new ShortCodePool(repo, 6, 10, 2);
+
+        String code = pool.nextCode();
+        assertEquals(6, code.length());
+        assertEquals(1, pool.misses());
+    }
+}
@@ -2,15 +2,29 @@ package service;
 
 import config.AppConfig;
 import exception.*;
+import metrics.ShortenerMetrics;
+import model.LinkCreationResult;
+import model.ResolveOutcome;
+import model.ResolveResult;
 import model.ShortLink;
 import model.UserProfile;
+import repository.FileJsonShortLinkRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Files;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -73,6 +87,39 @@ public class UrlShortenerServiceTest {
                 () -> service.resolveShortLink(code));
     }
 
+    @Test
+    void concurrentRedirectsNeverExceedClickLimit() throws Exception {
+        UserProfile u = createUser(100, 24);
+        ShortLink link = service.createShortLink(u.getId(), "https://viral.com");
+
+        int threads = 8;
+        int perThread = 50;
+        AtomicInteger allowed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try {
+                        service.resolveShortLink(link.getShortCode());
+                        allowed.incrementAndGet();
+                    } catch (ClickLimitExceededException e) {
+                        rejected.incrementAndGet();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, allowed.get(), "Ровно maxClicks переходов должны быть разрешены");
+        assertEquals(threads * perThread - 100, rejected.get());
+        assertEquals(100, link.getClickCount(), "Клики не должны теряться и превышать лимит");
+        assertFalse(link.isActive());
+    }
+
     @Test
     void expiredLinkThrowsLinkExpiredException() throws Exception {
         UserProfile u = createUser(10, 1); // 1 час
@@ -118,6 +165,22 @@ public class UrlShortenerServiceTest {
         assertEquals(1, linksU2.size());
     }
 
+    @Test
+    void userLinksArePagedWithContinuationCursor() throws Exception {
+        UserProfile u = createUser(10, 24);
+        for (int i = 0; i < 5; i++) {
+            service.createShortLink(u.getId(), "https://page" + i + ".com");
+        }
+
+        var first = service.getUserLinks(u.getId(), null, 3);
+        assertEquals(3, first.links().size());
+        assertTrue(first.hasNext());
+
+        var second = service.getUserLinks(u.getId(), first.nextCursor(), 3);
+        assertEquals(2, second.links().size());
+        assertFalse(second.hasNext());
+    }
+
     @Test
     void userCannotDeleteOtherUsersLink() throws Exception {
         UserProfile owner = createUser(10, 24);
@@ -147,4 +210,126 @@ public class UrlShortenerServiceTest {
                 () -> service.createShortLink(u.getId(), "https://exa mple.com"),
                 "URL с некорректным синтаксисом должен быть отклонён");
     }
+
+    @Test
+    void batchCreatesValidLinksAndReportsInvalidOnes() throws Exception {
+        UserProfile u = createUser(3, 24);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            urls.add(i % 100 == 7 ? "ftp://bad.example/" + i : "https://example.com/" + i);
+        }
+        urls.add("");
+
+        List<LinkCreationResult> results = service.createShortLinks(u.getId(), urls);
+
+        assertEquals(urls.size(), results.size());
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            LinkCreationResult result = results.get(i);
+            assertEquals(urls.get(i), result.originalUrl(), "Порядок результатов совпадает с порядком URL");
+            boolean valid = i < 2000 && i % 100 != 7;
+            assertEquals(valid, result.isCreated(), urls.get(i));
+            if (valid) {
+                assertTrue(codes.add(result.link().getShortCode()), "Коды в пачке не повторяются");
+                assertEquals(3, result.link().getMaxClicks());
+            } else {
+                assertNotNull(result.error());
+            }
+        }
+        assertEquals(1980, linkRepo.size());
+        assertEquals("https://example.com/42",
+                service.resolveShortLink(results.get(42).link().getShortCode()));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.createShortLinks(UUID.randomUUID(), List.of("https://example.com")));
+    }
+
+    @Test
+    void batchResolveReportsPerCodeOutcomesAndPeekDoesNotCountClicks() throws Exception {
+        UserProfile u = createUser(2, 24);
+        String live = service.createShortLink(u.getId(), "https://example.com/live").getShortCode();
+        Instant past = Instant.now().minusSeconds(60);
+        linkRepo.save(new ShortLink(UUID.randomUUID().toString(), "Old001", "https://example.com/old",
+                u.getId(), 2, 0, past.minusSeconds(3600), past, true));
+
+        List<ResolveResult> peeked = service.resolveShortLinks(List.of(live, "Nope01", "Old001", live), true);
+        assertEquals(List.of(
+                ResolveResult.resolved(live, "https://example.com/live"),
+                ResolveResult.rejected("Nope01", ResolveOutcome.NOT_FOUND),
+                ResolveResult.rejected("Old001", ResolveOutcome.EXPIRED),
+                ResolveResult.resolved(live, "https://example.com/live")), peeked);
+        assertEquals(0, linkRepo.findByShortCode(live).orElseThrow().getClickCount(), "Просмотр не считает клики");
+        assertTrue(linkRepo.findByShortCode("Old001").isPresent(), "Просмотр не удаляет просроченные ссылки");
+
+        List<ResolveResult> clicked = service.resolveShortLinks(List.of(live, live, live, "Old001"), false);
+        assertTrue(clicked.get(0).isResolved());
+        assertTrue(clicked.get(1).isResolved());
+        assertEquals(ResolveOutcome.DEACTIVATED, clicked.get(2).outcome(), "Третий переход сверх лимита 2");
+        assertEquals(ResolveOutcome.EXPIRED, clicked.get(3).outcome());
+        assertTrue(linkRepo.findByShortCode("Old001").isEmpty());
+
+        ShortLink stored = linkRepo.findByShortCode(live).orElseThrow();
+        assertEquals(2, stored.getClickCount());
+        assertFalse(stored.isActive());
+        assertEquals(ResolveOutcome.DEACTIVATED,
+                service.resolveShortLinks(List.of(live), true).get(0).outcome());
+    }
+
+    @Test
+    void codeTakenBetweenGenerationAndSaveIsReplacedNotStolen() throws Exception {
+        UserProfile u = createUser(5, 24);
+        FileJsonShortLinkRepository store = new FileJsonShortLinkRepository(
+                Files.createTempFile("links-conflict-", ".json").toString());
+        Instant now = Instant.now();
+        ShortLink taken = new ShortLink(UUID.randomUUID().toString(), "Dup001", "https://other.example",
+                UUID.randomUUID(), 5, 0, now, now.plusSeconds(3600), true);
+        store.save(taken);
+        // генератор «не знает» о занятом коде — как при двух параллельных созданиях
+        Iterator<String> codes = List.of("Dup001", "Free01", "Dup001", "Free02", "Free03").iterator();
+        UrlShortenerService racing = new UrlShortenerService(store, config, userRepo, null, codes::next);
+
+        ShortLink created = racing.createShortLink(u.getId(), "https://example.com/one");
+        assertEquals("Free01", created.getShortCode());
+
+        List<LinkCreationResult> batch = racing.createShortLinks(u.getId(),
+                List.of("https://example.com/two", "https://example.com/three"));
+        assertEquals(Set.of("Free02", "Free03"),
+                Set.of(batch.get(0).link().getShortCode(), batch.get(1).link().getShortCode()));
+        assertEquals("https://example.com/two", store.findByShortCode(batch.get(0).link().getShortCode())
+                .orElseThrow().getOriginalUrl());
+        assertEquals(taken.getId(), store.findByShortCode("Dup001").orElseThrow().getId(),
+                "Чужая ссылка с тем же кодом остаётся на месте");
+        assertEquals(3, store.findByOwner(u.getId()).size());
+    }
+
+    @Test
+    void batchConflictRenamesOnlyTakenCodesAndKeepsSingleWrites() throws Exception {
+        UserProfile u = createUser(5, 24);
+        ShortenerMetrics metrics = new ShortenerMetrics();
+        FileJsonShortLinkRepository store = new FileJsonShortLinkRepository(
+                Files.createTempFile("links-batch-conflict-", ".json").toString(), metrics);
+        Instant now = Instant.now();
+        ShortLink taken = new ShortLink(UUID.randomUUID().toString(), "Dup002", "https://other.example",
+                UUID.randomUUID(), 5, 0, now, now.plusSeconds(3600), true);
+        store.save(taken);
+
+        List<String> codes = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            codes.add(i == 2500 ? "Dup002" : "B" + i);
+            urls.add("https://example.com/" + i);
+        }
+        codes.add("Fresh1");
+        Iterator<String> generated = codes.iterator();
+        UrlShortenerService racing = new UrlShortenerService(store, config, userRepo, null, generated::next);
+
+        List<LinkCreationResult> results = racing.createShortLinks(u.getId(), urls);
+
+        assertEquals("Fresh1", results.get(2500).link().getShortCode(), "Новый код получает только ссылка с занятым");
+        assertEquals("B2499", results.get(2499).link().getShortCode());
+        assertEquals(taken.getId(), store.findByShortCode("Dup002").orElseThrow().getId());
+        assertEquals(5000, store.findByOwner(u.getId()).size());
+        // одна запись файла для ссылки taken, одна — для пачки до конфликта и одна — для повтора
+        assertTrue(metrics.registry().toPrometheus().contains("shortener_store_flush_seconds_count 3\n"),
+                "Конфликт в пачке не должен переписывать файл на каждую ссылку");
+    }
 }